@@ -12,6 +12,8 @@ package com.episodic.platform.client;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.JAXBException;
 
@@ -159,6 +161,21 @@ public class AnalyticsService extends BaseService {
 		return response.getBody();
 	}
 
+	/**
+	 * Asynchronous version of {@link #getReport(String)} that runs the request
+	 * on the connection's executor.
+	 * 
+	 * @see Connection#submit(Callable)
+	 * @return a future for the contents of the report.
+	 */
+	public Future<String> getReportAsync(final String token) {
+		return connection.submit(new Callable<String>() {
+			public String call() throws Exception {
+				return getReport(token);
+			}
+		});
+	}
+
 	/**
 	 * Generates a report for all episodes in a show. The report will contain
 	 * information such as the total views, complete views, downloads, etc for
@@ -202,6 +219,25 @@ public class AnalyticsService extends BaseService {
 				EPISODES_SUMMARY_REPORT_METHOD, params);
 	}
 
+	/**
+	 * Asynchronous version of
+	 * {@link #requestEpisodesSummaryReport(String, DateRange, DateGrouping, ReportFormat)}
+	 * that runs the request on the connection's executor.
+	 * 
+	 * @see Connection#submit(Callable)
+	 * @return a future for the parsed response.
+	 */
+	public Future<EpisodesSummaryResponse> requestEpisodesSummaryReportAsync(
+			final String showId, final DateRange dateRange,
+			final DateGrouping dateGrouping, final ReportFormat format) {
+		return connection.submit(new Callable<EpisodesSummaryResponse>() {
+			public EpisodesSummaryResponse call() throws Exception {
+				return requestEpisodesSummaryReport(showId, dateRange,
+						dateGrouping, format);
+			}
+		});
+	}
+
 	/**
 	 * Generates a report for a specific episode in a show. The report will
 	 * contain information such as the total views, complete views, downloads,
@@ -244,6 +280,25 @@ public class AnalyticsService extends BaseService {
 				EPISODE_DAILY_REPORT_METHOD, params);
 	}
 
+	/**
+	 * Asynchronous version of
+	 * {@link #requestEpisodeDailyReport(String, String, DateRange, ReportFormat)}
+	 * that runs the request on the connection's executor.
+	 * 
+	 * @see Connection#submit(Callable)
+	 * @return a future for the parsed response.
+	 */
+	public Future<EpisodeDailyResponse> requestEpisodeDailyReportAsync(
+			final String showId, final String episodeId,
+			final DateRange dateRange, final ReportFormat format) {
+		return connection.submit(new Callable<EpisodeDailyResponse>() {
+			public EpisodeDailyResponse call() throws Exception {
+				return requestEpisodeDailyReport(showId, episodeId,
+						dateRange, format);
+			}
+		});
+	}
+
 	/**
 	 * Generates a report for all campaigns in a specific show. The report will
 	 * contain information such as the total views, complete views, downloads,
@@ -281,4 +336,22 @@ public class AnalyticsService extends BaseService {
 		return (CampaignsDailyResponse) connection.doGet(SERVICE_NAME,
 				CAMPAIGNS_DAILY_REPORT_METHOD, params);
 	}
+
+	/**
+	 * Asynchronous version of
+	 * {@link #requestCampaignsDailyReport(String, DateRange, ReportFormat)}
+	 * that runs the request on the connection's executor.
+	 * 
+	 * @see Connection#submit(Callable)
+	 * @return a future for the parsed response.
+	 */
+	public Future<CampaignsDailyResponse> requestCampaignsDailyReportAsync(
+			final String showId, final DateRange dateRange,
+			final ReportFormat format) {
+		return connection.submit(new Callable<CampaignsDailyResponse>() {
+			public CampaignsDailyResponse call() throws Exception {
+				return requestCampaignsDailyReport(showId, dateRange, format);
+			}
+		});
+	}
 }
@@ -0,0 +1,251 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.episodic.platform.client.util.DaemonThreadFactory;
+
+/**
+ * Runs the requests made by the SDK's bulk helpers such as multi-file uploads,
+ * page prefetching and page fan-out. At most a fixed number of requests run at
+ * once; callers submitting more than that block until a request finishes.
+ * 
+ * <p>
+ * A task that submits more tasks, for example a bulk request that fans out
+ * over pages, would hold a slot while waiting for slots of its own. Tasks
+ * submitted from a thread that is already running a task of the same executor
+ * are therefore run by the caller instead of waiting for a slot. Tasks
+ * submitted to a different executor wait for that executor's slots as
+ * usual.
+ * 
+ * @see Connection#getBulkExecutor()
+ * @author Randy Simon
+ */
+public class BulkExecutor {
+
+	/**
+	 * The executor whose task the current thread is running, if any.
+	 */
+	private static final ThreadLocal<BulkExecutor> RUNNING_TASK = new ThreadLocal<BulkExecutor>();
+
+	/**
+	 * The executor the requests run on.
+	 */
+	private final ExecutorService executorService;
+
+	/**
+	 * Limits the number of requests running at once.
+	 */
+	private final Semaphore permits;
+
+	/**
+	 * <code>true</code> if the executor should be shut down with this object.
+	 */
+	private final boolean ownsExecutorService;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param executorService
+	 *            the executor the requests run on.
+	 * @param concurrency
+	 *            the maximum number of requests that may run at once.
+	 * @param ownsExecutorService
+	 *            <code>true</code> if the executor should be shut down by
+	 *            {@link #shutdown()}.
+	 */
+	public BulkExecutor(ExecutorService executorService, int concurrency,
+			boolean ownsExecutorService) {
+		if (concurrency < 1) {
+			throw new IllegalArgumentException(
+					"Concurrency must be at least 1");
+		}
+		this.executorService = executorService;
+		this.permits = new Semaphore(concurrency);
+		this.ownsExecutorService = ownsExecutorService;
+	}
+
+	/**
+	 * Create an executor that runs every task on its own thread. When the
+	 * runtime supports virtual threads they are used, otherwise a new daemon
+	 * thread is created per task and idle threads are reused for up to a
+	 * minute.
+	 * 
+	 * @return the executor.
+	 */
+	public static ExecutorService newThreadPerTaskExecutor() {
+		try {
+			Method method = Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (Exception e) {
+			// Virtual threads are not available on this runtime
+			return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L,
+					TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+					new DaemonThreadFactory("episodic-bulk"));
+		}
+	}
+
+	/**
+	 * Runs the task once a slot is free. This method blocks while the maximum
+	 * number of tasks are already running. If the calling thread is running a
+	 * task of this executor the task is run before this method returns.
+	 * 
+	 * @param task
+	 *            the task to run.
+	 * @return a future for the result of the task.
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting for a slot.
+	 */
+	public <T> Future<T> submit(Callable<T> task) throws InterruptedException {
+		if (RUNNING_TASK.get() == this) {
+			FutureTask<T> future = new FutureTask<T>(task);
+			future.run();
+			return future;
+		}
+
+		permits.acquire();
+
+		BulkTask<T> future = new BulkTask<T>(task);
+		try {
+			executorService.execute(future);
+		} catch (RejectedExecutionException e) {
+			future.release();
+			throw e;
+		}
+
+		return future;
+	}
+
+	/**
+	 * Runs all the tasks, at most the configured number at once, and waits for
+	 * them to finish. If a task fails the tasks that have not completed are
+	 * cancelled.
+	 * 
+	 * @param tasks
+	 *            the tasks to run.
+	 * @return the results in the same order as the tasks.
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 *             wrapping the exception thrown by the first failed task.
+	 */
+	public <T> List<T> invokeAll(List<? extends Callable<T>> tasks)
+			throws InterruptedException, ExecutionException {
+		List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+		boolean done = false;
+		try {
+			for (Iterator<? extends Callable<T>> itr = tasks.iterator(); itr
+					.hasNext();) {
+				futures.add(submit(itr.next()));
+			}
+
+			List<T> results = new ArrayList<T>(futures.size());
+			for (Iterator<Future<T>> itr = futures.iterator(); itr.hasNext();) {
+				results.add(itr.next().get());
+			}
+			done = true;
+
+			return results;
+		} finally {
+			if (!done) {
+				for (Iterator<Future<T>> itr = futures.iterator(); itr
+						.hasNext();) {
+					itr.next().cancel(true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Shuts down the executor if it is owned by this object.
+	 */
+	public void shutdown() {
+		if (ownsExecutorService) {
+			executorService.shutdown();
+		}
+	}
+
+	/**
+	 * A task holding a slot. The slot is released once the task has stopped
+	 * running, or when it is cancelled before it starts, so a task cancelled
+	 * while running keeps its slot until it actually returns.
+	 */
+	private class BulkTask<T> extends FutureTask<T> {
+
+		/**
+		 * <code>true</code> once the executor has started the task.
+		 */
+		private volatile boolean started;
+
+		/**
+		 * <code>true</code> once the slot has been released.
+		 */
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		/**
+		 * Constructor
+		 * 
+		 * @param task
+		 *            the task to run.
+		 */
+		BulkTask(Callable<T> task) {
+			super(task);
+		}
+
+		@Override
+		public void run() {
+			started = true;
+			BulkExecutor outer = RUNNING_TASK.get();
+			RUNNING_TASK.set(BulkExecutor.this);
+			try {
+				super.run();
+			} finally {
+				if (outer != null) {
+					RUNNING_TASK.set(outer);
+				} else {
+					RUNNING_TASK.remove();
+				}
+				release();
+			}
+		}
+
+		@Override
+		protected void done() {
+			if (!started) {
+				release();
+			}
+		}
+
+		/**
+		 * Release the slot unless it has already been released.
+		 */
+		void release() {
+			if (released.compareAndSet(false, true)) {
+				permits.release();
+			}
+		}
+	}
+}
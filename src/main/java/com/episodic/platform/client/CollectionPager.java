@@ -0,0 +1,240 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.episodic.platform.client.response.query.CollectionResponse;
+
+/**
+ * Iterates over the items in every page of a query. While the items in one
+ * page are being consumed the next page is requested in the background on
+ * the connection's {@link BulkExecutor}, which hides most of the latency of
+ * each request when walking a large catalog.
+ * 
+ * <p>
+ * Because {@link Iterator} methods cannot throw checked exceptions, errors
+ * requesting pages after the first are thrown as an
+ * {@link IllegalStateException} with the original exception as the cause.
+ * Callers that stop early should call {@link #close()} so the prefetched page
+ * is not requested needlessly.
+ * 
+ * @see QueryService#episodesPager(Map)
+ * @see QueryService#playlistsPager(Map)
+ * @see QueryService#showsPager(Map)
+ * @author Randy Simon
+ */
+public abstract class CollectionPager<R extends CollectionResponse, T>
+		implements Iterator<T>, Closeable {
+
+	/**
+	 * The param used to request a specific page.
+	 */
+	private static final String PAGE_PARAM = "page";
+
+	/**
+	 * Runs the prefetch requests.
+	 */
+	private final Connection connection;
+
+	/**
+	 * The options used for every page request.
+	 */
+	private final Map<String, Object> options;
+
+	/**
+	 * The page currently being consumed.
+	 */
+	private R currentPage;
+
+	/**
+	 * The items remaining in the current page.
+	 */
+	private Iterator<T> items;
+
+	/**
+	 * The request for the next page or <code>null</code> if this is the
+	 * last page.
+	 */
+	private Future<R> nextPage;
+
+	/**
+	 * <code>true</code> once the first page has been made current.
+	 */
+	private boolean started;
+
+	/**
+	 * <code>true</code> once the pager has been closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param connection
+	 *            the connection to prefetch pages on.
+	 * @param options
+	 *            the options used for the first page.
+	 * @param firstPage
+	 *            the response for the first page.
+	 */
+	protected CollectionPager(Connection connection,
+			Map<String, Object> options, R firstPage) {
+		this.connection = connection;
+		this.options = (options != null) ? new HashMap<String, Object>(options)
+				: new HashMap<String, Object>();
+		this.currentPage = firstPage;
+	}
+
+	/**
+	 * Request a page of the query.
+	 * 
+	 * @param options
+	 *            the query options including the page number.
+	 * @return the response for the page.
+	 * @throws Exception
+	 *             if the request fails.
+	 */
+	protected abstract R fetchPage(Map<String, Object> options)
+			throws Exception;
+
+	/**
+	 * Get the items in a page.
+	 * 
+	 * @param page
+	 *            the response for the page.
+	 * @return the items, which may be <code>null</code> if there are none.
+	 */
+	protected abstract List<T> getItems(R page);
+
+	public boolean hasNext() {
+		if (!started && !closed) {
+			started = true;
+			setCurrentPage(currentPage);
+		}
+
+		while (items == null || !items.hasNext()) {
+			if (closed || nextPage == null) {
+				return false;
+			}
+			setCurrentPage(waitForNextPage());
+		}
+		return true;
+	}
+
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return items.next();
+	}
+
+	/**
+	 * Items cannot be removed.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             always.
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Stop paging and cancel the prefetch of the next page. It is safe to
+	 * call this more than once.
+	 */
+	public void close() {
+		closed = true;
+		if (nextPage != null) {
+			nextPage.cancel(false);
+			nextPage = null;
+		}
+	}
+
+	/**
+	 * Get the total number of items for the query.
+	 * 
+	 * @return the total
+	 */
+	public long getTotal() {
+		return currentPage.getTotal();
+	}
+
+	/**
+	 * Get the total number of pages for the query.
+	 * 
+	 * @return the pages
+	 */
+	public long getPages() {
+		return currentPage.getPages();
+	}
+
+	/**
+	 * Get the number of the page currently being consumed.
+	 * 
+	 * @return the page
+	 */
+	public long getPage() {
+		return currentPage.getPage();
+	}
+
+	/**
+	 * Make the page the current one and start requesting the page after it.
+	 */
+	private void setCurrentPage(R page) {
+		currentPage = page;
+		List<T> pageItems = getItems(page);
+		items = (pageItems != null) ? pageItems.iterator() : null;
+
+		if (page.getPage() < page.getPages()) {
+			final Map<String, Object> pageOptions = new HashMap<String, Object>(
+					options);
+			pageOptions.put(PAGE_PARAM, page.getPage() + 1);
+			try {
+				nextPage = connection.getBulkExecutor().submit(
+						new Callable<R>() {
+							public R call() throws Exception {
+								return fetchPage(pageOptions);
+							}
+						});
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(
+						"Interrupted requesting page", e);
+			}
+		} else {
+			nextPage = null;
+		}
+	}
+
+	/**
+	 * Wait for the prefetch of the next page to finish.
+	 */
+	private R waitForNextPage() {
+		try {
+			return nextPage.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for page", e);
+		} catch (ExecutionException e) {
+			close();
+			throw new IllegalStateException(e.getCause().getMessage(), e
+					.getCause());
+		}
+	}
+}
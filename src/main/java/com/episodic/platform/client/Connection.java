@@ -11,43 +11,40 @@ package com.episodic.platform.client;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.http.HttpResponse;
-import org.apache.http.NameValuePair;
-import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.utils.URIUtils;
-import org.apache.http.client.utils.URLEncodedUtils;
-import org.apache.http.entity.mime.MultipartEntity;
-import org.apache.http.entity.mime.content.FileBody;
-import org.apache.http.entity.mime.content.StringBody;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.util.EntityUtils;
 import org.joda.time.DateTime;
 
+import com.episodic.platform.client.cache.CachedResponse;
+import com.episodic.platform.client.cache.ResponseCache;
 import com.episodic.platform.client.exception.APIAccessDisabledException;
 import com.episodic.platform.client.exception.InvalidAPIKeyException;
 import com.episodic.platform.client.exception.InvalidParametersException;
@@ -55,225 +52,1332 @@ import com.episodic.platform.client.exception.MissingRequiredParameterException;
 import com.episodic.platform.client.exception.NotFoundException;
 import com.episodic.platform.client.exception.RequestExpiredException;
 import com.episodic.platform.client.exception.ResponseException;
+import com.episodic.platform.client.parser.JAXBResponseParser;
+import com.episodic.platform.client.parser.ResponseParser;
+import com.episodic.platform.client.query.Query;
 import com.episodic.platform.client.response.ErrorResponse;
 import com.episodic.platform.client.response.Response;
-import com.episodic.platform.client.response.analytics.CampaignsDailyResponse;
-import com.episodic.platform.client.response.analytics.EpisodeDailyResponse;
-import com.episodic.platform.client.response.analytics.EpisodesSummaryResponse;
-import com.episodic.platform.client.response.query.EpisodesResponse;
-import com.episodic.platform.client.response.query.PlaylistsResponse;
-import com.episodic.platform.client.response.query.ShowsResponse;
-import com.episodic.platform.client.response.write.CreateAssetResponse;
-import com.episodic.platform.client.response.write.CreateEpisodeResponse;
-import com.episodic.platform.client.response.write.UpdateEpisodeResponse;
+import com.episodic.platform.client.transport.HttpClientTransport;
+import com.episodic.platform.client.transport.ConditionalTransport;
+import com.episodic.platform.client.transport.Transport;
+import com.episodic.platform.client.transport.TransportResponse;
+import com.episodic.platform.client.util.DaemonThreadFactory;
+import com.episodic.platform.client.util.FormEncoder;
 import com.episodic.platform.client.util.StringUtil;
 
 /**
  * Class used to make the actual requests to the Episodic Platform API. This
  * class holds user credential information.
+ * <p>
+ * 
+ * Requests are sent through a {@link Transport}. Unless one is provided with
+ * {@link #setTransport(Transport)}, each connection creates an
+ * {@link HttpClientTransport} on the first request that keeps a pool of
+ * keep-alive HTTP connections shared by every service the connection is set
+ * on. Call {@link #close()} when the connection is no longer needed to release
+ * the pooled sockets.
+ * <p>
+ * 
+ * Asynchronous requests are run on a bounded executor that is also owned by
+ * the connection. By default this is a fixed pool of
+ * {@link #DEFAULT_ASYNC_THREADS} threads with a queue of
+ * {@link #DEFAULT_ASYNC_QUEUE_CAPACITY} pending requests.
+ * <p>
+ * 
+ * Bulk helpers that issue many requests at once, such as multi-file uploads,
+ * run them through a {@link BulkExecutor} that caps the number of concurrent
+ * requests. See {@link #setBulkExecutionMode(ExecutionMode)}.
  * 
  * @author Randy Simon
  */
 public class Connection {
 
+	/**
+	 * How the requests made by bulk helpers are run.
+	 */
+	public static enum ExecutionMode {
+		/**
+		 * Bulk requests run on a pool with one thread per concurrent request.
+		 * The pool is separate from the asynchronous executor so bulk work
+		 * started from an asynchronous task never waits on its own pool.
+		 */
+		POOLED,
+
+		/**
+		 * Every bulk request runs on its own thread. Virtual threads are used
+		 * when the runtime supports them.
+		 */
+		THREAD_PER_REQUEST
+	}
+
 	/**
 	 * Logger for this class
 	 */
 	private static Log LOG = LogFactory.getLog(BaseService.class);
 
 	/**
-	 * The XML parsing context.
+	 * Used to size the buffer a request URI is built in.
+	 */
+	private static final int ESTIMATED_PARAM_LENGTH = 32;
+
+	/**
+	 * Most requests require an expires param.
+	 */
+	private static final String EXPIRES_PARAM = "expires";
+
+	/**
+	 * The API key param.
+	 */
+	private static final String KEY_PARAM = "key";
+
+	/**
+	 * The signature param.
+	 */
+	private static final String SIGNATURE_PARAM = "signature";
+
+	/**
+	 * The schema to use.
+	 */
+	private static final String SCHEME = "http";
+
+	/**
+	 * The default API host.
+	 */
+	private static final String HOST = "api.episodic.com";
+
+	/**
+	 * The default API port.
+	 */
+	private static final int PORT = 80;
+
+	/**
+	 * The current API version supported by this client library.
+	 */
+	private static final String API_VERSION = "v2";
+
+	/**
+	 * The base URL path.
+	 */
+	private static final String BASE = "/api/";
+
+	/**
+	 * The response header holding an entity tag.
+	 */
+	private static final String ETAG_HEADER = "ETag";
+
+	/**
+	 * The response header holding the last modification time.
+	 */
+	private static final String LAST_MODIFIED_HEADER = "Last-Modified";
+
+	/**
+	 * The request header used to revalidate a response with an entity tag.
+	 */
+	private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+	/**
+	 * The request header used to revalidate a response with its last
+	 * modification time.
+	 */
+	private static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+
+	/**
+	 * The status code of a response that has not changed.
+	 */
+	private static final int NOT_MODIFIED = 304;
+
+	/**
+	 * The default number of threads used to run asynchronous requests.
+	 */
+	public static final int DEFAULT_ASYNC_THREADS = 10;
+
+	/**
+	 * The default number of asynchronous requests that may be waiting for a
+	 * thread.
+	 */
+	public static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 1000;
+
+	/**
+	 * The default maximum number of concurrent requests made by a bulk helper.
+	 */
+	public static final int DEFAULT_BULK_CONCURRENCY = 10;
+
+	/**
+	 * The user's API key for this connection.
+	 */
+	private String episodicAPIKey;
+
+	/**
+	 * The user's secret key for this connection. This attribute is not sent as
+	 * part of the request.
+	 */
+	private String episodicSecretKey;
+
+	/**
+	 * If <c>null</c> then {@link #HOST} is used.
+	 */
+	private String apiHost;
+
+	/**
+	 * If <c>null</c> then {@link #PORT} is used.
+	 */
+	private int apiPort = 0;
+
+	/**
+	 * The URI of each API method that has been called, keyed by
+	 * "apiName/methodName".
+	 */
+	private final ConcurrentHashMap<String, String> baseURIs = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * The maximum number of pooled connections.
+	 */
+	private int maxTotalConnections = HttpClientTransport.DEFAULT_MAX_TOTAL_CONNECTIONS;
+
+	/**
+	 * The maximum number of pooled connections to a single host.
+	 */
+	private int maxConnectionsPerRoute = HttpClientTransport.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+	/**
+	 * The number of milliseconds a pooled connection may sit idle before it is
+	 * closed.
+	 */
+	private long idleConnectionTimeout = HttpClientTransport.DEFAULT_IDLE_CONNECTION_TIMEOUT;
+
+	/**
+	 * The transport used for all requests made through this connection. This
+	 * is created lazily on the first request unless one is provided by the
+	 * caller. It is only written while holding this connection's lock.
+	 */
+	private volatile Transport transport;
+
+	/**
+	 * <code>true</code> if the transport was created by this connection and
+	 * should be closed when the connection is closed.
+	 */
+	private boolean ownsTransport;
+
+	/**
+	 * The number of threads used to run asynchronous requests.
+	 */
+	private int asyncThreads = DEFAULT_ASYNC_THREADS;
+
+	/**
+	 * The number of asynchronous requests that may be waiting for a thread.
+	 */
+	private int asyncQueueCapacity = DEFAULT_ASYNC_QUEUE_CAPACITY;
+
+	/**
+	 * The executor used to run asynchronous requests. This is created lazily
+	 * unless one is provided by the caller. It is only written while holding
+	 * this connection's lock.
+	 */
+	private volatile ExecutorService executorService;
+
+	/**
+	 * <code>true</code> if the executor was created by this connection and
+	 * should be shut down when the connection is closed.
 	 */
-	private static JAXBContext ctx;
+	private boolean ownsExecutorService;
+
+	/**
+	 * How the requests made by bulk helpers are run.
+	 */
+	private ExecutionMode bulkExecutionMode = ExecutionMode.POOLED;
+
+	/**
+	 * The maximum number of concurrent requests made by a bulk helper.
+	 */
+	private int bulkConcurrency = DEFAULT_BULK_CONCURRENCY;
+
+	/**
+	 * Runs the requests made by bulk helpers. This is created lazily and only
+	 * written while holding this connection's lock.
+	 */
+	private volatile BulkExecutor bulkExecutor;
+
+	/**
+	 * <code>true</code> if parsed responses should keep the raw XML body.
+	 */
+	private volatile boolean retainResponseBody;
+
+	/**
+	 * Converts the XML returned from the server into response objects.
+	 */
+	private volatile ResponseParser responseParser = new JAXBResponseParser();
+
+	/**
+	 * The cache used by the <code>doCachedGet</code> methods or
+	 * <code>null</code> if responses are not cached.
+	 */
+	private volatile ResponseCache responseCache;
+
+	/**
+	 * <code>true</code> if identical GET requests made at the same time
+	 * should share one request.
+	 */
+	private volatile boolean coalesceRequests;
+
+	/**
+	 * The coalesced GET requests currently in flight by request key.
+	 */
+	private final ConcurrentHashMap<String, FutureTask<Response>> inFlightRequests = new ConcurrentHashMap<String, FutureTask<Response>>();
+
+	/**
+	 * The keys of the stale cached responses being refreshed in the
+	 * background.
+	 */
+	private final ConcurrentHashMap<String, Boolean> backgroundRefreshes = new ConcurrentHashMap<String, Boolean>();
+
+	/**
+	 * <code>true</code> once {@link #close()} has been called.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Default no-arg constructor used for testing.
+	 */
+	protected Connection() {
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param episodicAPIKey
+	 *            the user's API key to use as part of the request.
+	 * @param episodicSecretKey
+	 *            the user's secret key to use to sign the request.
+	 */
+	public Connection(String episodicAPIKey, String episodicSecretKey) {
+		this.episodicAPIKey = episodicAPIKey;
+		this.episodicSecretKey = episodicSecretKey;
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param episodicAPIKey
+	 *            the user's API key to use as part of the request.
+	 * @param episodicSecretKey
+	 *            the user's secret key to use to sign the request.
+	 * @param apiHost
+	 *            the overridden API host to use
+	 * @param apiPort
+	 *            the overridden API port to use
+	 */
+	public Connection(String episodicAPIKey, String episodicSecretKey,
+			String apiHost, int apiPort) {
+		this(episodicAPIKey, episodicSecretKey);
+		this.apiHost = apiHost;
+		this.apiPort = apiPort;
+	}
+
+	/**
+	 * Set the maximum number of pooled connections used by the default
+	 * transport. This must be called before the first request is made.
+	 * 
+	 * @param maxTotalConnections
+	 *            the maximum number of connections.
+	 */
+	public synchronized void setMaxTotalConnections(int maxTotalConnections) {
+		assertNotStarted();
+		this.maxTotalConnections = maxTotalConnections;
+	}
+
+	/**
+	 * Set the maximum number of pooled connections to a single host used by
+	 * the default transport. Since
+	 * requests are normally made against a single API host this is usually the
+	 * effective limit on concurrent requests. This must be called before the
+	 * first request is made.
+	 * 
+	 * @param maxConnectionsPerRoute
+	 *            the maximum number of connections per host.
+	 */
+	public synchronized void setMaxConnectionsPerRoute(
+			int maxConnectionsPerRoute) {
+		assertNotStarted();
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+	}
+
+	/**
+	 * Set the number of milliseconds a pooled connection of the default
+	 * transport may sit idle before it is closed. A value of zero or less
+	 * disables idle eviction. This must be called before the first request is
+	 * made.
+	 * 
+	 * @param idleConnectionTimeout
+	 *            the idle timeout in milliseconds.
+	 */
+	public synchronized void setIdleConnectionTimeout(long idleConnectionTimeout) {
+		assertNotStarted();
+		this.idleConnectionTimeout = idleConnectionTimeout;
+	}
+
+	/**
+	 * Set the number of threads used to run asynchronous requests. This must
+	 * be called before the first asynchronous request is made.
+	 * 
+	 * @param asyncThreads
+	 *            the number of threads.
+	 */
+	public synchronized void setAsyncThreads(int asyncThreads) {
+		assertExecutorNotStarted();
+		this.asyncThreads = asyncThreads;
+	}
+
+	/**
+	 * Set the number of asynchronous requests that may be waiting for a
+	 * thread. Once the queue is full new asynchronous requests are rejected
+	 * with a {@link java.util.concurrent.RejectedExecutionException}. This must
+	 * be called before the first asynchronous request is made.
+	 * 
+	 * @param asyncQueueCapacity
+	 *            the maximum number of waiting requests.
+	 */
+	public synchronized void setAsyncQueueCapacity(int asyncQueueCapacity) {
+		assertExecutorNotStarted();
+		this.asyncQueueCapacity = asyncQueueCapacity;
+	}
+
+	/**
+	 * Use the provided executor to run asynchronous requests instead of the
+	 * one created by this connection. The caller remains responsible for
+	 * shutting it down. This must be called before the first asynchronous
+	 * request is made.
+	 * 
+	 * @param executorService
+	 *            the executor to use.
+	 */
+	public synchronized void setExecutorService(ExecutorService executorService) {
+		assertExecutorNotStarted();
+		this.executorService = executorService;
+		this.ownsExecutorService = false;
+	}
+
+	/**
+	 * Get the executor used to run asynchronous requests. The executor is
+	 * created on the first call unless one was provided with
+	 * {@link #setExecutorService(ExecutorService)}.
+	 * 
+	 * @return the executor.
+	 */
+	public ExecutorService getExecutorService() {
+		// Every asynchronous request gets the executor, so only take the lock
+		// while it is created
+		ExecutorService result = executorService;
+		if (result == null || closed) {
+			result = createExecutorService();
+		}
+		return result;
+	}
+
+	/**
+	 * Create the executor unless it already exists.
+	 * 
+	 * @return the executor.
+	 */
+	private synchronized ExecutorService createExecutorService() {
+		if (closed) {
+			throw new IllegalStateException("Connection has been closed");
+		}
+
+		if (executorService == null) {
+			executorService = new ThreadPoolExecutor(asyncThreads,
+					asyncThreads, 0L, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<Runnable>(asyncQueueCapacity),
+					new DaemonThreadFactory("episodic-async"));
+			ownsExecutorService = true;
+		}
+
+		return executorService;
+	}
+
+	/**
+	 * Set how the requests made by bulk helpers are run. With
+	 * {@link ExecutionMode#THREAD_PER_REQUEST} each request gets its own
+	 * thread, which on runtimes with virtual threads allows thousands of
+	 * blocking requests without a large pool. This must be called before the
+	 * first bulk request is made.
+	 * 
+	 * @param bulkExecutionMode
+	 *            the execution mode.
+	 */
+	public synchronized void setBulkExecutionMode(
+			ExecutionMode bulkExecutionMode) {
+		assertBulkExecutorNotStarted();
+		this.bulkExecutionMode = bulkExecutionMode;
+	}
+
+	/**
+	 * Set the maximum number of concurrent requests made by a bulk helper.
+	 * This must be called before the first bulk request is made.
+	 * 
+	 * @param bulkConcurrency
+	 *            the maximum number of concurrent requests.
+	 */
+	public synchronized void setBulkConcurrency(int bulkConcurrency) {
+		assertBulkExecutorNotStarted();
+		this.bulkConcurrency = bulkConcurrency;
+	}
+
+	/**
+	 * Get the executor used by bulk helpers. It is created on the first call
+	 * from the current bulk execution mode and concurrency.
+	 * 
+	 * @return the bulk executor.
+	 */
+	public BulkExecutor getBulkExecutor() {
+		BulkExecutor result = bulkExecutor;
+		if (result == null || closed) {
+			result = createBulkExecutor();
+		}
+		return result;
+	}
+
+	/**
+	 * Create the bulk executor unless it already exists.
+	 * 
+	 * @return the bulk executor.
+	 */
+	private synchronized BulkExecutor createBulkExecutor() {
+		if (closed) {
+			throw new IllegalStateException("Connection has been closed");
+		}
+
+		if (bulkExecutor == null) {
+			if (bulkExecutionMode == ExecutionMode.THREAD_PER_REQUEST) {
+				bulkExecutor = new BulkExecutor(BulkExecutor
+						.newThreadPerTaskExecutor(), bulkConcurrency, true);
+			} else {
+				// The permits bound the queue to the number of threads
+				bulkExecutor = new BulkExecutor(new ThreadPoolExecutor(
+						bulkConcurrency, bulkConcurrency, 0L,
+						TimeUnit.MILLISECONDS,
+						new LinkedBlockingQueue<Runnable>(),
+						new DaemonThreadFactory("episodic-bulk")),
+						bulkConcurrency, true);
+			}
+		}
+
+		return bulkExecutor;
+	}
+
+	/**
+	 * Runs the task on this connection's executor. This is used by the
+	 * services to implement their asynchronous methods. Any exception thrown
+	 * by the task is available from the returned future as the cause of a
+	 * {@link java.util.concurrent.ExecutionException}.
+	 * 
+	 * @param task
+	 *            the task to run.
+	 * @return a future for the result of the task.
+	 */
+	public <T> Future<T> submit(Callable<T> task) {
+		return getExecutorService().submit(task);
+	}
+
+	/**
+	 * Set whether parsed responses keep the raw XML returned from the server
+	 * so that it is available from {@link Response#getBody()}. This is
+	 * <code>false</code> by default, in which case responses are parsed
+	 * directly from the network stream without buffering the body.
+	 * 
+	 * @param retainResponseBody
+	 *            <code>true</code> to keep the raw XML.
+	 */
+	public void setRetainResponseBody(boolean retainResponseBody) {
+		this.retainResponseBody = retainResponseBody;
+	}
+
+	/**
+	 * Check if parsed responses keep the raw XML returned from the server.
+	 * 
+	 * @return <code>true</code> if the raw XML is kept.
+	 */
+	public boolean isRetainResponseBody() {
+		return retainResponseBody;
+	}
+
+	/**
+	 * Set the parser used to convert the XML returned from the server into
+	 * response objects. The default is a {@link JAXBResponseParser}. Use a
+	 * {@link com.episodic.platform.client.parser.StaxResponseParser} to avoid
+	 * the cost of JAXB on large responses.
+	 * 
+	 * @param responseParser
+	 *            the parser to use.
+	 */
+	public void setResponseParser(ResponseParser responseParser) {
+		if (responseParser == null) {
+			throw new IllegalArgumentException("responseParser is required");
+		}
+		this.responseParser = responseParser;
+	}
+
+	/**
+	 * Get the parser used to convert the XML returned from the server into
+	 * response objects.
+	 * 
+	 * @return the response parser.
+	 */
+	public ResponseParser getResponseParser() {
+		return responseParser;
+	}
+
+	/**
+	 * Set the cache used by the <code>doCachedGet</code> methods, which the
+	 * {@link QueryService} uses for its queries. A cached response is parsed
+	 * once and the same response object is returned for every hit, so callers
+	 * should treat it as read only. Responses are not cached by default.
+	 * 
+	 * @param responseCache
+	 *            the cache or <code>null</code> to stop caching.
+	 */
+	public void setResponseCache(ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	/**
+	 * Get the cache used by the <code>doCachedGet</code> methods.
+	 * 
+	 * @return the cache or <code>null</code> if responses are not cached.
+	 */
+	public ResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	/**
+	 * Set whether identical GET requests made by the
+	 * <code>doCachedGet</code> methods at the same time share one request.
+	 * When enabled only the first caller sends the request and the callers
+	 * that arrive while it is in flight wait for it and receive the same
+	 * response object, which they should treat as read only. Requests are
+	 * identical if they are for the same API method on the same server with
+	 * the same API key and params, ignoring expires and signature. This is
+	 * <code>false</code> by default.
+	 * 
+	 * @param coalesceRequests
+	 *            <code>true</code> to share identical requests.
+	 */
+	public void setCoalesceRequests(boolean coalesceRequests) {
+		this.coalesceRequests = coalesceRequests;
+	}
+
+	/**
+	 * Check if identical GET requests made at the same time share one
+	 * request.
+	 * 
+	 * @return <code>true</code> if identical requests are shared.
+	 */
+	public boolean isCoalesceRequests() {
+		return coalesceRequests;
+	}
+
+	/**
+	 * Use the provided transport for all requests instead of the default
+	 * {@link HttpClientTransport}. The caller remains responsible for closing
+	 * it. This must be called before the first request is made.
+	 * 
+	 * @param transport
+	 *            the transport to use.
+	 */
+	public synchronized void setTransport(Transport transport) {
+		assertNotStarted();
+		this.transport = transport;
+		this.ownsTransport = false;
+	}
+
+	/**
+	 * Get the transport used to make requests. The default transport is
+	 * created on the first call unless one was provided with
+	 * {@link #setTransport(Transport)}.
+	 * 
+	 * @return the transport.
+	 */
+	public Transport getTransport() {
+		// Every request gets the transport, so only take the lock while it is
+		// created
+		Transport result = transport;
+		if (result == null || closed) {
+			result = createTransport();
+		}
+		return result;
+	}
+
+	/**
+	 * Create the default transport unless a transport already exists.
+	 * 
+	 * @return the transport.
+	 */
+	private synchronized Transport createTransport() {
+		if (closed) {
+			throw new IllegalStateException("Connection has been closed");
+		}
+
+		if (transport == null) {
+			transport = new HttpClientTransport(maxTotalConnections,
+					maxConnectionsPerRoute, idleConnectionTimeout);
+			ownsTransport = true;
+		}
+
+		return transport;
+	}
+
+	/**
+	 * Shuts down the executor and the default transport, releasing all pooled
+	 * sockets. Any requests made after this method is called will fail with an
+	 * {@link IllegalStateException}.
+	 */
+	public synchronized void close() {
+		closed = true;
+
+		if (bulkExecutor != null) {
+			bulkExecutor.shutdown();
+		}
+		bulkExecutor = null;
+
+		if (executorService != null && ownsExecutorService) {
+			executorService.shutdown();
+		}
+		executorService = null;
+
+		if (transport != null && ownsTransport) {
+			transport.close();
+		}
+		transport = null;
+	}
+
+	/**
+	 * Pool settings can only be changed before the pool is created.
+	 */
+	private void assertNotStarted() {
+		if (transport != null || closed) {
+			throw new IllegalStateException(
+					"Transport settings must be set before the first request");
+		}
+	}
+
+	/**
+	 * Executor settings can only be changed before the executor is created.
+	 */
+	private void assertExecutorNotStarted() {
+		if (executorService != null || closed) {
+			throw new IllegalStateException(
+					"Executor settings must be set before the first asynchronous request");
+		}
+	}
+
+	/**
+	 * Bulk settings can only be changed before the bulk executor is created.
+	 */
+	private void assertBulkExecutorNotStarted() {
+		if (bulkExecutor != null || closed) {
+			throw new IllegalStateException(
+					"Bulk settings must be set before the first bulk request");
+		}
+	}
+
+	/**
+	 * Makes a GET request to the Episodic Platform API server on this
+	 * connection's executor.
+	 * 
+	 * @see #doGet(String, String, Map, boolean)
+	 */
+	public Future<Response> doGetAsync(final String apiName,
+			final String methodName, final Map<String, Object> params,
+			final boolean parseResponse) {
+		return submit(new Callable<Response>() {
+			public Response call() throws Exception {
+				return doGet(apiName, methodName, params, parseResponse);
+			}
+		});
+	}
+
+	/**
+	 * Makes a POST request to the Episodic Platform API server on this
+	 * connection's executor.
+	 * 
+	 * @see #doPost(String, String, Map, Map)
+	 */
+	public Future<Response> doPostAsync(final String apiName,
+			final String methodName, final Map<String, Object> params,
+			final Map<String, Object> fileParams) {
+		return submit(new Callable<Response>() {
+			public Response call() throws Exception {
+				return doPost(apiName, methodName, params, fileParams);
+			}
+		});
+	}
+
+	/**
+	 * @see #doGet(String, String, Map, boolean)
+	 */
+	public Response doGet(String apiName, String methodName,
+			Map<String, Object> params) throws ClientProtocolException,
+			IOException, ResponseException, JAXBException {
+		return doGet(apiName, methodName, params, true);
+	}
+
+	/**
+	 * Makes a GET request to the Episodic Platform API server.
+	 * 
+	 * @param apiName
+	 *            the name of the API service to use.
+	 * @param methodName
+	 *            the name of the API method to invoke.
+	 * @param params
+	 *            the list of params to include in the query string
+	 * @param parseResponse
+	 *            <c>true</c> if the response should be parsed as XML.
+	 * @return a response object that includes the deserialized response data.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws ResponseException
+	 * @throws JAXBException
+	 */
+	public Response doGet(String apiName, String methodName,
+			Map<String, Object> params, boolean parseResponse)
+			throws ClientProtocolException, IOException, ResponseException,
+			JAXBException {
+
+		return readResponse(doGetUnparsed(apiName, methodName, params),
+				parseResponse);
+	}
+
+	/**
+	 * Makes a GET request to the Episodic Platform API server using the
+	 * params from a typed query.
+	 * 
+	 * @param apiName
+	 *            the name of the API service to use.
+	 * @param methodName
+	 *            the name of the API method to invoke.
+	 * @param query
+	 *            the query holding the params to include in the query string
+	 * @return a response object that includes the deserialized response data.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws ResponseException
+	 * @throws JAXBException
+	 */
+	public Response doGet(String apiName, String methodName, Query<?> query)
+			throws ClientProtocolException, IOException, ResponseException,
+			JAXBException {
+		return readResponse(doGetUnparsed(apiName, methodName, query), true);
+	}
+
+	/**
+	 * Makes a GET request to the Episodic Platform API server unless a fresh
+	 * response to the same request is in the {@link ResponseCache}. If
+	 * coalescing is enabled, callers making the same request at the same time
+	 * share one request. This is the same as
+	 * {@link #doGet(String, String, Map)} if there is no cache and coalescing
+	 * is disabled.
+	 * 
+	 * @param apiName
+	 *            the name of the API service to use.
+	 * @param methodName
+	 *            the name of the API method to invoke.
+	 * @param params
+	 *            the list of params to include in the query string
+	 * @return a response object that includes the deserialized response data.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws ResponseException
+	 * @throws JAXBException
+	 */
+	public Response doCachedGet(final String apiName,
+			final String methodName, Map<String, Object> params)
+			throws ClientProtocolException, IOException, ResponseException,
+			JAXBException {
+		ResponseCache cache = responseCache;
+		if (cache == null && !coalesceRequests) {
+			return doGet(apiName, methodName, params);
+		}
+
+		final Map<String, String> requestParams = convertParamsForRequest(params);
+		String key = createCacheKey(apiName, methodName, requestParams);
+		return executeGet(cache, key, methodName, new GetRequest() {
+			public URI createURI() {
+				return createGetURI(apiName, methodName, requestParams);
+			}
+		});
+	}
+
+	/**
+	 * Version of {@link #doCachedGet(String, String, Map)} that takes the
+	 * params from a typed query.
+	 * 
+	 * @param apiName
+	 *            the name of the API service to use.
+	 * @param methodName
+	 *            the name of the API method to invoke.
+	 * @param query
+	 *            the query holding the params to include in the query string
+	 * @return a response object that includes the deserialized response data.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws ResponseException
+	 * @throws JAXBException
+	 */
+	public Response doCachedGet(final String apiName,
+			final String methodName, final Query<?> query)
+			throws ClientProtocolException, IOException, ResponseException,
+			JAXBException {
+		ResponseCache cache = responseCache;
+		if (cache == null && !coalesceRequests) {
+			return doGet(apiName, methodName, query);
+		}
+
+		String key = createCacheKey(apiName, methodName, query.getParams());
+		return executeGet(cache, key, methodName, new GetRequest() {
+			public URI createURI() {
+				return createGetURI(apiName, methodName, query);
+			}
+		});
+	}
+
+	/**
+	 * Create the key used to cache and coalesce a GET request. The key
+	 * includes the server and the API key so that a cache shared by
+	 * connections to different servers or accounts keeps their responses
+	 * apart.
+	 * 
+	 * @param apiName
+	 *            the name of the API service to use.
+	 * @param methodName
+	 *            the name of the API method to invoke.
+	 * @param params
+	 *            the request params converted to strings.
+	 * @return the key.
+	 */
+	String createCacheKey(String apiName, String methodName,
+			Map<String, String> params) {
+		return ResponseCache.createKey(getBaseURI(apiName, methodName),
+				episodicAPIKey, params);
+	}
+
+	/**
+	 * Answer a GET request from the cache if possible. Otherwise send it,
+	 * joining an identical request that is already in flight when
+	 * coalescing is enabled.
+	 * 
+	 * @param cache
+	 *            the cache or <code>null</code> if responses are not cached.
+	 * @param key
+	 *            the request key.
+	 * @param methodName
+	 *            the name of the API method to invoke.
+	 * @param request
+	 *            sends the request.
+	 * @return a response object that includes the deserialized response data.
+	 * @throws IOException
+	 * @throws ResponseException
+	 * @throws JAXBException
+	 */
+	private Response executeGet(final ResponseCache cache, final String key,
+			final String methodName, final GetRequest request)
+			throws IOException, ResponseException, JAXBException {
+		if (cache != null) {
+			CachedResponse cached = cache.get(key);
+			if (cached != null) {
+				if (cached.isExpired(System.currentTimeMillis())) {
+					refreshInBackground(cache, key, methodName, request);
+				}
+				return toResponse(cached);
+			}
+		}
+
+		if (!coalesceRequests) {
+			return sendAndReadResponse(cache, key, methodName, request);
+		}
+
+		FutureTask<Response> task = new FutureTask<Response>(
+				new Callable<Response>() {
+					public Response call() throws Exception {
+						return sendAndReadResponse(cache, key, methodName,
+								request);
+					}
+				});
+		FutureTask<Response> inFlight = inFlightRequests.putIfAbsent(key,
+				task);
+		if (inFlight == null) {
+			// This thread makes the request for everyone waiting on the key
+			inFlight = task;
+			try {
+				task.run();
+			} finally {
+				inFlightRequests.remove(key, task);
+			}
+		}
 
-	/**
-	 * Static block to define the unmarshalling classes.
-	 */
-	static {
 		try {
-			ctx = JAXBContext.newInstance(CreateAssetResponse.class,
-					CreateEpisodeResponse.class, ErrorResponse.class,
-					CampaignsDailyResponse.class, EpisodeDailyResponse.class,
-					EpisodesResponse.class, EpisodesSummaryResponse.class,
-					PlaylistsResponse.class, ShowsResponse.class,
-					UpdateEpisodeResponse.class);
-		} catch (JAXBException e) {
-			LOG.error(e.getMessage(), e);
+			return inFlight.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+					"Interrupted while waiting for a coalesced request");
+		} catch (ExecutionException e) {
+			throw unwrap(e);
 		}
 	}
 
 	/**
-	 * Most requests require an expires param.
+	 * Rethrow the exception thrown by a request that ran on another thread.
+	 * 
+	 * @param e
+	 *            the exception wrapping the failure.
+	 * @return an exception to throw if the failure is not one a request can
+	 *         throw.
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
 	 */
-	private static final String EXPIRES_PARAM = "expires";
+	static IllegalStateException unwrap(ExecutionException e)
+			throws IOException, JAXBException, ResponseException {
+		Throwable cause = e.getCause();
+		if (cause instanceof JAXBException) {
+			throw (JAXBException) cause;
+		} else if (cause instanceof ResponseException) {
+			throw (ResponseException) cause;
+		}
+		return unwrap(e, IOException.class);
+	}
 
 	/**
-	 * The API key param.
+	 * Rethrow the exception thrown by a task that ran on another thread and
+	 * can throw one checked exception besides {@link IOException}.
+	 * 
+	 * @param e
+	 *            the exception wrapping the failure.
+	 * @param checked
+	 *            the other checked exception the task can throw.
+	 * @return an exception to throw if the failure is not one the task can
+	 *         throw.
+	 * @throws IOException
+	 * @throws X
 	 */
-	private static final String KEY_PARAM = "key";
+	static <X extends Exception> IllegalStateException unwrap(
+			ExecutionException e, Class<X> checked) throws IOException, X {
+		Throwable cause = e.getCause();
+		if (cause instanceof IOException) {
+			throw (IOException) cause;
+		} else if (checked.isInstance(cause)) {
+			throw checked.cast(cause);
+		} else if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		} else if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new IllegalStateException(cause);
+	}
 
 	/**
-	 * The signature param.
+	 * Refresh a stale cached response on this connection's executor. Only one
+	 * refresh runs per key at a time and failures are logged, leaving the
+	 * stale response in the cache.
+	 * 
+	 * @param cache
+	 *            the cache holding the stale response.
+	 * @param key
+	 *            the request key.
+	 * @param methodName
+	 *            the name of the API method to invoke.
+	 * @param request
+	 *            creates the request URI.
 	 */
-	private static final String SIGNATURE_PARAM = "signature";
+	private void refreshInBackground(final ResponseCache cache,
+			final String key, final String methodName,
+			final GetRequest request) {
+		if (backgroundRefreshes.putIfAbsent(key, Boolean.TRUE) != null) {
+			return;
+		}
 
-	/**
-	 * The schema to use.
-	 */
-	private static final String SCHEME = "http";
+		try {
+			submit(new Callable<Object>() {
+				public Object call() throws Exception {
+					try {
+						sendAndReadResponse(cache, key, methodName, request);
+					} catch (Exception e) {
+						LOG.warn("Unable to refresh cached response " + key, e);
+					} finally {
+						backgroundRefreshes.remove(key);
+					}
+					return null;
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// Try again on the next request
+			backgroundRefreshes.remove(key);
+		}
+	}
 
 	/**
-	 * The default API host.
+	 * Send a GET request and read the response, storing it in the cache if
+	 * there is one. If the cache holds a stale response with validators and
+	 * the transport supports it, the request is made conditional and a
+	 * <code>304 Not Modified</code> renews the cached response instead of
+	 * downloading it again.
+	 * 
+	 * @param cache
+	 *            the cache or <code>null</code> if responses are not cached.
+	 * @param key
+	 *            the request key.
+	 * @param methodName
+	 *            the name of the API method to invoke.
+	 * @param request
+	 *            creates the request URI.
+	 * @return a response object that includes the deserialized response data.
+	 * @throws IOException
+	 * @throws ResponseException
+	 * @throws JAXBException
 	 */
-	private static final String HOST = "api.episodic.com";
+	private Response sendAndReadResponse(ResponseCache cache, String key,
+			String methodName, GetRequest request) throws IOException,
+			ResponseException, JAXBException {
+		Transport transport = getTransport();
+		if (cache == null) {
+			return readResponse(transport.get(request.createURI()), true);
+		}
 
-	/**
-	 * The default API port.
-	 */
-	private static final int PORT = 80;
+		CachedResponse stale = cache.getForRevalidation(key);
+		if (stale == null || !(transport instanceof ConditionalTransport)) {
+			return readAndCacheResponse(cache, key, methodName, transport
+					.get(request.createURI()));
+		}
 
-	/**
-	 * The current API version supported by this client library.
-	 */
-	private static final String API_VERSION = "v2";
+		Map<String, String> headers = new HashMap<String, String>(4);
+		if (stale.getETag() != null) {
+			headers.put(IF_NONE_MATCH_HEADER, stale.getETag());
+		}
+		if (stale.getLastModified() != null) {
+			headers.put(IF_MODIFIED_SINCE_HEADER, stale.getLastModified());
+		}
 
-	/**
-	 * The base URL path.
-	 */
-	private static final String BASE = "/api/";
+		TransportResponse transportResponse = ((ConditionalTransport) transport)
+				.get(request.createURI(), headers);
+		if (transportResponse.getStatusCode() != NOT_MODIFIED) {
+			return readAndCacheResponse(cache, key, methodName,
+					transportResponse);
+		}
 
-	/**
-	 * The user's API key for this connection.
-	 */
-	private String episodicAPIKey;
+		transportResponse.close();
+		return toResponse(cache.revalidate(key, methodName, stale));
+	}
 
 	/**
-	 * The user's secret key for this connection. This attribute is not sent as
-	 * part of the request.
+	 * Get the response held by a cache entry, parsing the body only if it has
+	 * not been parsed before. Entries loaded from disk are parsed on their
+	 * first use.
+	 * 
+	 * @param cached
+	 *            the cache entry.
+	 * @return the parsed response, which is shared by every caller.
+	 * @throws IOException
+	 * @throws ResponseException
+	 * @throws JAXBException
 	 */
-	private String episodicSecretKey;
+	private Response toResponse(CachedResponse cached) throws IOException,
+			ResponseException, JAXBException {
+		Response response = cached.getResponse();
+
+		// A response parsed without its body cannot be used when the body is
+		// needed
+		if (response == null
+				|| (retainResponseBody && response.getBody() == null)) {
+			response = processAndUnmarshallResponse(cached);
+			cached.setResponse(response);
+		}
+		return response;
+	}
 
 	/**
-	 * If <c>null</c> then {@link #HOST} is used.
+	 * Read the response to a GET request, close it and store it in the cache
+	 * if it was successful.
+	 * 
+	 * @param cache
+	 *            the cache to store the response in.
+	 * @param key
+	 *            the request key.
+	 * @param methodName
+	 *            the name of the API method that was invoked.
+	 * @param transportResponse
+	 *            the unread response.
+	 * @return a response object that includes the deserialized response data.
+	 * @throws IOException
+	 * @throws ResponseException
+	 * @throws JAXBException
 	 */
-	private String apiHost;
+	private Response readAndCacheResponse(ResponseCache cache, String key,
+			String methodName, TransportResponse transportResponse)
+			throws IOException, ResponseException, JAXBException {
+		byte[] body;
+		try {
+			body = transportResponse.getBodyAsBytes();
+		} finally {
+			transportResponse.close();
+		}
 
-	/**
-	 * If <c>null</c> then {@link #PORT} is used.
-	 */
-	private int apiPort = 0;
+		// Parse through an unstored entry so hits and misses are handled the
+		// same way
+		CachedResponse cached = new CachedResponse(transportResponse
+				.getStatusCode(), transportResponse.getDeclaredCharset(), body,
+				0, 0);
+		Response response = processAndUnmarshallResponse(cached);
+
+		// Error responses have thrown by now
+		if (cached.getStatusCode() == 200) {
+			CachedResponse stored = cache.put(key, methodName, cached
+					.getStatusCode(), cached.getCharset(), body,
+					transportResponse.getHeader(ETAG_HEADER), transportResponse
+							.getHeader(LAST_MODIFIED_HEADER));
+			if (stored != null) {
+				stored.setResponse(response);
+			}
+		}
+		return response;
+	}
 
 	/**
-	 * Default no-arg constructor used for testing.
+	 * Read the response to a GET request and close it.
+	 * 
+	 * @param transportResponse
+	 *            the unread response.
+	 * @param parseResponse
+	 *            <c>true</c> if the response should be parsed as XML.
+	 * @return a response object that includes the deserialized response data.
+	 * @throws IOException
+	 * @throws ResponseException
+	 * @throws JAXBException
 	 */
-	protected Connection() {
+	private Response readResponse(TransportResponse transportResponse,
+			boolean parseResponse) throws IOException, ResponseException,
+			JAXBException {
+		Response response = null;
+		try {
+			if (parseResponse) {
+				response = processAndUnmarshallResponse(transportResponse);
+			} else {
+				// Just set the status and body if we are not parsing the
+				// response.
+				response = new Response();
+				response.setBody(transportResponse.getBodyAsString());
+				response.setStatusCode(transportResponse.getStatusCode());
+			}
+		} finally {
+			transportResponse.close();
+		}
+
+		return response;
 	}
 
 	/**
-	 * Constructor
+	 * Makes a GET request to the Episodic Platform API server and returns the
+	 * response without reading the body. This allows the caller to parse the
+	 * body as it arrives. The caller must close the returned response.
 	 * 
-	 * @param episodicAPIKey
-	 *            the user's API key to use as part of the request.
-	 * @param episodicSecretKey
-	 *            the user's secret key to use to sign the request.
+	 * @param apiName
+	 *            the name of the API service to use.
+	 * @param methodName
+	 *            the name of the API method to invoke.
+	 * @param params
+	 *            the list of params to include in the query string
+	 * @return the unread response.
+	 * @throws IOException
 	 */
-	public Connection(String episodicAPIKey, String episodicSecretKey) {
-		this.episodicAPIKey = episodicAPIKey;
-		this.episodicSecretKey = episodicSecretKey;
+	public TransportResponse doGetUnparsed(String apiName, String methodName,
+			Map<String, Object> params) throws IOException {
+
+		// Convert the params to a string
+		return getTransport().get(
+				createGetURI(apiName, methodName,
+						convertParamsForRequest(params)));
 	}
 
 	/**
-	 * Constructor.
+	 * Create the signed URI of a GET request with params that have already
+	 * been converted to strings.
 	 * 
-	 * @param episodicAPIKey
-	 *            the user's API key to use as part of the request.
-	 * @param episodicSecretKey
-	 *            the user's secret key to use to sign the request.
-	 * @param apiHost
-	 *            the overridden API host to use
-	 * @param apiPort
-	 *            the overridden API port to use
+	 * @param apiName
+	 *            the name of the API service to use.
+	 * @param methodName
+	 *            the name of the API method to invoke.
+	 * @param requestParams
+	 *            the converted params. The common params are added to it.
+	 * @return the request URI.
 	 */
-	public Connection(String episodicAPIKey, String episodicSecretKey,
-			String apiHost, int apiPort) {
-		this(episodicAPIKey, episodicSecretKey);
-		this.apiHost = apiHost;
-		this.apiPort = apiPort;
+	private URI createGetURI(String apiName, String methodName,
+			Map<String, String> requestParams) {
+
+		// Apply params like key and expires
+		appendCommonParams(requestParams);
+
+		// Encode the params straight after the base URI
+		StringBuilder uri = beginURI(apiName, methodName, requestParams
+				.size());
+		FormEncoder.appendParams(uri, requestParams);
+
+		return toURI(uri.toString());
 	}
 
 	/**
-	 * @see #doGet(String, String, Map, boolean)
+	 * Makes a GET request using the params from a typed query and returns the
+	 * response without reading the body. The query's params are already
+	 * converted and encoded, so only the common params such as the signature
+	 * are added per request. The caller must close the returned response.
+	 * 
+	 * @param apiName
+	 *            the name of the API service to use.
+	 * @param methodName
+	 *            the name of the API method to invoke.
+	 * @param query
+	 *            the query holding the params to include in the query string
+	 * @return the unread response.
+	 * @throws IOException
 	 */
-	public Response doGet(String apiName, String methodName,
-			Map<String, Object> params) throws ClientProtocolException,
-			IOException, ResponseException, JAXBException {
-		return doGet(apiName, methodName, params, true);
+	public TransportResponse doGetUnparsed(String apiName, String methodName,
+			Query<?> query) throws IOException {
+		return getTransport().get(createGetURI(apiName, methodName, query));
 	}
 
 	/**
-	 * Makes a GET request to the Episodic Platform API server.
+	 * Create the signed URI of a GET request using the params from a typed
+	 * query.
 	 * 
 	 * @param apiName
 	 *            the name of the API service to use.
 	 * @param methodName
 	 *            the name of the API method to invoke.
-	 * @param params
-	 *            the list of params to include in the query string
-	 * @param parseResponse
-	 *            <c>true</c> if the response should be parsed as XML.
-	 * @return a response object that includes the deserialized response data.
-	 * @throws ClientProtocolException
-	 * @throws IOException
-	 * @throws ResponseException
-	 * @throws JAXBException
+	 * @param query
+	 *            the query holding the params to include in the query string
+	 * @return the request URI.
 	 */
-	public Response doGet(String apiName, String methodName,
-			Map<String, Object> params, boolean parseResponse)
-			throws ClientProtocolException, IOException, ResponseException,
-			JAXBException {
-
-		HttpClient client = new DefaultHttpClient();
-
-		// Convert the params to a string
-		Map<String, String> requestParams = convertParamsForRequest(params);
+	private URI createGetURI(String apiName, String methodName, Query<?> query) {
+		Map<String, String> queryParams = query.getParams();
 
-		// Apply params like key and expires
+		// The signature covers the query params as well as the common ones
+		Map<String, String> requestParams = new HashMap<String, String>(
+				(queryParams.size() + 3) * 4 / 3 + 1);
+		requestParams.putAll(queryParams);
 		appendCommonParams(requestParams);
 
-		// Build the query params list
-		List<NameValuePair> queryParams = new ArrayList<NameValuePair>(
-				requestParams.size());
-		Iterator<Map.Entry<String, String>> itr = requestParams.entrySet()
-				.iterator();
-		while (itr.hasNext()) {
-			Map.Entry<String, String> pair = itr.next();
-			queryParams.add(new BasicNameValuePair(pair.getKey(), pair
-					.getValue()));
-		}
-
-		HttpGet method = new HttpGet(constructURI(apiName, methodName,
-				queryParams));
-
-		Response response = null;
-		try {
-			HttpResponse httpResponse = client.execute(method);
-
-			if (parseResponse) {
-				response = processAndUnmarshallResponse(httpResponse);
-			} else {
-				// Just set the status and body if we are not parsing the
-				// response.
-				response = new Response();
-				response
-						.setBody(EntityUtils.toString(httpResponse.getEntity()));
-				StatusLine statusLine = httpResponse.getStatusLine();
-				response.setStatusCode(statusLine.getStatusCode());
-			}
-		} finally {
-			client.getConnectionManager().shutdown();
+		String encodedParams = query.getEncodedParams();
+		StringBuilder uri = beginURI(apiName, methodName, 3);
+		uri.append(encodedParams);
+		if (encodedParams.length() > 0) {
+			uri.append('&');
 		}
-
-		return response;
+		FormEncoder.appendParam(uri, EXPIRES_PARAM, requestParams
+				.get(EXPIRES_PARAM));
+		uri.append('&');
+		FormEncoder.appendParam(uri, SIGNATURE_PARAM, requestParams
+				.get(SIGNATURE_PARAM));
+		uri.append('&');
+		FormEncoder.appendParam(uri, KEY_PARAM, requestParams.get(KEY_PARAM));
+
+		return toURI(uri.toString());
 	}
 
 	/**
@@ -298,66 +1402,88 @@ public class Connection {
 			throws ClientProtocolException, IOException, ResponseException,
 			JAXBException {
 
-		HttpClient client = new DefaultHttpClient();
-
 		// Convert the params to a string
 		Map<String, String> requestParams = convertParamsForRequest(params);
 
 		// Apply params like key and expires
 		appendCommonParams(requestParams);
 
-		HttpPost method = new HttpPost(constructURI(apiName, methodName, null));
-
-		// Add the string and file params to the call.
-		MultipartEntity multipartEntity = new MultipartEntity();
-		for (Map.Entry<String, String> entry : requestParams.entrySet()) {
-			multipartEntity.addPart(entry.getKey(), new StringBody(entry
-					.getValue()));
-		}
+		// Convert the file params to files
+		Map<String, File> files = null;
 		if (fileParams != null) {
+			files = new LinkedHashMap<String, File>();
 			for (Map.Entry<String, Object> entry : fileParams.entrySet()) {
 				File file = (entry.getValue() instanceof File) ? (File) entry
 						.getValue() : new File(entry.getValue().toString());
-				multipartEntity.addPart(entry.getKey(), new FileBody(file));
+				files.put(entry.getKey(), file);
 			}
 		}
-		method.setEntity(multipartEntity);
 
-		Response response = null;
+		TransportResponse transportResponse = getTransport().post(
+				toURI(getBaseURI(apiName, methodName)), requestParams, files);
 		try {
-			HttpResponse httpResponse = client.execute(method);
-			response = processAndUnmarshallResponse(httpResponse);
+			return processAndUnmarshallResponse(transportResponse);
 		} finally {
-			client.getConnectionManager().shutdown();
+			transportResponse.close();
 		}
-
-		return response;
 	}
 
 	/**
-	 * Helper method to construct the URI for the request.
+	 * Get the URI of an API method without a query string. The URI is built
+	 * the first time it is needed and reused for later requests.
 	 * 
 	 * @param apiName
 	 *            the name of the API service to use.
 	 * @param methodName
 	 *            the name of the API method to invoke.
-	 * @param queryParams
-	 *            the list of params to include in the query string
-	 * @return the constructed URI
+	 * @return the URI
 	 */
-	private URI constructURI(String apiName, String methodName,
-			List<NameValuePair> queryParams) {
-
-		// Check for default overrides in the connection
-		String host = apiHost == null ? HOST : apiHost;
-		int port = apiPort == 0 ? PORT : apiPort;
+	private String getBaseURI(String apiName, String methodName) {
+		String key = apiName + "/" + methodName;
+		String baseURI = baseURIs.get(key);
+		if (baseURI == null) {
+
+			// Check for default overrides in the connection
+			String host = apiHost == null ? HOST : apiHost;
+			int port = apiPort == 0 ? PORT : apiPort;
+
+			baseURI = SCHEME + "://" + host + ":" + port + BASE + API_VERSION
+					+ "/" + key;
+			baseURIs.put(key, baseURI);
+		}
+		return baseURI;
+	}
 
-		String queryString = queryParams != null ? URLEncodedUtils.format(
-				queryParams, "UTF-8") : null;
+	/**
+	 * Start building the URI for a request. The returned buffer holds the
+	 * base URI followed by a "?" and has room for the params.
+	 * 
+	 * @param apiName
+	 *            the name of the API service to use.
+	 * @param methodName
+	 *            the name of the API method to invoke.
+	 * @param paramCount
+	 *            the number of params that will be appended.
+	 * @return the buffer to append the encoded params to.
+	 */
+	private StringBuilder beginURI(String apiName, String methodName,
+			int paramCount) {
+		String baseURI = getBaseURI(apiName, methodName);
+		StringBuilder buffer = new StringBuilder(baseURI.length() + 1
+				+ paramCount * ESTIMATED_PARAM_LENGTH);
+		return buffer.append(baseURI).append('?');
+	}
 
+	/**
+	 * Convert the URI string built for a request.
+	 * 
+	 * @param uri
+	 *            the encoded URI.
+	 * @return the URI
+	 */
+	private URI toURI(String uri) {
 		try {
-			return URIUtils.createURI(SCHEME, host, port, BASE + API_VERSION
-					+ "/" + apiName + "/" + methodName, queryString, null);
+			return new URI(uri);
 		} catch (URISyntaxException e) {
 			throw new IllegalStateException(e);
 		}
@@ -382,7 +1508,7 @@ public class Connection {
 	 * 
 	 * @return The signature needed for an episodic request.
 	 */
-	private String generateSignature(Map<String, String> params) {
+	String generateSignature(Map<String, String> params) {
 		StringBuilder builder = new StringBuilder(this.episodicSecretKey);
 
 		Set<String> keys = new TreeSet<String>(params.keySet());
@@ -491,18 +1617,63 @@ public class Connection {
 	}
 
 	/**
-	 * Unmarshalls the input stream into one of the response objects.
+	 * Unmarshalls the response body into one of the response objects. Unless
+	 * {@link #setRetainResponseBody(boolean)} is enabled the body is parsed
+	 * directly from the stream and is not kept on the response.
+	 * 
+	 * @param transportResponse
+	 *            the response returned by the transport
+	 * @return The unmarshalled response object.
+	 * @throws javax.xml.bind.JAXBException
+	 *             Thrown if there are issues with the xml stream passed in.
+	 */
+	protected Response unmarshall(TransportResponse transportResponse)
+			throws JAXBException, IOException {
+		Response response;
+
+		if (retainResponseBody) {
+			response = unmarshall(transportResponse.getBodyAsString());
+		} else {
+			// Let the parser detect the encoding unless the server declared
+			// one.
+			String charset = transportResponse.getDeclaredCharset();
+			if (charset != null) {
+				response = responseParser.parse(new InputStreamReader(
+						transportResponse.getBody(), charset));
+			} else {
+				response = responseParser.parse(transportResponse.getBody());
+			}
+		}
+
+		response.setStatusCode(transportResponse.getStatusCode());
+		return response;
+	}
+
+	/**
+	 * Unmarshalls a cached response body into one of the response objects.
 	 * 
-	 * @param httpResponse
-	 *            the http response
+	 * @param cachedResponse
+	 *            the cached response.
 	 * @return The unmarshalled response object.
 	 * @throws javax.xml.bind.JAXBException
 	 *             Thrown if there are issues with the xml stream passed in.
 	 */
-	protected Response unmarshall(HttpResponse httpResponse)
+	protected Response unmarshall(CachedResponse cachedResponse)
 			throws JAXBException, IOException {
-		String xml = EntityUtils.toString(httpResponse.getEntity());
-		return unmarshall(xml);
+		Response response;
+		String charset = cachedResponse.getCharset();
+
+		if (retainResponseBody) {
+			response = unmarshall(cachedResponse.getBodyAsString());
+		} else if (charset != null) {
+			response = responseParser.parse(new InputStreamReader(
+					cachedResponse.getBody(), charset));
+		} else {
+			response = responseParser.parse(cachedResponse.getBody());
+		}
+
+		response.setStatusCode(cachedResponse.getStatusCode());
+		return response;
 	}
 
 	/**
@@ -515,9 +1686,7 @@ public class Connection {
 	 *             Thrown if there are issues with the xml stream passed in.
 	 */
 	protected Response unmarshall(String responseXML) throws JAXBException {
-		Unmarshaller unmarshaller = ctx.createUnmarshaller();
-		Response response = (Response) unmarshaller.unmarshal(new StringReader(
-				responseXML));
+		Response response = responseParser.parse(new StringReader(responseXML));
 		response.setBody(responseXML);
 		return response;
 	}
@@ -526,16 +1695,38 @@ public class Connection {
 	 * Unmarshall the HTTP response and process it by throwing an exception if
 	 * the unmarshalled response is a {@link ErrorResponse} object.
 	 * 
-	 * @param httpResponse
-	 *            the HTTP response returned from the POST or GET request.
+	 * @param transportResponse
+	 *            the response returned from the POST or GET request.
 	 * @return the parsed response
 	 * @throws JAXBException
 	 * @throws IOException
 	 * @throws ResponseException
 	 */
-	protected Response processAndUnmarshallResponse(HttpResponse httpResponse)
-			throws JAXBException, IOException, ResponseException {
-		Response response = unmarshall(httpResponse);
+	protected Response processAndUnmarshallResponse(
+			TransportResponse transportResponse) throws JAXBException,
+			IOException, ResponseException {
+		Response response = unmarshall(transportResponse);
+
+		proccessResponse(response);
+
+		return response;
+	}
+
+	/**
+	 * Unmarshall a cached response and process it by throwing an exception if
+	 * the unmarshalled response is a {@link ErrorResponse} object.
+	 * 
+	 * @param cachedResponse
+	 *            the cached response.
+	 * @return the parsed response
+	 * @throws JAXBException
+	 * @throws IOException
+	 * @throws ResponseException
+	 */
+	protected Response processAndUnmarshallResponse(
+			CachedResponse cachedResponse) throws JAXBException, IOException,
+			ResponseException {
+		Response response = unmarshall(cachedResponse);
 
 		proccessResponse(response);
 
@@ -577,7 +1768,7 @@ public class Connection {
 	 * @throws APIAccessDisabledException
 	 * @throws ResponseException
 	 */
-	private void proccessResponse(Response response)
+	void proccessResponse(Response response)
 			throws InvalidAPIKeyException, MissingRequiredParameterException,
 			InvalidParametersException, RequestExpiredException,
 			NotFoundException, APIAccessDisabledException, ResponseException {
@@ -604,4 +1795,18 @@ public class Connection {
 			}
 		}
 	}
+
+	/**
+	 * Creates the URI of a GET request.
+	 */
+	private interface GetRequest {
+
+		/**
+		 * Create the signed request URI. This is called just before the
+		 * request is sent so that it does not expire while waiting.
+		 * 
+		 * @return the request URI.
+		 */
+		URI createURI();
+	}
 }
@@ -0,0 +1,274 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.episodic.platform.client.exception.ResponseException;
+import com.episodic.platform.client.parser.JAXBResponseParser;
+import com.episodic.platform.client.parser.ResponseParser;
+import com.episodic.platform.client.parser.StaxResponseParser;
+import com.episodic.platform.client.response.Response;
+import com.episodic.platform.client.response.query.CollectionResponse;
+import com.episodic.platform.client.response.query.Item;
+import com.episodic.platform.client.transport.TransportResponse;
+
+/**
+ * Iterates over the items in a query response while the response is being
+ * read from the server. Each item is parsed only when it is requested, so
+ * the caller can start processing before the whole response has arrived and
+ * only one item is held in memory at a time.
+ * 
+ * <p>
+ * The iterator holds the connection to the server open until every item has
+ * been read. Callers that stop early must call {@link #close()}.
+ * 
+ * <p>
+ * Because {@link Iterator} methods cannot throw checked exceptions, errors
+ * reading the response after the first item are thrown as an
+ * {@link IllegalStateException} with the original exception as the cause.
+ * 
+ * @author Randy Simon
+ */
+public abstract class ItemIterator<T extends Item> implements Iterator<T>,
+		Closeable {
+
+	/**
+	 * The response being read.
+	 */
+	private final TransportResponse transportResponse;
+
+	/**
+	 * Parses the items.
+	 */
+	private final StaxResponseParser parser;
+
+	/**
+	 * Holds the page attributes of the response.
+	 */
+	private final CollectionResponse page;
+
+	/**
+	 * The name of the elements holding the items.
+	 */
+	private final String itemName;
+
+	/**
+	 * Reads the response body.
+	 */
+	private XMLStreamReader reader;
+
+	/**
+	 * The item that will be returned by the next call to {@link #next()}.
+	 */
+	private T next;
+
+	/**
+	 * <code>true</code> once the response has been closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Constructor. Reads up to the first item in the response.
+	 * 
+	 * @param connection
+	 *            the connection the request was made on.
+	 * @param transportResponse
+	 *            the unread response.
+	 * @param page
+	 *            an empty response to hold the page attributes.
+	 * @param collectionName
+	 *            the name of the root element.
+	 * @param itemName
+	 *            the name of the elements holding the items.
+	 * @throws JAXBException
+	 *             if the response is not valid XML.
+	 * @throws ResponseException
+	 *             if the server returned an error response.
+	 * @throws IOException
+	 */
+	protected ItemIterator(Connection connection,
+			TransportResponse transportResponse, CollectionResponse page,
+			String collectionName, String itemName) throws JAXBException,
+			ResponseException, IOException {
+		this.transportResponse = transportResponse;
+		this.page = page;
+		this.itemName = itemName;
+
+		ResponseParser responseParser = connection.getResponseParser();
+		if (responseParser instanceof StaxResponseParser) {
+			parser = (StaxResponseParser) responseParser;
+		} else {
+			parser = new StaxResponseParser();
+			if (responseParser instanceof JAXBResponseParser) {
+				// Pool strings as the configured parser would
+				parser.setStringPool(((JAXBResponseParser) responseParser)
+						.getStringPool());
+			}
+		}
+
+		boolean success = false;
+		try {
+			// Let the parser detect the encoding unless the server declared
+			// one.
+			String charset = transportResponse.getDeclaredCharset();
+			if (charset != null) {
+				reader = StaxResponseParser.createReader(new InputStreamReader(
+						transportResponse.getBody(), charset));
+			} else {
+				reader = StaxResponseParser.createReader(transportResponse
+						.getBody());
+			}
+
+			reader.nextTag();
+			if (!collectionName.equals(reader.getLocalName())) {
+				// Most likely an error response
+				Response response = parser.readResponse(reader);
+				response.setStatusCode(transportResponse.getStatusCode());
+				connection.proccessResponse(response);
+				throw new JAXBException("Unexpected element \""
+						+ reader.getLocalName() + "\"");
+			}
+
+			parser.readCollectionAttributes(reader, page);
+			success = true;
+		} catch (XMLStreamException e) {
+			throw new JAXBException(e.getMessage(), e);
+		} finally {
+			if (!success) {
+				close();
+			}
+		}
+	}
+
+	/**
+	 * Parse the item the reader is positioned on.
+	 * 
+	 * @param parser
+	 *            the parser to read the item with.
+	 * @param reader
+	 *            the stream reader positioned on the start of the item. On
+	 *            return it must be positioned on the end of the item.
+	 * @return the item.
+	 * @throws XMLStreamException
+	 */
+	protected abstract T readItem(StaxResponseParser parser,
+			XMLStreamReader reader) throws XMLStreamException;
+
+	public boolean hasNext() {
+		if (next != null) {
+			return true;
+		}
+		if (closed) {
+			return false;
+		}
+
+		try {
+			while (StaxResponseParser.nextChild(reader)) {
+				if (itemName.equals(reader.getLocalName())) {
+					next = readItem(parser, reader);
+					return true;
+				}
+				StaxResponseParser.skip(reader);
+			}
+		} catch (XMLStreamException e) {
+			close();
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+
+		// Release the connection as soon as the last item has been read
+		close();
+		return false;
+	}
+
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		T item = next;
+		next = null;
+		return item;
+	}
+
+	/**
+	 * Items cannot be removed.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             always.
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Stop reading the response and release the connection. It is safe to
+	 * call this more than once.
+	 */
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		try {
+			if (reader != null) {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			// Ignore since the response is closed below regardless
+		} finally {
+			transportResponse.close();
+		}
+	}
+
+	/**
+	 * Get the page number of this response.
+	 * 
+	 * @return the page
+	 */
+	public long getPage() {
+		return page.getPage();
+	}
+
+	/**
+	 * Get the total number of pages for the query.
+	 * 
+	 * @return the pages
+	 */
+	public long getPages() {
+		return page.getPages();
+	}
+
+	/**
+	 * Get the number of items per page.
+	 * 
+	 * @return the per page
+	 */
+	public long getPerPage() {
+		return page.getPerPage();
+	}
+
+	/**
+	 * Get the total number of items for the query.
+	 * 
+	 * @return the total
+	 */
+	public long getTotal() {
+		return page.getTotal();
+	}
+}
@@ -0,0 +1,59 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.IOException;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.episodic.platform.client.exception.ResponseException;
+import com.episodic.platform.client.parser.StaxResponseParser;
+import com.episodic.platform.client.response.query.ModificationCallbackItem;
+import com.episodic.platform.client.response.query.ModificationCallbacksResponse;
+import com.episodic.platform.client.transport.TransportResponse;
+
+/**
+ * Iterates over the callbacks in a modification callbacks response as they
+ * are read from the server.
+ * 
+ * @see QueryService#modificationCallbacksIterator(org.joda.time.DateTime,
+ *      java.util.Map)
+ * @author Randy Simon
+ */
+public class ModificationCallbackIterator extends
+		ItemIterator<ModificationCallbackItem> {
+
+	/**
+	 * Constructor
+	 * 
+	 * @param connection
+	 *            the connection the request was made on.
+	 * @param transportResponse
+	 *            the unread response.
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 * @throws IOException
+	 */
+	ModificationCallbackIterator(Connection connection,
+			TransportResponse transportResponse) throws JAXBException,
+			ResponseException, IOException {
+		super(connection, transportResponse,
+				new ModificationCallbacksResponse(), "modification_callbacks",
+				"modification_callback");
+	}
+
+	@Override
+	protected ModificationCallbackItem readItem(StaxResponseParser parser,
+			XMLStreamReader reader) throws XMLStreamException {
+		return parser.readModificationCallback(reader);
+	}
+}
@@ -10,7 +10,14 @@
 package com.episodic.platform.client;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.JAXBException;
 
@@ -18,13 +25,28 @@ import org.apache.http.client.ClientProtocolException;
 import org.joda.time.DateTime;
 
 import com.episodic.platform.client.exception.ResponseException;
+import com.episodic.platform.client.query.EpisodesQuery;
+import com.episodic.platform.client.query.PlaylistsQuery;
+import com.episodic.platform.client.query.ShowsQuery;
+import com.episodic.platform.client.response.query.CollectionResponse;
+import com.episodic.platform.client.response.query.EpisodeItem;
 import com.episodic.platform.client.response.query.EpisodesResponse;
+import com.episodic.platform.client.response.query.ModificationCallbackItem;
+import com.episodic.platform.client.response.query.ModificationCallbacksResponse;
+import com.episodic.platform.client.response.query.PlaylistItem;
 import com.episodic.platform.client.response.query.PlaylistsResponse;
+import com.episodic.platform.client.response.query.ShowItem;
 import com.episodic.platform.client.response.query.ShowsResponse;
 
 /**
  * Class for making request to the Episodic Platform API Query service.
  * 
+ * <p>
+ * The episodes, playlists and shows queries are answered from the
+ * connection's {@link com.episodic.platform.client.cache.ResponseCache} when
+ * one is set, and identical queries made at the same time share one request
+ * when the connection coalesces requests.
+ * 
  * @author Randy Simon
  */
 public class QueryService extends BaseService {
@@ -49,6 +71,27 @@ public class QueryService extends BaseService {
 	 */
 	private static final String PLAYLISTS_METHOD = "playlists";
 
+	/**
+	 * The param used to request a specific page.
+	 */
+	private static final String PAGE_PARAM = "page";
+
+	/**
+	 * The param used to set the page size.
+	 */
+	private static final String PER_PAGE_PARAM = "per_page";
+
+	/**
+	 * The param used to request only the callbacks that have not been
+	 * processed.
+	 */
+	private static final String PENDING_ONLY_PARAM = "pending_only";
+
+	/**
+	 * The param used to limit the callbacks to those registered after a time.
+	 */
+	private static final String SINCE_PARAM = "since";
+
 	/**
 	 * Shows query
 	 */
@@ -158,10 +201,131 @@ public class QueryService extends BaseService {
 	public EpisodesResponse episodes(Map<String, Object> options)
 			throws ClientProtocolException, IOException, JAXBException,
 			ResponseException {
-		return (EpisodesResponse) connection.doGet(SERVICE_NAME,
+		return (EpisodesResponse) connection.doCachedGet(SERVICE_NAME,
 				EPISODES_METHOD, options);
 	}
 
+	/**
+	 * Version of {@link #episodes(Map)} that takes a typed query. The query's
+	 * params are converted once, so reusing the same query for many requests
+	 * avoids converting the options every time.
+	 * 
+	 * @param query
+	 *            the query options.
+	 * @return The parsed response.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	public EpisodesResponse episodes(EpisodesQuery query)
+			throws ClientProtocolException, IOException, JAXBException,
+			ResponseException {
+		return (EpisodesResponse) connection.doCachedGet(SERVICE_NAME,
+				EPISODES_METHOD, query);
+	}
+
+	/**
+	 * Asynchronous version of {@link #episodes(Map)} that runs the request on
+	 * the connection's executor.
+	 * 
+	 * @see Connection#submit(Callable)
+	 * @return a future for the parsed response.
+	 */
+	public Future<EpisodesResponse> episodesAsync(
+			final Map<String, Object> options) {
+		return connection.submit(new Callable<EpisodesResponse>() {
+			public EpisodesResponse call() throws Exception {
+				return episodes(options);
+			}
+		});
+	}
+
+	/**
+	 * Streaming version of {@link #episodes(Map)}. Each episode is parsed as
+	 * it is read from the server, so processing can start before the whole
+	 * response has arrived and memory use does not grow with the page size.
+	 * The iterator must be closed if it is not read to the end.
+	 * 
+	 * @param options
+	 *            A hash of optional attributes. See {@link #episodes(Map)}.
+	 * @return an iterator over the episodes in the response.
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	public EpisodeIterator episodesIterator(Map<String, Object> options)
+			throws IOException, JAXBException, ResponseException {
+		return new EpisodeIterator(connection, connection.doGetUnparsed(
+				SERVICE_NAME, EPISODES_METHOD, options));
+	}
+
+	/**
+	 * Pages through every result of {@link #episodes(Map)}, requesting the
+	 * next page in the background while the current one is consumed. The
+	 * first page is requested before this method returns.
+	 * 
+	 * @param options
+	 *            A hash of optional attributes. See {@link #episodes(Map)}.
+	 * @return an iterator over the episodes in every page.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	public CollectionPager<EpisodesResponse, EpisodeItem> episodesPager(
+			Map<String, Object> options) throws ClientProtocolException,
+			IOException, JAXBException, ResponseException {
+		return new CollectionPager<EpisodesResponse, EpisodeItem>(connection,
+				options, episodes(options)) {
+			@Override
+			protected EpisodesResponse fetchPage(Map<String, Object> options)
+					throws Exception {
+				return episodes(options);
+			}
+
+			@Override
+			protected List<EpisodeItem> getItems(EpisodesResponse page) {
+				return page.getEpisodes();
+			}
+		};
+	}
+
+	/**
+	 * Requests every page of {@link #episodes(Map)} and returns all of the
+	 * episodes in page order. After the first page the remaining pages are
+	 * requested concurrently on the connection's {@link BulkExecutor}, so
+	 * the number of requests in flight is limited by
+	 * {@link Connection#setBulkConcurrency(int)}.
+	 * 
+	 * @param options
+	 *            A hash of optional attributes. See {@link #episodes(Map)}.
+	 * @return the episodes in every page.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	public List<EpisodeItem> fetchAllEpisodes(Map<String, Object> options)
+			throws ClientProtocolException, IOException, JAXBException,
+			ResponseException {
+		List<EpisodesResponse> pages = fetchAllPages(options, episodes(options),
+				new PageRequest<EpisodesResponse>() {
+					public EpisodesResponse request(Map<String, Object> options)
+							throws Exception {
+						return episodes(options);
+					}
+				});
+
+		List<EpisodeItem> episodes = new ArrayList<EpisodeItem>();
+		for (EpisodesResponse page : pages) {
+			if (page.getEpisodes() != null) {
+				episodes.addAll(page.getEpisodes());
+			}
+		}
+		return episodes;
+	}
+
 	/**
 	 * Third-party applications can register to be notified of changes to
 	 * episodes and playlists in their network by providing an Modification URL
@@ -206,7 +370,149 @@ public class QueryService extends BaseService {
 			Map<String, Object> options) throws ClientProtocolException,
 			ResponseException, IOException, JAXBException {
 		return connection.doGet(SERVICE_NAME, MODIFICATION_CALLBACKS_METHOD,
-				options, false).getBody();
+				sinceOptions(since, options), false).getBody();
+	}
+
+	/**
+	 * Version of {@link #modificationCallbacks(DateTime, Map)} that returns
+	 * the parsed response. The responses are never cached since they are
+	 * expected to change between requests.
+	 * 
+	 * @param since
+	 *            All callbacks registered since the provided date will be
+	 *            included in the response.
+	 * @param options
+	 *            Optional attributes.
+	 * @return The parsed response.
+	 * @throws ClientProtocolException
+	 * @throws ResponseException
+	 * @throws IOException
+	 * @throws JAXBException
+	 */
+	public ModificationCallbacksResponse modificationCallbacksResponse(
+			DateTime since, Map<String, Object> options)
+			throws ClientProtocolException, ResponseException, IOException,
+			JAXBException {
+		return (ModificationCallbacksResponse) connection.doGet(SERVICE_NAME,
+				MODIFICATION_CALLBACKS_METHOD, sinceOptions(since, options));
+	}
+
+	/**
+	 * Streaming version of
+	 * {@link #modificationCallbacksResponse(DateTime, Map)}. Each callback is
+	 * parsed as it is read from the server. The iterator must be closed if it
+	 * is not read to the end.
+	 * 
+	 * @param since
+	 *            All callbacks registered since the provided date will be
+	 *            included in the response.
+	 * @param options
+	 *            Optional attributes. See
+	 *            {@link #modificationCallbacks(DateTime, Map)}.
+	 * @return an iterator over the callbacks in the response.
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	public ModificationCallbackIterator modificationCallbacksIterator(
+			DateTime since, Map<String, Object> options) throws IOException,
+			JAXBException, ResponseException {
+		return new ModificationCallbackIterator(connection, connection
+				.doGetUnparsed(SERVICE_NAME, MODIFICATION_CALLBACKS_METHOD,
+						sinceOptions(since, options)));
+	}
+
+	/**
+	 * Pages through every callback registered since a time, requesting the
+	 * next page in the background while the current one is consumed. The
+	 * first page is requested before this method returns.
+	 * 
+	 * @param since
+	 *            All callbacks registered since the provided date will be
+	 *            included in the response.
+	 * @param options
+	 *            Optional attributes. See
+	 *            {@link #modificationCallbacks(DateTime, Map)}.
+	 * @return an iterator over the callbacks in every page.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	public CollectionPager<ModificationCallbacksResponse, ModificationCallbackItem> modificationCallbacksPager(
+			final DateTime since, Map<String, Object> options)
+			throws ClientProtocolException, IOException, JAXBException,
+			ResponseException {
+		return new CollectionPager<ModificationCallbacksResponse, ModificationCallbackItem>(
+				connection, options, modificationCallbacksResponse(since,
+						options)) {
+			@Override
+			protected ModificationCallbacksResponse fetchPage(
+					Map<String, Object> options) throws Exception {
+				return modificationCallbacksResponse(since, options);
+			}
+
+			@Override
+			protected List<ModificationCallbackItem> getItems(
+					ModificationCallbacksResponse page) {
+				return page.getCallbacks();
+			}
+		};
+	}
+
+	/**
+	 * Version of {@link #modificationCallbacksPager(DateTime, Map)} that
+	 * only returns the callbacks that have not been processed yet.
+	 * 
+	 * @param since
+	 *            All callbacks registered since the provided date will be
+	 *            included in the response.
+	 * @param perPage
+	 *            the number of callbacks requested per page.
+	 * @return an iterator over the pending callbacks in every page.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	public CollectionPager<ModificationCallbacksResponse, ModificationCallbackItem> pendingModificationCallbacksPager(
+			DateTime since, int perPage) throws ClientProtocolException,
+			IOException, JAXBException, ResponseException {
+		Map<String, Object> options = new HashMap<String, Object>();
+		options.put(PENDING_ONLY_PARAM, Boolean.TRUE);
+		options.put(PER_PAGE_PARAM, perPage);
+		return modificationCallbacksPager(since, options);
+	}
+
+	/**
+	 * Copy the options and add the since param.
+	 */
+	private static Map<String, Object> sinceOptions(DateTime since,
+			Map<String, Object> options) {
+		Map<String, Object> result = new HashMap<String, Object>();
+		if (options != null) {
+			result.putAll(options);
+		}
+		if (since != null) {
+			result.put(SINCE_PARAM, since);
+		}
+		return result;
+	}
+
+	/**
+	 * Asynchronous version of {@link #modificationCallbacks(DateTime, Map)}
+	 * that runs the request on the connection's executor.
+	 * 
+	 * @see Connection#submit(Callable)
+	 * @return a future for the XML response.
+	 */
+	public Future<String> modificationCallbacksAsync(final DateTime since,
+			final Map<String, Object> options) {
+		return connection.submit(new Callable<String>() {
+			public String call() throws Exception {
+				return modificationCallbacks(since, options);
+			}
+		});
 	}
 
 	/**
@@ -270,10 +576,112 @@ public class QueryService extends BaseService {
 	public PlaylistsResponse playlists(Map<String, Object> options)
 			throws ClientProtocolException, IOException, JAXBException,
 			ResponseException {
-		return (PlaylistsResponse) connection.doGet(SERVICE_NAME,
+		return (PlaylistsResponse) connection.doCachedGet(SERVICE_NAME,
 				PLAYLISTS_METHOD, options);
 	}
 
+	/**
+	 * Version of {@link #playlists(Map)} that takes a typed query. The query's
+	 * params are converted once, so reusing the same query for many requests
+	 * avoids converting the options every time.
+	 * 
+	 * @param query
+	 *            the query options.
+	 * @return The parsed response.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	public PlaylistsResponse playlists(PlaylistsQuery query)
+			throws ClientProtocolException, IOException, JAXBException,
+			ResponseException {
+		return (PlaylistsResponse) connection.doCachedGet(SERVICE_NAME,
+				PLAYLISTS_METHOD, query);
+	}
+
+	/**
+	 * Asynchronous version of {@link #playlists(Map)} that runs the request on
+	 * the connection's executor.
+	 * 
+	 * @see Connection#submit(Callable)
+	 * @return a future for the parsed response.
+	 */
+	public Future<PlaylistsResponse> playlistsAsync(
+			final Map<String, Object> options) {
+		return connection.submit(new Callable<PlaylistsResponse>() {
+			public PlaylistsResponse call() throws Exception {
+				return playlists(options);
+			}
+		});
+	}
+
+	/**
+	 * Pages through every result of {@link #playlists(Map)}, requesting the
+	 * next page in the background while the current one is consumed. The
+	 * first page is requested before this method returns.
+	 * 
+	 * @param options
+	 *            A hash of optional attributes. See {@link #playlists(Map)}.
+	 * @return an iterator over the playlists in every page.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	public CollectionPager<PlaylistsResponse, PlaylistItem> playlistsPager(
+			Map<String, Object> options) throws ClientProtocolException,
+			IOException, JAXBException, ResponseException {
+		return new CollectionPager<PlaylistsResponse, PlaylistItem>(connection,
+				options, playlists(options)) {
+			@Override
+			protected PlaylistsResponse fetchPage(Map<String, Object> options)
+					throws Exception {
+				return playlists(options);
+			}
+
+			@Override
+			protected List<PlaylistItem> getItems(PlaylistsResponse page) {
+				return page.getPlaylists();
+			}
+		};
+	}
+
+	/**
+	 * Requests every page of {@link #playlists(Map)} and returns all of the
+	 * playlists in page order. After the first page the remaining pages are
+	 * requested concurrently on the connection's {@link BulkExecutor}, so
+	 * the number of requests in flight is limited by
+	 * {@link Connection#setBulkConcurrency(int)}.
+	 * 
+	 * @param options
+	 *            A hash of optional attributes. See {@link #playlists(Map)}.
+	 * @return the playlists in every page.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	public List<PlaylistItem> fetchAllPlaylists(Map<String, Object> options)
+			throws ClientProtocolException, IOException, JAXBException,
+			ResponseException {
+		List<PlaylistsResponse> pages = fetchAllPages(options,
+				playlists(options), new PageRequest<PlaylistsResponse>() {
+					public PlaylistsResponse request(Map<String, Object> options)
+							throws Exception {
+						return playlists(options);
+					}
+				});
+
+		List<PlaylistItem> playlists = new ArrayList<PlaylistItem>();
+		for (PlaylistsResponse page : pages) {
+			if (page.getPlaylists() != null) {
+				playlists.addAll(page.getPlaylists());
+			}
+		}
+		return playlists;
+	}
+
 	/**
 	 * Queries for shows in your network. The options parameter allows you to
 	 * limit your results. Acceptable options are:
@@ -314,7 +722,174 @@ public class QueryService extends BaseService {
 	public ShowsResponse shows(Map<String, Object> options)
 			throws ClientProtocolException, IOException, JAXBException,
 			ResponseException {
-		return (ShowsResponse) connection.doGet(SERVICE_NAME, SHOWS_METHOD,
-				options);
+		return (ShowsResponse) connection.doCachedGet(SERVICE_NAME,
+				SHOWS_METHOD, options);
+	}
+
+	/**
+	 * Version of {@link #shows(Map)} that takes a typed query. The query's
+	 * params are converted once, so reusing the same query for many requests
+	 * avoids converting the options every time.
+	 * 
+	 * @param query
+	 *            the query options.
+	 * @return The parsed response.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	public ShowsResponse shows(ShowsQuery query) throws ClientProtocolException,
+			IOException, JAXBException, ResponseException {
+		return (ShowsResponse) connection.doCachedGet(SERVICE_NAME,
+				SHOWS_METHOD, query);
+	}
+
+	/**
+	 * Asynchronous version of {@link #shows(Map)} that runs the request on the
+	 * connection's executor.
+	 * 
+	 * @see Connection#submit(Callable)
+	 * @return a future for the parsed response.
+	 */
+	public Future<ShowsResponse> showsAsync(final Map<String, Object> options) {
+		return connection.submit(new Callable<ShowsResponse>() {
+			public ShowsResponse call() throws Exception {
+				return shows(options);
+			}
+		});
+	}
+
+	/**
+	 * Pages through every result of {@link #shows(Map)}, requesting the
+	 * next page in the background while the current one is consumed. The
+	 * first page is requested before this method returns.
+	 * 
+	 * @param options
+	 *            A hash of optional attributes. See {@link #shows(Map)}.
+	 * @return an iterator over the shows in every page.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	public CollectionPager<ShowsResponse, ShowItem> showsPager(
+			Map<String, Object> options) throws ClientProtocolException,
+			IOException, JAXBException, ResponseException {
+		return new CollectionPager<ShowsResponse, ShowItem>(connection,
+				options, shows(options)) {
+			@Override
+			protected ShowsResponse fetchPage(Map<String, Object> options)
+					throws Exception {
+				return shows(options);
+			}
+
+			@Override
+			protected List<ShowItem> getItems(ShowsResponse page) {
+				return page.getShows();
+			}
+		};
+	}
+
+	/**
+	 * Requests every page of {@link #shows(Map)} and returns all of the
+	 * shows in page order. After the first page the remaining pages are
+	 * requested concurrently on the connection's {@link BulkExecutor}, so
+	 * the number of requests in flight is limited by
+	 * {@link Connection#setBulkConcurrency(int)}.
+	 * 
+	 * @param options
+	 *            A hash of optional attributes. See {@link #shows(Map)}.
+	 * @return the shows in every page.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	public List<ShowItem> fetchAllShows(Map<String, Object> options)
+			throws ClientProtocolException, IOException, JAXBException,
+			ResponseException {
+		List<ShowsResponse> pages = fetchAllPages(options, shows(options),
+				new PageRequest<ShowsResponse>() {
+					public ShowsResponse request(Map<String, Object> options)
+							throws Exception {
+						return shows(options);
+					}
+				});
+
+		List<ShowItem> shows = new ArrayList<ShowItem>();
+		for (ShowsResponse page : pages) {
+			if (page.getShows() != null) {
+				shows.addAll(page.getShows());
+			}
+		}
+		return shows;
+	}
+
+	/**
+	 * Requests the pages after the first one concurrently.
+	 * 
+	 * @param options
+	 *            the options used for the first page.
+	 * @param firstPage
+	 *            the response for the first page.
+	 * @param request
+	 *            makes the request for a page.
+	 * @return every page in page order, starting with the first page.
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	private <R extends CollectionResponse> List<R> fetchAllPages(
+			Map<String, Object> options, R firstPage,
+			final PageRequest<R> request) throws IOException, JAXBException,
+			ResponseException {
+		List<R> pages = new ArrayList<R>();
+		pages.add(firstPage);
+
+		List<Callable<R>> tasks = new ArrayList<Callable<R>>();
+		for (long page = firstPage.getPage() + 1; page <= firstPage
+				.getPages(); page++) {
+			final Map<String, Object> pageOptions = new HashMap<String, Object>();
+			if (options != null) {
+				pageOptions.putAll(options);
+			}
+			pageOptions.put(PAGE_PARAM, page);
+			tasks.add(new Callable<R>() {
+				public R call() throws Exception {
+					return request.request(pageOptions);
+				}
+			});
+		}
+
+		if (!tasks.isEmpty()) {
+			try {
+				pages.addAll(connection.getBulkExecutor().invokeAll(tasks));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(
+						"Interrupted while requesting pages");
+			} catch (ExecutionException e) {
+				throw Connection.unwrap(e);
+			}
+		}
+
+		return pages;
+	}
+
+	/**
+	 * Makes the request for one page of a query.
+	 */
+	private interface PageRequest<R extends CollectionResponse> {
+
+		/**
+		 * Request a page.
+		 * 
+		 * @param options
+		 *            the query options including the page number.
+		 * @return the response for the page.
+		 * @throws Exception
+		 */
+		R request(Map<String, Object> options) throws Exception;
 	}
 }
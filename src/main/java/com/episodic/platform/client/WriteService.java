@@ -11,35 +11,36 @@ package com.episodic.platform.client;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.JAXBException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.http.HttpResponse;
-import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.mime.MultipartEntity;
-import org.apache.http.entity.mime.content.FileBody;
-import org.apache.http.entity.mime.content.StringBody;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.util.EntityUtils;
 
 import com.episodic.platform.client.exception.FileUploadFailedException;
 import com.episodic.platform.client.exception.ResponseException;
 import com.episodic.platform.client.response.write.CreateAssetResponse;
 import com.episodic.platform.client.response.write.CreateEpisodeResponse;
 import com.episodic.platform.client.response.write.CreatePlaylistResponse;
+import com.episodic.platform.client.response.write.CreateUpdateEpisodeResponse;
 import com.episodic.platform.client.response.write.UpdateEpisodeResponse;
 import com.episodic.platform.client.response.write.UpdatePlaylistResponse;
 import com.episodic.platform.client.response.write.Upload;
 import com.episodic.platform.client.response.write.UploadParam;
+import com.episodic.platform.client.transport.TransportResponse;
 
 /**
  * Class for making request to the Episodic Platform API Write service.
@@ -276,6 +277,22 @@ public class WriteService extends BaseService {
 				CREATE_EPISODE_METHOD, params, null);
 	}
 
+	/**
+	 * Asynchronous version of {@link #createEpisode(String, String, Map)} that
+	 * runs the request on the connection's executor.
+	 * 
+	 * @see Connection#submit(Callable)
+	 * @return a future for the parsed response.
+	 */
+	public Future<CreateEpisodeResponse> createEpisodeAsync(final String showId,
+			final String name, final Map<String, Object> options) {
+		return connection.submit(new Callable<CreateEpisodeResponse>() {
+			public CreateEpisodeResponse call() throws Exception {
+				return createEpisode(showId, name, options);
+			}
+		});
+	}
+
 	/**
 	 * Creates a manual playlist in the Episodic System in the specified show.
 	 * 
@@ -353,6 +370,23 @@ public class WriteService extends BaseService {
 				CREATE_PLAYLIST_METHOD, params, null);
 	}
 
+	/**
+	 * Asynchronous version of {@link #createPlaylist(String, String, Map)} that
+	 * runs the request on the connection's executor.
+	 * 
+	 * @see Connection#submit(Callable)
+	 * @return a future for the parsed response.
+	 */
+	public Future<CreatePlaylistResponse> createPlaylistAsync(
+			final String showId, final String name,
+			final Map<String, Object> options) {
+		return connection.submit(new Callable<CreatePlaylistResponse>() {
+			public CreatePlaylistResponse call() throws Exception {
+				return createPlaylist(showId, name, options);
+			}
+		});
+	}
+
 	/**
 	 * Updates an episode in the Episodic System. This method will return the
 	 * information needed to upload the video file for this episode. If you are
@@ -457,6 +491,22 @@ public class WriteService extends BaseService {
 				UPDATE_EPISODE_METHOD, params, null);
 	}
 
+	/**
+	 * Asynchronous version of {@link #updateEpisode(String, Map)} that runs the
+	 * request on the connection's executor.
+	 * 
+	 * @see Connection#submit(Callable)
+	 * @return a future for the parsed response.
+	 */
+	public Future<UpdateEpisodeResponse> updateEpisodeAsync(
+			final String episodeId, final Map<String, Object> options) {
+		return connection.submit(new Callable<UpdateEpisodeResponse>() {
+			public UpdateEpisodeResponse call() throws Exception {
+				return updateEpisode(episodeId, options);
+			}
+		});
+	}
+
 	/**
 	 * Updates a manual playlist in the Episodic System with the specified ID.
 	 * <p>
@@ -521,6 +571,22 @@ public class WriteService extends BaseService {
 				UPDATE_PLAYLIST_METHOD, params, null);
 	}
 
+	/**
+	 * Asynchronous version of {@link #updatePlaylist(String, Map)} that runs
+	 * the request on the connection's executor.
+	 * 
+	 * @see Connection#submit(Callable)
+	 * @return a future for the parsed response.
+	 */
+	public Future<UpdatePlaylistResponse> updatePlaylistAsync(
+			final String playlistId, final Map<String, Object> options) {
+		return connection.submit(new Callable<UpdatePlaylistResponse>() {
+			public UpdatePlaylistResponse call() throws Exception {
+				return updatePlaylist(playlistId, options);
+			}
+		});
+	}
+
 	/**
 	 * Uploads the video and/or images to the Episodic System. This method
 	 * requires that you first called @ #createEpisode(String, String, Map)} or
@@ -544,41 +610,104 @@ public class WriteService extends BaseService {
 	public void uploadFileForEpisode(Upload pendingUpload, File file)
 			throws ClientProtocolException, IOException,
 			FileUploadFailedException {
-		HttpClient client = new DefaultHttpClient();
-		HttpPost method = new HttpPost(pendingUpload.getUrl());
-
-		// Add the upload params to the post
-		MultipartEntity multipartEntity = new MultipartEntity();
+		// Add the upload params to the post in the order they were returned
+		Map<String, String> params = new LinkedHashMap<String, String>();
 		for (Iterator<UploadParam> itr = pendingUpload.getUploadParams()
 				.iterator(); itr.hasNext();) {
 			UploadParam param = itr.next();
-			multipartEntity.addPart(param.getName(), new StringBody(param
-					.getValue(), Charset.forName("UTF-8")));
+			params.put(param.getName(), param.getValue());
 		}
 
 		// Set the file
-		multipartEntity.addPart("file", new FileBody(file));
-		method.setEntity(multipartEntity);
+		Map<String, File> files = new HashMap<String, File>();
+		files.put("file", file);
 
+		TransportResponse response = connection.getTransport().post(
+				URI.create(pendingUpload.getUrl()), params, files);
 		try {
-			HttpResponse httpResponse = client.execute(method);
-			StatusLine statusLine = httpResponse.getStatusLine();
-
 			// If we get an error status, then log the error and throw an
 			// exception
-			if (statusLine.getStatusCode() > 399) {
-
-				if (httpResponse.getEntity() != null) {
-					LOG.error(EntityUtils.toString(httpResponse.getEntity()));
+			if (response.getStatusCode() > 399) {
+				String body = response.getBodyAsString();
+				if (body.length() > 0) {
+					LOG.error(body);
 				} else {
-					LOG.error("Status code = " + statusLine.getStatusCode()
+					LOG.error("Status code = " + response.getStatusCode()
 							+ " returned when attempting to upload file");
 				}
-				throw new FileUploadFailedException(statusLine.getStatusCode(),
-						statusLine.getReasonPhrase());
+				throw new FileUploadFailedException(response.getStatusCode(),
+						response.getReasonPhrase());
 			}
 		} finally {
-			client.getConnectionManager().shutdown();
+			// Release the connection back to the pool
+			response.close();
+		}
+	}
+
+	/**
+	 * Uploads several files for an episode at once. Each upload is run by the
+	 * connection's {@link BulkExecutor} so the number of concurrent uploads is
+	 * limited by {@link Connection#setBulkConcurrency(int)}. If any upload
+	 * fails the uploads that have not finished are cancelled.
+	 * <p>
+	 * 
+	 * @param response
+	 *            The response from {@link #createEpisode(String, String, Map)}
+	 *            or {@link #updateEpisode(String, Map)} that contains the
+	 *            pending uploads.
+	 * @param files
+	 *            The files to be uploaded. There must be a pending upload for
+	 *            each file.
+	 * @throws ClientProtocolException
+	 * @throws IOException
+	 * @throws FileUploadFailedException
+	 */
+	public void uploadFilesForEpisode(CreateUpdateEpisodeResponse response,
+			Collection<File> files) throws ClientProtocolException,
+			IOException, FileUploadFailedException {
+
+		// Match up the files with their pending uploads before starting
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(files
+				.size());
+		for (Iterator<File> itr = files.iterator(); itr.hasNext();) {
+			final File file = itr.next();
+			final Upload upload = response.getUploadForFile(file);
+			if (upload == null) {
+				throw new IllegalArgumentException("No pending upload for "
+						+ file.getName());
+			}
+			tasks.add(new Callable<Void>() {
+				public Void call() throws Exception {
+					uploadFileForEpisode(upload, file);
+					return null;
+				}
+			});
+		}
+
+		try {
+			connection.getBulkExecutor().invokeAll(tasks);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while uploading");
+		} catch (ExecutionException e) {
+			throw Connection.unwrap(e, FileUploadFailedException.class);
 		}
 	}
+
+	/**
+	 * Asynchronous version of {@link #uploadFileForEpisode(Upload, File)} that
+	 * runs the request on the connection's executor.
+	 * 
+	 * @see Connection#submit(Callable)
+	 * @return a future for the completed upload.
+	 */
+	public Future<Void> uploadFileForEpisodeAsync(final Upload pendingUpload,
+			final File file) {
+		return connection.submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				uploadFileForEpisode(pendingUpload, file);
+				return null;
+			}
+		});
+	}
 }
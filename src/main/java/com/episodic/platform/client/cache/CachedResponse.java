@@ -0,0 +1,258 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+import com.episodic.platform.client.response.Response;
+import com.episodic.platform.client.transport.TransportResponse;
+
+/**
+ * A response held in a {@link ResponseCache}. The raw body is kept as bytes
+ * so it can be written to disk, along with the response parsed from it once
+ * it has been parsed. Hits and revalidated responses hand out the parsed
+ * response without parsing the body again, so callers share it and must
+ * treat it as read only. Responses loaded from disk are parsed on their
+ * first hit.
+ * 
+ * @author Randy Simon
+ */
+public class CachedResponse {
+
+	/**
+	 * The HTTP status code.
+	 */
+	private final int statusCode;
+
+	/**
+	 * The charset declared by the server or <code>null</code>.
+	 */
+	private final String charset;
+
+	/**
+	 * The response body.
+	 */
+	private final byte[] body;
+
+	/**
+	 * The <code>ETag</code> header or <code>null</code>.
+	 */
+	private final String eTag;
+
+	/**
+	 * The <code>Last-Modified</code> header or <code>null</code>.
+	 */
+	private final String lastModified;
+
+	/**
+	 * The response parsed from the body or <code>null</code> if it has not
+	 * been parsed.
+	 */
+	private volatile Response response;
+
+	/**
+	 * The time in milliseconds this response was stored.
+	 */
+	private final long storedAt;
+
+	/**
+	 * The time in milliseconds after which this response is stale.
+	 */
+	private final long expiresAt;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param statusCode
+	 *            the HTTP status code.
+	 * @param charset
+	 *            the charset declared by the server or <code>null</code>.
+	 * @param body
+	 *            the response body. The array is not copied.
+	 * @param storedAt
+	 *            the time in milliseconds the response was stored.
+	 * @param expiresAt
+	 *            the time in milliseconds after which the response is stale.
+	 */
+	public CachedResponse(int statusCode, String charset, byte[] body,
+			long storedAt, long expiresAt) {
+		this(statusCode, charset, body, null, null, storedAt, expiresAt);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param statusCode
+	 *            the HTTP status code.
+	 * @param charset
+	 *            the charset declared by the server or <code>null</code>.
+	 * @param body
+	 *            the response body. The array is not copied.
+	 * @param eTag
+	 *            the <code>ETag</code> header or <code>null</code>.
+	 * @param lastModified
+	 *            the <code>Last-Modified</code> header or <code>null</code>.
+	 * @param storedAt
+	 *            the time in milliseconds the response was stored.
+	 * @param expiresAt
+	 *            the time in milliseconds after which the response is stale.
+	 */
+	public CachedResponse(int statusCode, String charset, byte[] body,
+			String eTag, String lastModified, long storedAt, long expiresAt) {
+		this.statusCode = statusCode;
+		this.charset = charset;
+		this.body = body;
+		this.eTag = eTag;
+		this.lastModified = lastModified;
+		this.storedAt = storedAt;
+		this.expiresAt = expiresAt;
+	}
+
+	/**
+	 * Create a copy of this response with new times, sharing the body and the
+	 * parsed response. Used when the server confirms a stale response has not
+	 * changed.
+	 * 
+	 * @param storedAt
+	 *            the time in milliseconds the response was revalidated.
+	 * @param expiresAt
+	 *            the time in milliseconds after which the response is stale.
+	 * @return the renewed response.
+	 */
+	public CachedResponse renew(long storedAt, long expiresAt) {
+		CachedResponse renewed = new CachedResponse(statusCode, charset, body,
+				eTag, lastModified, storedAt, expiresAt);
+		renewed.response = response;
+		return renewed;
+	}
+
+	/**
+	 * Get the response parsed from the body.
+	 * 
+	 * @return the parsed response or <code>null</code> if the body has not
+	 *         been parsed.
+	 */
+	public Response getResponse() {
+		return response;
+	}
+
+	/**
+	 * Keep the response parsed from the body so later hits can use it.
+	 * 
+	 * @param response
+	 *            the parsed response, which must not be changed later.
+	 */
+	public void setResponse(Response response) {
+		this.response = response;
+	}
+
+	/**
+	 * @return the HTTP status code.
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * @return the charset declared by the server or <code>null</code>.
+	 */
+	public String getCharset() {
+		return charset;
+	}
+
+	/**
+	 * Get a stream over the body. Each call returns a new stream.
+	 * 
+	 * @return the body.
+	 */
+	public InputStream getBody() {
+		return new ByteArrayInputStream(body);
+	}
+
+	/**
+	 * Decode the body using the declared charset, or the HTTP default if the
+	 * server did not declare one.
+	 * 
+	 * @return the body.
+	 * @throws UnsupportedEncodingException
+	 */
+	public String getBodyAsString() throws UnsupportedEncodingException {
+		return new String(body, charset != null ? charset
+				: TransportResponse.DEFAULT_CHARSET);
+	}
+
+	/**
+	 * Get the body without copying it, for writing it to disk.
+	 * 
+	 * @return the body.
+	 */
+	byte[] getBodyArray() {
+		return body;
+	}
+
+	/**
+	 * @return the size of the body in bytes.
+	 */
+	public int getLength() {
+		return body.length;
+	}
+
+	/**
+	 * @return the <code>ETag</code> header or <code>null</code>.
+	 */
+	public String getETag() {
+		return eTag;
+	}
+
+	/**
+	 * @return the <code>Last-Modified</code> header or <code>null</code>.
+	 */
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Check if the server sent a validator that can be used to ask whether
+	 * this response has changed once it is stale.
+	 * 
+	 * @return <code>true</code> if there is an <code>ETag</code> or
+	 *         <code>Last-Modified</code> header.
+	 */
+	public boolean hasValidators() {
+		return eTag != null || lastModified != null;
+	}
+
+	/**
+	 * @return the time in milliseconds this response was stored.
+	 */
+	public long getStoredAt() {
+		return storedAt;
+	}
+
+	/**
+	 * @return the time in milliseconds after which this response is stale.
+	 */
+	public long getExpiresAt() {
+		return expiresAt;
+	}
+
+	/**
+	 * Check if this response is stale.
+	 * 
+	 * @param now
+	 *            the current time in milliseconds.
+	 * @return <code>true</code> if the response has expired.
+	 */
+	public boolean isExpired(long now) {
+		return now >= expiresAt;
+	}
+}
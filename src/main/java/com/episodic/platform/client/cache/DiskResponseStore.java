@@ -0,0 +1,424 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Keeps the entries of a {@link ResponseCache} in a directory so that they
+ * survive a restart. Each entry is one small binary file holding the
+ * response body and its metadata. Files are written to a temporary file and
+ * renamed into place, except that a renewal only rewrites the times in the
+ * header. Files that cannot be read are deleted and skipped.
+ * 
+ * <p>
+ * A directory should only be used by one cache at a time.
+ * 
+ * @see ResponseCache#setStore(DiskResponseStore)
+ * @author Randy Simon
+ */
+public class DiskResponseStore {
+
+	/**
+	 * Logger for this class
+	 */
+	private static Log LOG = LogFactory.getLog(DiskResponseStore.class);
+
+	/**
+	 * Identifies an entry file.
+	 */
+	private static final int MAGIC = 0x45504331;
+
+	/**
+	 * The version of the entry file format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The extension of entry files.
+	 */
+	private static final String EXTENSION = ".entry";
+
+	/**
+	 * The extension of entry files that are still being written.
+	 */
+	private static final String TEMP_EXTENSION = ".tmp";
+
+	/**
+	 * The charset used for strings.
+	 */
+	private static final String UTF_8 = "UTF-8";
+
+	/**
+	 * Used to build file names.
+	 */
+	private static final char[] HEX_DIGITS = "0123456789abcdef"
+			.toCharArray();
+
+	/**
+	 * The directory holding the entry files.
+	 */
+	private final File directory;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param directory
+	 *            the directory to keep the entries in. It is created if it
+	 *            does not exist.
+	 * @throws IOException
+	 *             if the directory cannot be created.
+	 */
+	public DiskResponseStore(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create cache directory "
+					+ directory);
+		}
+		this.directory = directory;
+	}
+
+	/**
+	 * @return the directory holding the entry files.
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Write an entry, replacing any earlier entry for the key.
+	 * 
+	 * @param key
+	 *            the request key.
+	 * @param response
+	 *            the response.
+	 * @throws IOException
+	 */
+	public void save(String key, CachedResponse response) throws IOException {
+		File file = getFile(key);
+		File temp = new File(directory, file.getName() + TEMP_EXTENSION);
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(temp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, key);
+			out.writeInt(response.getStatusCode());
+			writeString(out, response.getCharset());
+			writeString(out, response.getETag());
+			writeString(out, response.getLastModified());
+			out.writeLong(response.getStoredAt());
+			out.writeLong(response.getExpiresAt());
+			byte[] body = response.getBodyArray();
+			out.writeInt(body.length);
+			out.write(body);
+		} finally {
+			out.close();
+		}
+
+		// Rename over the old file in one step where the platform allows it
+		if (!temp.renameTo(file)) {
+			file.delete();
+			if (!temp.renameTo(file)) {
+				temp.delete();
+				throw new IOException("Unable to write cache entry " + file);
+			}
+		}
+	}
+
+	/**
+	 * Update the times of an entry whose body has not changed, such as one the
+	 * server confirmed with a <code>304 Not Modified</code>, without writing
+	 * the body again.
+	 * 
+	 * @param key
+	 *            the request key.
+	 * @param response
+	 *            the renewed response.
+	 * @return <code>false</code> if the file does not hold the same response,
+	 *         in which case it must be saved instead.
+	 * @throws IOException
+	 */
+	public boolean renew(String key, CachedResponse response)
+			throws IOException {
+		File file = getFile(key);
+		if (!file.isFile()) {
+			return false;
+		}
+
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try {
+			long length = out.length();
+			if (out.readInt() != MAGIC || out.readInt() != VERSION
+					|| !equal(key, readString(out, length))
+					|| out.readInt() != response.getStatusCode()
+					|| !equal(response.getCharset(), readString(out, length))
+					|| !equal(response.getETag(), readString(out, length))
+					|| !equal(response.getLastModified(), readString(out,
+							length))) {
+				return false;
+			}
+			long times = out.getFilePointer();
+			out.seek(times + 16);
+			if (out.readInt() != response.getLength()) {
+				return false;
+			}
+
+			out.seek(times);
+			out.writeLong(response.getStoredAt());
+			out.writeLong(response.getExpiresAt());
+			return true;
+		} catch (EOFException e) {
+			return false;
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Delete the entry for a key.
+	 * 
+	 * @param key
+	 *            the request key.
+	 */
+	public void delete(String key) {
+		getFile(key).delete();
+	}
+
+	/**
+	 * Delete every entry.
+	 */
+	public void clear() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (isEntryFile(file)) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read every entry, including stale ones.
+	 * 
+	 * @return the entries by key, oldest first.
+	 */
+	public Map<String, CachedResponse> loadAll() {
+		Map<String, CachedResponse> unsorted = new HashMap<String, CachedResponse>();
+
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (isEntryFile(file) && !load(file, unsorted)) {
+					file.delete();
+				}
+			}
+		}
+
+		List<Map.Entry<String, CachedResponse>> loaded = new ArrayList<Map.Entry<String, CachedResponse>>(
+				unsorted.entrySet());
+		Collections.sort(loaded,
+				new Comparator<Map.Entry<String, CachedResponse>>() {
+					public int compare(Map.Entry<String, CachedResponse> a,
+							Map.Entry<String, CachedResponse> b) {
+						long x = a.getValue().getStoredAt();
+						long y = b.getValue().getStoredAt();
+						return x < y ? -1 : (x == y ? 0 : 1);
+					}
+				});
+
+		Map<String, CachedResponse> entries = new LinkedHashMap<String, CachedResponse>();
+		for (Map.Entry<String, CachedResponse> entry : loaded) {
+			entries.put(entry.getKey(), entry.getValue());
+		}
+		return entries;
+	}
+
+	/**
+	 * Read one entry file.
+	 * 
+	 * @param file
+	 *            the file.
+	 * @param entries
+	 *            the map to add the entry to.
+	 * @return <code>false</code> if the file cannot be read.
+	 */
+	private boolean load(File file, Map<String, CachedResponse> entries) {
+		// The files are small and read once, so a plain read is cheaper than
+		// mapping them and leaves nothing open that would block a delete
+		long length = file.length();
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file)));
+
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return false;
+			}
+			String key = readString(in, length);
+			int statusCode = in.readInt();
+			String charset = readString(in, length);
+			String eTag = readString(in, length);
+			String lastModified = readString(in, length);
+			long storedAt = in.readLong();
+			long expiresAt = in.readLong();
+			byte[] body = new byte[readLength(in, length)];
+			in.readFully(body);
+
+			// Unfinished files are named after the key plus an extension
+			if (key == null || !file.equals(getFile(key))) {
+				return false;
+			}
+			entries.put(key, new CachedResponse(statusCode, charset, body,
+					eTag, lastModified, storedAt, expiresAt));
+			return true;
+		} catch (EOFException e) {
+			LOG.warn("Truncated cache entry " + file);
+			return false;
+		} catch (IOException e) {
+			LOG.warn("Unable to read cache entry " + file, e);
+			return false;
+		} catch (RuntimeException e) {
+			LOG.warn("Unable to read cache entry " + file, e);
+			return false;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// Nothing more can be done with the file
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the file of a key. The name is a digest of the key so any key can
+	 * be stored.
+	 */
+	private File getFile(String key) {
+		byte[] digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1").digest(
+					key.getBytes(UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+
+		char[] name = new char[digest.length * 2];
+		for (int i = 0; i < digest.length; i++) {
+			name[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0x0f];
+			name[i * 2 + 1] = HEX_DIGITS[digest[i] & 0x0f];
+		}
+		return new File(directory, new String(name) + EXTENSION);
+	}
+
+	/**
+	 * Check if a file is an entry file, whether finished or not.
+	 */
+	private static boolean isEntryFile(File file) {
+		String name = file.getName();
+		return name.endsWith(EXTENSION)
+				|| name.endsWith(EXTENSION + TEMP_EXTENSION);
+	}
+
+	/**
+	 * Write a string that may be <code>null</code> as a length followed by
+	 * UTF-8 bytes.
+	 */
+	private static void writeString(DataOutputStream out, String value)
+			throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = value.getBytes(UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Read a string written by
+	 * {@link #writeString(DataOutputStream, String)}.
+	 * 
+	 * @param in
+	 *            the stream or file.
+	 * @param fileLength
+	 *            the length of the file, which no length can be over.
+	 */
+	private static String readString(DataInput in, long fileLength)
+			throws IOException {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		byte[] bytes = new byte[checkLength(length, fileLength)];
+		in.readFully(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	/**
+	 * Read the length of a byte array.
+	 * 
+	 * @param in
+	 *            the stream or file.
+	 * @param fileLength
+	 *            the length of the file, which no length can be over.
+	 */
+	private static int readLength(DataInput in, long fileLength)
+			throws IOException {
+		return checkLength(in.readInt(), fileLength);
+	}
+
+	/**
+	 * Check a length read from a file so a corrupt file cannot cause a huge
+	 * allocation.
+	 */
+	private static int checkLength(int length, long fileLength)
+			throws IOException {
+		if (length < 0 || length > fileLength) {
+			throw new IOException("Invalid length " + length);
+		}
+		return length;
+	}
+
+	/**
+	 * Compare two strings that may be <code>null</code>.
+	 */
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
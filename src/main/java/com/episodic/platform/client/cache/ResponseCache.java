@@ -0,0 +1,698 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.episodic.platform.client.util.DaemonThreadFactory;
+import com.episodic.platform.client.util.FormEncoder;
+
+/**
+ * An in memory cache of GET responses. Responses are kept for a time to live
+ * that can be set per API method and the least recently used responses are
+ * evicted once either the number of entries or the total size of the bodies
+ * goes over its limit. Only successful responses are cached.
+ * 
+ * <p>
+ * Stale responses that came with an <code>ETag</code> or
+ * <code>Last-Modified</code> header are kept so the connection can ask the
+ * server whether they have changed instead of downloading them again.
+ * 
+ * <p>
+ * Responses can also be kept on disk with a {@link DiskResponseStore} so that
+ * a restarted application starts with a warm cache. The files are written by
+ * a background thread so requests never wait for the disk.
+ * 
+ * <p>
+ * A cache is enabled by passing it to
+ * {@link com.episodic.platform.client.Connection#setResponseCache(ResponseCache)}
+ * and may be shared by many threads and connections. The keys include the
+ * server and the API key of the connection, so connections to different
+ * servers or with different credentials never see each other's responses.
+ * 
+ * @author Randy Simon
+ */
+public class ResponseCache {
+
+	/**
+	 * Logger for this class
+	 */
+	private static Log LOG = LogFactory.getLog(ResponseCache.class);
+
+	/**
+	 * The default maximum number of entries.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+	/**
+	 * The default maximum total size of the cached bodies in bytes.
+	 */
+	public static final long DEFAULT_MAX_BYTES = 16L * 1024L * 1024L;
+
+	/**
+	 * The default time to live in milliseconds.
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE = 60L * 1000L;
+
+	/**
+	 * The params added to every request which are left out of the key.
+	 */
+	private static final String[] REQUEST_PARAMS = { "expires", "signature" };
+
+	/**
+	 * The param holding the API key.
+	 */
+	private static final String KEY_PARAM = "key";
+
+	/**
+	 * The cached responses in least recently used order. Guarded by this
+	 * object's lock.
+	 */
+	private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<String, CachedResponse>(
+			16, 0.75f, true);
+
+	/**
+	 * The time to live per method name.
+	 */
+	private final ConcurrentHashMap<String, Long> timesToLive = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * The time to live of methods that have not been configured.
+	 */
+	private volatile long defaultTimeToLive = DEFAULT_TIME_TO_LIVE;
+
+	/**
+	 * The maximum number of entries.
+	 */
+	private final int maxEntries;
+
+	/**
+	 * The store responses are also kept in or <code>null</code>.
+	 */
+	private volatile DiskResponseStore store;
+
+	/**
+	 * The keys waiting to be written to the store. The value is
+	 * <code>true</code> if the body must be written and <code>false</code>
+	 * if only the times changed.
+	 */
+	private final ConcurrentHashMap<String, Boolean> pendingWrites = new ConcurrentHashMap<String, Boolean>();
+
+	/**
+	 * Writes to the store one key at a time, so the writes of a key are in
+	 * order.
+	 */
+	private final ExecutorService writer = Executors
+			.newSingleThreadExecutor(new DaemonThreadFactory(
+					"episodic-cache-writer"));
+
+	/**
+	 * <code>true</code> if stale responses are returned while they are
+	 * refreshed in the background.
+	 */
+	private volatile boolean revalidateInBackground;
+
+	/**
+	 * The maximum total size of the cached bodies in bytes.
+	 */
+	private final long maxBytes;
+
+	/**
+	 * The total size of the cached bodies in bytes. Guarded by this object's
+	 * lock.
+	 */
+	private long bytes;
+
+	/**
+	 * The number of lookups that found a fresh response.
+	 */
+	private final AtomicLong hitCount = new AtomicLong();
+
+	/**
+	 * The number of lookups that did not find a fresh response.
+	 */
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * The number of stale responses the server confirmed had not changed.
+	 */
+	private final AtomicLong revalidationCount = new AtomicLong();
+
+	/**
+	 * The number of responses evicted to stay within the limits.
+	 */
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * Create a cache with the default limits.
+	 */
+	public ResponseCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param maxEntries
+	 *            the maximum number of entries.
+	 * @param maxBytes
+	 *            the maximum total size of the cached bodies in bytes.
+	 */
+	public ResponseCache(int maxEntries, long maxBytes) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException(
+					"maxEntries must be at least 1");
+		}
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("maxBytes must be at least 1");
+		}
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Set how long responses are kept for methods that do not have their own
+	 * time to live. The default is one minute.
+	 * 
+	 * @param duration
+	 *            the time to live.
+	 * @param unit
+	 *            the unit of the duration.
+	 */
+	public void setDefaultTimeToLive(long duration, TimeUnit unit) {
+		defaultTimeToLive = unit.toMillis(duration);
+	}
+
+	/**
+	 * Set how long responses of an API method are kept. A time to live of
+	 * zero disables caching for the method.
+	 * 
+	 * @param methodName
+	 *            the API method, for example "shows".
+	 * @param duration
+	 *            the time to live.
+	 * @param unit
+	 *            the unit of the duration.
+	 */
+	public void setTimeToLive(String methodName, long duration, TimeUnit unit) {
+		timesToLive.put(methodName, unit.toMillis(duration));
+	}
+
+	/**
+	 * Get how long responses of an API method are kept.
+	 * 
+	 * @param methodName
+	 *            the API method.
+	 * @return the time to live in milliseconds.
+	 */
+	public long getTimeToLive(String methodName) {
+		Long timeToLive = timesToLive.get(methodName);
+		return timeToLive != null ? timeToLive.longValue()
+				: defaultTimeToLive;
+	}
+
+	/**
+	 * Create the key of a request. The params are sorted so the order they
+	 * were given in does not matter and the params that change with every
+	 * request, such as the signature, are left out. The API key is always
+	 * part of the key.
+	 * 
+	 * @param baseURI
+	 *            the URI of the API method without a query string, which
+	 *            includes the scheme, host and port of the server.
+	 * @param apiKey
+	 *            the API key the request is made with.
+	 * @param params
+	 *            the request params converted to strings.
+	 * @return the key.
+	 */
+	public static String createKey(String baseURI, String apiKey,
+			Map<String, String> params) {
+		Map<String, String> sorted = new TreeMap<String, String>(params);
+		for (String name : REQUEST_PARAMS) {
+			sorted.remove(name);
+		}
+		sorted.put(KEY_PARAM, apiKey != null ? apiKey : "");
+
+		StringBuilder key = new StringBuilder(baseURI.length() + 1
+				+ sorted.size() * 16);
+		key.append(baseURI).append('?');
+		return FormEncoder.appendParams(key, sorted).toString();
+	}
+
+	/**
+	 * Get a fresh response. If responses are revalidated in the background a
+	 * stale response is returned as well, and the caller is expected to
+	 * refresh it.
+	 * 
+	 * @param key
+	 *            the request key.
+	 * @return the response or <code>null</code> if there is no usable
+	 *         response for the key.
+	 */
+	public CachedResponse get(String key) {
+		CachedResponse response;
+		boolean removed = false;
+		synchronized (this) {
+			response = entries.get(key);
+			if (response != null && !revalidateInBackground
+					&& response.isExpired(System.currentTimeMillis())) {
+				// Keep stale responses that can be revalidated
+				if (!response.hasValidators()) {
+					remove(key);
+					removed = true;
+				}
+				response = null;
+			}
+		}
+
+		if (removed) {
+			scheduleWrite(key, true);
+		}
+
+		if (response != null) {
+			hitCount.incrementAndGet();
+		} else {
+			missCount.incrementAndGet();
+		}
+		return response;
+	}
+
+	/**
+	 * Get a response that can be revalidated with the server, whether or not
+	 * it is stale. This does not count as a hit or a miss.
+	 * 
+	 * @param key
+	 *            the request key.
+	 * @return the response or <code>null</code> if there is no response with
+	 *         a validator for the key.
+	 */
+	public synchronized CachedResponse getForRevalidation(String key) {
+		CachedResponse response = entries.get(key);
+		return response != null && response.hasValidators() ? response : null;
+	}
+
+	/**
+	 * Renew a response the server confirmed has not changed.
+	 * 
+	 * @param key
+	 *            the request key.
+	 * @param methodName
+	 *            the API method, used to find the time to live.
+	 * @param response
+	 *            the response returned by {@link #getForRevalidation(String)}.
+	 * @return the renewed response.
+	 */
+	public CachedResponse revalidate(String key, String methodName,
+			CachedResponse response) {
+		revalidationCount.incrementAndGet();
+
+		long timeToLive = getTimeToLive(methodName);
+		if (timeToLive <= 0) {
+			return response;
+		}
+
+		long now = System.currentTimeMillis();
+		CachedResponse renewed = response.renew(now, now + timeToLive);
+		put(key, renewed, false);
+		return renewed;
+	}
+
+	/**
+	 * Store the response to a request.
+	 * 
+	 * @see #put(String, String, int, String, byte[], String, String)
+	 */
+	public CachedResponse put(String key, String methodName, int statusCode,
+			String charset, byte[] body) {
+		return put(key, methodName, statusCode, charset, body, null, null);
+	}
+
+	/**
+	 * Store the response to a request. Nothing is stored if the method's time
+	 * to live is zero or the body alone is over the size limit.
+	 * 
+	 * @param key
+	 *            the request key.
+	 * @param methodName
+	 *            the API method, used to find the time to live.
+	 * @param statusCode
+	 *            the HTTP status code.
+	 * @param charset
+	 *            the charset declared by the server or <code>null</code>.
+	 * @param body
+	 *            the response body. The array must not be changed later.
+	 * @param eTag
+	 *            the <code>ETag</code> header or <code>null</code>.
+	 * @param lastModified
+	 *            the <code>Last-Modified</code> header or <code>null</code>.
+	 * @return the stored response or <code>null</code> if nothing was stored.
+	 */
+	public CachedResponse put(String key, String methodName, int statusCode,
+			String charset, byte[] body, String eTag, String lastModified) {
+		long timeToLive = getTimeToLive(methodName);
+		if (timeToLive <= 0 || body.length > maxBytes) {
+			return null;
+		}
+
+		long now = System.currentTimeMillis();
+		CachedResponse response = new CachedResponse(statusCode, charset,
+				body, eTag, lastModified, now, now + timeToLive);
+		put(key, response);
+		return response;
+	}
+
+	/**
+	 * Store a response, evicting the least recently used responses if the
+	 * cache is over its limits.
+	 * 
+	 * @param key
+	 *            the request key.
+	 * @param response
+	 *            the response.
+	 */
+	public void put(String key, CachedResponse response) {
+		put(key, response, true);
+	}
+
+	/**
+	 * Store a response and schedule the writes to the store.
+	 * 
+	 * @param key
+	 *            the request key.
+	 * @param response
+	 *            the response.
+	 * @param body
+	 *            <code>false</code> if the body is the same as the one
+	 *            already stored and only the times need to be written.
+	 */
+	private void put(String key, CachedResponse response, boolean body) {
+		List<String> evicted = store(key, response);
+
+		for (String evictedKey : evicted) {
+			scheduleWrite(evictedKey, true);
+		}
+		scheduleWrite(key, body);
+	}
+
+	/**
+	 * Schedule a key to be written to the store. A key that is already
+	 * waiting is not scheduled again, since the write reads the latest
+	 * response when it runs.
+	 * 
+	 * @param key
+	 *            the request key.
+	 * @param body
+	 *            <code>false</code> if only the times changed.
+	 */
+	private void scheduleWrite(final String key, boolean body) {
+		if (store == null) {
+			return;
+		}
+
+		Boolean pending = body ? pendingWrites.put(key, Boolean.TRUE)
+				: pendingWrites.putIfAbsent(key, Boolean.FALSE);
+		if (pending == null) {
+			writer.execute(new Runnable() {
+				public void run() {
+					writeToStore(key);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Make the store match what is in memory for a key, saving the current
+	 * response or deleting the file if there is none. This only runs on the
+	 * writer thread. The key is taken off the pending writes before the
+	 * response is read, so a response stored during the write schedules
+	 * another one.
+	 * 
+	 * @param key
+	 *            the request key.
+	 */
+	private void writeToStore(String key) {
+		boolean body = !Boolean.FALSE.equals(pendingWrites.remove(key));
+		DiskResponseStore diskStore = store;
+		if (diskStore == null) {
+			return;
+		}
+
+		CachedResponse current;
+		synchronized (this) {
+			current = entries.get(key);
+		}
+
+		if (current == null) {
+			diskStore.delete(key);
+			return;
+		}
+		try {
+			if (body || !diskStore.renew(key, current)) {
+				diskStore.save(key, current);
+			}
+		} catch (IOException e) {
+			LOG.warn("Unable to save cache entry " + key, e);
+		}
+	}
+
+	/**
+	 * Wait for the responses stored so far to be written to the store.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void flush() throws InterruptedException {
+		FutureTask<Object> done = new FutureTask<Object>(new Runnable() {
+			public void run() {
+			}
+		}, null);
+		writer.execute(done);
+		try {
+			done.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Store a response in memory, evicting the least recently used responses
+	 * if the cache is over its limits.
+	 * 
+	 * @param key
+	 *            the request key.
+	 * @param response
+	 *            the response.
+	 * @return the keys of the evicted responses.
+	 */
+	private synchronized List<String> store(String key,
+			CachedResponse response) {
+		remove(key);
+		entries.put(key, response);
+		bytes += response.getLength();
+
+		List<String> evicted = Collections.emptyList();
+		Iterator<Map.Entry<String, CachedResponse>> itr = entries.entrySet()
+				.iterator();
+		while ((entries.size() > maxEntries || bytes > maxBytes)
+				&& itr.hasNext()) {
+			Map.Entry<String, CachedResponse> eldest = itr.next();
+			if (eldest.getValue() == response) {
+				break;
+			}
+			itr.remove();
+			bytes -= eldest.getValue().getLength();
+			evictionCount.incrementAndGet();
+
+			if (evicted.isEmpty()) {
+				evicted = new ArrayList<String>();
+			}
+			evicted.add(eldest.getKey());
+		}
+		return evicted;
+	}
+
+	/**
+	 * Remove the response to a request.
+	 * 
+	 * @param key
+	 *            the request key.
+	 */
+	public void invalidate(String key) {
+		synchronized (this) {
+			remove(key);
+		}
+		scheduleWrite(key, true);
+	}
+
+	/**
+	 * Remove every response.
+	 */
+	public void clear() {
+		synchronized (this) {
+			entries.clear();
+			bytes = 0;
+		}
+
+		final DiskResponseStore diskStore = store;
+		if (diskStore != null) {
+			// Run after the writes already scheduled so none of them survive
+			writer.execute(new Runnable() {
+				public void run() {
+					diskStore.clear();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Keep the responses on disk as well so they survive a restart. The
+	 * responses already in the store are loaded, oldest first, up to this
+	 * cache's limits. From then on every response stored in this cache is
+	 * written to the store and removed from it when it leaves the cache.
+	 * Stale responses that are loaded are still used for revalidation.
+	 * 
+	 * <p>
+	 * The whole directory is read on the calling thread before this returns,
+	 * so set the store while the application starts rather than while it is
+	 * serving requests. Later writes happen on a background thread; call
+	 * {@link #flush()} to wait for them, for example before shutting down.
+	 * 
+	 * @param store
+	 *            the store or <code>null</code> to keep responses in memory
+	 *            only.
+	 */
+	public void setStore(DiskResponseStore store) {
+		if (store != null) {
+			for (Map.Entry<String, CachedResponse> entry : store.loadAll()
+					.entrySet()) {
+				if (entry.getValue().getLength() > maxBytes) {
+					store.delete(entry.getKey());
+					continue;
+				}
+				for (String evictedKey : store(entry.getKey(), entry
+						.getValue())) {
+					store.delete(evictedKey);
+				}
+			}
+		}
+		this.store = store;
+	}
+
+	/**
+	 * @return the store responses are kept in on disk or <code>null</code>.
+	 */
+	public DiskResponseStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Set whether stale responses are returned straight away while they are
+	 * refreshed in the background, instead of making the caller wait for the
+	 * server. This lets a restarted application answer from the responses
+	 * loaded from its {@link DiskResponseStore} immediately. This is
+	 * <code>false</code> by default.
+	 * 
+	 * @param revalidateInBackground
+	 *            <code>true</code> to return stale responses and refresh
+	 *            them in the background.
+	 */
+	public void setRevalidateInBackground(boolean revalidateInBackground) {
+		this.revalidateInBackground = revalidateInBackground;
+	}
+
+	/**
+	 * Check if stale responses are returned while they are refreshed in the
+	 * background.
+	 * 
+	 * @return <code>true</code> if stale responses are returned.
+	 */
+	public boolean isRevalidateInBackground() {
+		return revalidateInBackground;
+	}
+
+	/**
+	 * Remove an entry and update the total size. The lock must be held.
+	 */
+	private void remove(String key) {
+		CachedResponse removed = entries.remove(key);
+		if (removed != null) {
+			bytes -= removed.getLength();
+		}
+	}
+
+	/**
+	 * @return the number of cached responses, including stale ones that have
+	 *         not been removed yet or are kept for revalidation.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the total size of the cached bodies in bytes.
+	 */
+	public synchronized long getByteSize() {
+		return bytes;
+	}
+
+	/**
+	 * @return the number of lookups that found a fresh response.
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return the number of lookups that did not find a fresh response.
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * @return the number of stale responses the server confirmed had not
+	 *         changed.
+	 */
+	public long getRevalidationCount() {
+		return revalidationCount.get();
+	}
+
+	/**
+	 * @return the number of responses evicted to stay within the limits.
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ResponseCache[size=" + size() + ", bytes=" + getByteSize()
+				+ ", hits=" + getHitCount() + ", misses=" + getMissCount()
+				+ ", revalidations=" + getRevalidationCount() + ", evictions="
+				+ getEvictionCount() + "]";
+	}
+}
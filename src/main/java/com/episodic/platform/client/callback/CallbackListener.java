@@ -0,0 +1,34 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.callback;
+
+import java.util.List;
+
+import com.episodic.platform.client.response.query.Item;
+
+/**
+ * Receives the episodes and playlists posted to a {@link CallbackReceiver}.
+ * 
+ * @author Randy Simon
+ */
+public interface CallbackListener {
+
+	/**
+	 * Called on a worker thread with a batch of modified items. Each item is
+	 * an {@link com.episodic.platform.client.response.query.EpisodeItem} or a
+	 * {@link com.episodic.platform.client.response.query.PlaylistItem}. The
+	 * same item may be delivered more than once if Episodic retries a
+	 * callback, so listeners should be idempotent.
+	 * 
+	 * @param items
+	 *            the items in the order they were received.
+	 */
+	void itemsModified(List<Item> items);
+}
@@ -0,0 +1,550 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.callback;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.episodic.platform.client.parser.StaxResponseParser;
+import com.episodic.platform.client.response.Response;
+import com.episodic.platform.client.response.query.EpisodesResponse;
+import com.episodic.platform.client.response.query.Item;
+import com.episodic.platform.client.response.query.PlaylistsResponse;
+import com.episodic.platform.client.util.DaemonThreadFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embeddable endpoint for the modification callbacks Episodic posts to the
+ * network's Modification URL. It runs on the HTTP server built into the JDK.
+ * 
+ * <p>
+ * Each request body is parsed with the {@link StaxResponseParser} into
+ * {@link Item}s which are put on a bounded queue, so the request is answered
+ * as soon as it is parsed. Worker threads take the items off the queue in
+ * batches and pass them to the listeners. When the queue cannot take every
+ * item of a request none of them are queued and the request is answered
+ * with a 503 so that Episodic retries it later, instead of the receiver
+ * running out of memory during a burst.
+ * 
+ * <p>
+ * The body may hold a single <code>episode</code> or <code>playlist</code>
+ * element or an <code>episodes</code> or <code>playlists</code> collection.
+ * The settings must be made before the receiver is started.
+ * 
+ * @author Randy Simon
+ */
+public class CallbackReceiver {
+
+	/**
+	 * Logger for this class
+	 */
+	private static Log LOG = LogFactory.getLog(CallbackReceiver.class);
+
+	/**
+	 * The default number of items that can wait to be dispatched.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+	/**
+	 * The default number of threads dispatching to the listeners.
+	 */
+	public static final int DEFAULT_WORKER_COUNT = 2;
+
+	/**
+	 * The default number of threads handling requests.
+	 */
+	public static final int DEFAULT_HANDLER_COUNT = 4;
+
+	/**
+	 * The default maximum number of items passed to a listener at once.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
+	/**
+	 * The status returned when the items were queued.
+	 */
+	private static final int OK = 200;
+
+	/**
+	 * The status returned when the body could not be parsed.
+	 */
+	private static final int BAD_REQUEST = 400;
+
+	/**
+	 * The status returned for requests other than POST.
+	 */
+	private static final int METHOD_NOT_ALLOWED = 405;
+
+	/**
+	 * The status returned when the request failed unexpectedly.
+	 */
+	private static final int INTERNAL_SERVER_ERROR = 500;
+
+	/**
+	 * The status returned when the queue is full.
+	 */
+	private static final int SERVICE_UNAVAILABLE = 503;
+
+	/**
+	 * How long a worker waits for an item before checking if the receiver
+	 * has stopped.
+	 */
+	private static final long POLL_MILLIS = 100;
+
+	/**
+	 * The address to listen on.
+	 */
+	private final InetSocketAddress address;
+
+	/**
+	 * The path the callbacks are posted to.
+	 */
+	private final String path;
+
+	/**
+	 * The listeners to dispatch to.
+	 */
+	private final List<CallbackListener> listeners = new CopyOnWriteArrayList<CallbackListener>();
+
+	/**
+	 * Parses the request bodies.
+	 */
+	private final StaxResponseParser parser = new StaxResponseParser();
+
+	/**
+	 * The number of items queued.
+	 */
+	private final AtomicLong receivedCount = new AtomicLong();
+
+	/**
+	 * The number of requests answered with a 503 because the queue was full.
+	 */
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	/**
+	 * The number of items that can wait to be dispatched.
+	 */
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+	/**
+	 * The number of threads dispatching to the listeners.
+	 */
+	private int workerCount = DEFAULT_WORKER_COUNT;
+
+	/**
+	 * The number of threads handling requests.
+	 */
+	private int handlerCount = DEFAULT_HANDLER_COUNT;
+
+	/**
+	 * The maximum number of items passed to a listener at once.
+	 */
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * The items waiting to be dispatched. Created when the receiver starts.
+	 */
+	private BlockingQueue<Item> queue;
+
+	/**
+	 * The free space in the queue. A request takes the space for all of its
+	 * items before queuing any of them. Created when the receiver starts.
+	 */
+	private Semaphore capacity;
+
+	/**
+	 * The server or <code>null</code> if the receiver is not started.
+	 */
+	private HttpServer server;
+
+	/**
+	 * Runs the request handlers.
+	 */
+	private ExecutorService handlers;
+
+	/**
+	 * Runs the workers.
+	 */
+	private ExecutorService workers;
+
+	/**
+	 * <code>false</code> once the receiver has been asked to stop.
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param address
+	 *            the address to listen on. Use port 0 to pick a free port.
+	 * @param path
+	 *            the path of the Modification URL, for example
+	 *            "/episodic/callbacks".
+	 */
+	public CallbackReceiver(InetSocketAddress address, String path) {
+		this.address = address;
+		this.path = path;
+	}
+
+	/**
+	 * Add a listener.
+	 * 
+	 * @param listener
+	 *            the listener.
+	 */
+	public void addListener(CallbackListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener.
+	 * 
+	 * @param listener
+	 *            the listener.
+	 */
+	public void removeListener(CallbackListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Set the number of items that can wait to be dispatched. The default is
+	 * {@link #DEFAULT_QUEUE_CAPACITY}. A request with more items than this is
+	 * always refused.
+	 * 
+	 * @param queueCapacity
+	 *            the capacity.
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = checkPositive(queueCapacity, "queueCapacity");
+	}
+
+	/**
+	 * Set the number of threads dispatching to the listeners. The default is
+	 * {@link #DEFAULT_WORKER_COUNT}. Items are only dispatched in the order
+	 * they were received when there is one worker.
+	 * 
+	 * @param workerCount
+	 *            the number of threads.
+	 */
+	public void setWorkerCount(int workerCount) {
+		this.workerCount = checkPositive(workerCount, "workerCount");
+	}
+
+	/**
+	 * Set the number of threads handling requests. The default is
+	 * {@link #DEFAULT_HANDLER_COUNT}.
+	 * 
+	 * @param handlerCount
+	 *            the number of threads.
+	 */
+	public void setHandlerCount(int handlerCount) {
+		this.handlerCount = checkPositive(handlerCount, "handlerCount");
+	}
+
+	/**
+	 * Set the maximum number of items passed to a listener at once. The
+	 * default is {@link #DEFAULT_BATCH_SIZE}.
+	 * 
+	 * @param batchSize
+	 *            the batch size.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = checkPositive(batchSize, "batchSize");
+	}
+
+	/**
+	 * Start accepting callbacks.
+	 * 
+	 * @throws IOException
+	 *             if the server could not be bound to the address.
+	 */
+	public synchronized void start() throws IOException {
+		if (server != null) {
+			throw new IllegalStateException("The receiver has been started");
+		}
+
+		queue = new ArrayBlockingQueue<Item>(queueCapacity);
+		capacity = new Semaphore(queueCapacity);
+		running = true;
+		workers = Executors.newFixedThreadPool(workerCount,
+				new DaemonThreadFactory("episodic-callback-worker"));
+		for (int i = 0; i < workerCount; i++) {
+			workers.execute(new Worker());
+		}
+
+		handlers = Executors.newFixedThreadPool(handlerCount,
+				new DaemonThreadFactory("episodic-callback-handler"));
+		server = HttpServer.create(address, 0);
+		server.createContext(path, new CallbackHandler());
+		server.setExecutor(handlers);
+		server.start();
+	}
+
+	/**
+	 * Stop accepting callbacks and wait for the requests being handled to
+	 * finish and for the items already queued to be dispatched.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait.
+	 * @param unit
+	 *            the unit of the timeout.
+	 * @return <code>true</code> if every request finished and every queued
+	 *         item was dispatched.
+	 * @throws InterruptedException
+	 */
+	public synchronized boolean stop(long timeout, TimeUnit unit)
+			throws InterruptedException {
+		if (server == null) {
+			return true;
+		}
+
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		server.stop(0);
+		handlers.shutdown();
+		boolean drained = handlers.awaitTermination(timeout, unit);
+		if (!drained) {
+			handlers.shutdownNow();
+		}
+
+		// The workers only stop once no handler can queue more items
+		running = false;
+		workers.shutdown();
+		if (!workers.awaitTermination(deadline - System.nanoTime(),
+				TimeUnit.NANOSECONDS)) {
+			workers.shutdownNow();
+			drained = false;
+		}
+		server = null;
+		return drained;
+	}
+
+	/**
+	 * Get the port the receiver is listening on.
+	 * 
+	 * @return the port.
+	 */
+	public synchronized int getPort() {
+		if (server == null) {
+			throw new IllegalStateException("The receiver is not started");
+		}
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Get the number of items received and queued.
+	 * 
+	 * @return the count.
+	 */
+	public long getReceivedCount() {
+		return receivedCount.get();
+	}
+
+	/**
+	 * Get the number of requests refused because the queue was full.
+	 * 
+	 * @return the count.
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * Parse the items in a request body.
+	 * 
+	 * @param in
+	 *            the request body.
+	 * @return the items.
+	 * @throws XMLStreamException
+	 * @throws JAXBException
+	 *             if the root element is not an episode or a playlist.
+	 */
+	private List<Item> parse(InputStream in) throws XMLStreamException,
+			JAXBException {
+		XMLStreamReader reader = StaxResponseParser.createReader(in);
+		try {
+			reader.nextTag();
+			String name = reader.getLocalName();
+
+			List<Item> items = new ArrayList<Item>();
+			if ("episode".equals(name)) {
+				items.add(parser.readEpisode(reader));
+			} else if ("playlist".equals(name)) {
+				items.add(parser.readPlaylist(reader));
+			} else {
+				Response response = parser.readResponse(reader);
+				if (response instanceof EpisodesResponse) {
+					addAll(items, ((EpisodesResponse) response).getEpisodes());
+				} else if (response instanceof PlaylistsResponse) {
+					addAll(items, ((PlaylistsResponse) response)
+							.getPlaylists());
+				} else {
+					throw new JAXBException("Unexpected element \"" + name
+							+ "\"");
+				}
+			}
+			return items;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Add the items to the queue, or none of them if there is not room for
+	 * all of them.
+	 * 
+	 * @param items
+	 *            the items.
+	 * @return <code>false</code> if the queue was full.
+	 */
+	private boolean enqueue(List<Item> items) {
+		if (!capacity.tryAcquire(items.size())) {
+			return false;
+		}
+		// The space was taken above so adding cannot fail
+		queue.addAll(items);
+		receivedCount.addAndGet(items.size());
+		return true;
+	}
+
+	/**
+	 * Pass a batch of items to every listener. A failing listener does not
+	 * stop the others from receiving the batch.
+	 * 
+	 * @param items
+	 *            the items.
+	 */
+	private void dispatch(List<Item> items) {
+		List<Item> batch = Collections.unmodifiableList(items);
+		for (CallbackListener listener : listeners) {
+			try {
+				listener.itemsModified(batch);
+			} catch (RuntimeException e) {
+				LOG.error("Callback listener failed", e);
+			}
+		}
+	}
+
+	/**
+	 * Add the items of a collection response.
+	 */
+	private static <T extends Item> void addAll(List<Item> items, List<T> add) {
+		if (add != null) {
+			items.addAll(add);
+		}
+	}
+
+	/**
+	 * Check a setting is at least 1.
+	 */
+	private static int checkPositive(int value, String name) {
+		if (value < 1) {
+			throw new IllegalArgumentException(name + " must be at least 1");
+		}
+		return value;
+	}
+
+	/**
+	 * Parses a posted callback and queues its items.
+	 */
+	private class CallbackHandler implements HttpHandler {
+
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				int status;
+				if (!"POST".equals(exchange.getRequestMethod())) {
+					status = METHOD_NOT_ALLOWED;
+				} else {
+					try {
+						status = receive(exchange.getRequestBody());
+					} catch (RuntimeException e) {
+						// Answer rather than leave the sender without a status
+						LOG.error("Failed to receive callback", e);
+						status = INTERNAL_SERVER_ERROR;
+					}
+				}
+				exchange.sendResponseHeaders(status, -1);
+			} finally {
+				exchange.close();
+			}
+		}
+
+		/**
+		 * Parse and queue the items in a request body.
+		 * 
+		 * @param in
+		 *            the request body.
+		 * @return the response status.
+		 */
+		private int receive(InputStream in) {
+			List<Item> items;
+			try {
+				items = parse(in);
+			} catch (XMLStreamException e) {
+				LOG.warn("Could not parse callback", e);
+				return BAD_REQUEST;
+			} catch (JAXBException e) {
+				LOG.warn("Could not parse callback", e);
+				return BAD_REQUEST;
+			}
+
+			if (!enqueue(items)) {
+				rejectedCount.incrementAndGet();
+				return SERVICE_UNAVAILABLE;
+			}
+			return OK;
+		}
+	}
+
+	/**
+	 * Takes batches of items off the queue and dispatches them until the
+	 * receiver stops and the queue is empty.
+	 */
+	private class Worker implements Runnable {
+
+		public void run() {
+			try {
+				while (running || !queue.isEmpty()) {
+					Item item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+					if (item == null) {
+						continue;
+					}
+					List<Item> batch = new ArrayList<Item>();
+					batch.add(item);
+					queue.drainTo(batch, batchSize - 1);
+					capacity.release(batch.size());
+					dispatch(batch);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
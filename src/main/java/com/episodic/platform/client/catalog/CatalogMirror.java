@@ -0,0 +1,732 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.catalog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.xml.bind.JAXBException;
+
+import org.joda.time.DateTime;
+
+import com.episodic.platform.client.QueryService;
+import com.episodic.platform.client.exception.ResponseException;
+import com.episodic.platform.client.response.query.EpisodeItem;
+import com.episodic.platform.client.response.query.PlaylistItem;
+import com.episodic.platform.client.response.query.ShowItem;
+import com.episodic.platform.client.response.query.EpisodeItem.EpisodePublishingStatus;
+
+/**
+ * A local copy of the shows, playlists and episodes in a network, indexed so
+ * that common lookups are answered from memory instead of by the Query
+ * service. Episodes are indexed by id, show, publishing status, tag and air
+ * date.
+ * 
+ * <p>
+ * The mirror is filled by {@link #load()} and can then be kept up to date
+ * with the <code>put</code> and <code>remove</code> methods. Items must not
+ * be modified once they have been added. The mirror may be read and updated
+ * from many threads.
+ * 
+ * @author Randy Simon
+ */
+public class CatalogMirror {
+
+	/**
+	 * The default number of items requested per page while loading.
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 50;
+
+	/**
+	 * The param used to limit a query to a show.
+	 */
+	private static final String SHOW_ID_PARAM = "show_id";
+
+	/**
+	 * The param used to set the page size.
+	 */
+	private static final String PER_PAGE_PARAM = "per_page";
+
+	/**
+	 * Orders episodes by air date, then by id. Episodes without an air date
+	 * or an id come last.
+	 */
+	private static final Comparator<EpisodeItem> AIR_DATE_ORDER = new Comparator<EpisodeItem>() {
+		public int compare(EpisodeItem a, EpisodeItem b) {
+			DateTime x = a.getAirDate();
+			DateTime y = b.getAirDate();
+			if (x != null && y != null) {
+				int result = x.compareTo(y);
+				if (result != 0) {
+					return result;
+				}
+			} else if (x != null) {
+				return -1;
+			} else if (y != null) {
+				return 1;
+			}
+			String p = a.getId();
+			String q = b.getId();
+			if (p != null && q != null) {
+				return p.compareTo(q);
+			} else if (p != null) {
+				return -1;
+			} else if (q != null) {
+				return 1;
+			}
+			return 0;
+		}
+	};
+
+	/**
+	 * The service used to load the catalog.
+	 */
+	private final QueryService queryService;
+
+	/**
+	 * Guards every index.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * The number of items requested per page while loading.
+	 */
+	private volatile int pageSize = DEFAULT_PAGE_SIZE;
+
+	/**
+	 * The shows by id in the order they were loaded.
+	 */
+	private final Map<String, ShowItem> shows = new LinkedHashMap<String, ShowItem>();
+
+	/**
+	 * The playlists by id.
+	 */
+	private final Map<String, PlaylistItem> playlists = new HashMap<String, PlaylistItem>();
+
+	/**
+	 * The show id of each playlist by playlist id.
+	 */
+	private final Map<String, String> playlistShows = new HashMap<String, String>();
+
+	/**
+	 * The playlists of each show by show id.
+	 */
+	private final Map<String, Set<PlaylistItem>> playlistsByShow = new HashMap<String, Set<PlaylistItem>>();
+
+	/**
+	 * The episodes by id.
+	 */
+	private final Map<String, EpisodeItem> episodes = new HashMap<String, EpisodeItem>();
+
+	/**
+	 * The show id of each episode by episode id.
+	 */
+	private final Map<String, String> episodeShows = new HashMap<String, String>();
+
+	/**
+	 * The episodes of each show by show id.
+	 */
+	private final Map<String, Set<EpisodeItem>> episodesByShow = new HashMap<String, Set<EpisodeItem>>();
+
+	/**
+	 * The episodes with each publishing status.
+	 */
+	private final Map<EpisodePublishingStatus, Set<EpisodeItem>> episodesByStatus = new EnumMap<EpisodePublishingStatus, Set<EpisodeItem>>(
+			EpisodePublishingStatus.class);
+
+	/**
+	 * The episodes with each tag.
+	 */
+	private final Map<String, Set<EpisodeItem>> episodesByTag = new HashMap<String, Set<EpisodeItem>>();
+
+	/**
+	 * The episodes by air date in milliseconds. Each set is sorted by
+	 * {@link #AIR_DATE_ORDER} so the index can be walked in order.
+	 */
+	private final TreeMap<Long, Set<EpisodeItem>> episodesByAirDate = new TreeMap<Long, Set<EpisodeItem>>();
+
+	/**
+	 * The episodes without an air date sorted by id.
+	 */
+	private final Set<EpisodeItem> episodesWithoutAirDate = new TreeSet<EpisodeItem>(
+			AIR_DATE_ORDER);
+
+	/**
+	 * Constructor
+	 * 
+	 * @param queryService
+	 *            the service used to load the catalog.
+	 */
+	public CatalogMirror(QueryService queryService) {
+		this.queryService = queryService;
+	}
+
+	/**
+	 * Set the number of items requested per page while loading. The default
+	 * is {@link #DEFAULT_PAGE_SIZE}.
+	 * 
+	 * @param pageSize
+	 *            the page size.
+	 */
+	public void setPageSize(int pageSize) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("pageSize must be at least 1");
+		}
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Load every show along with its playlists and episodes, replacing the
+	 * current contents. The catalog is fetched before the mirror is locked,
+	 * so readers keep seeing the old contents until the new ones are ready.
+	 * 
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	public void load() throws IOException, JAXBException, ResponseException {
+		List<ShowItem> loadedShows = queryService
+				.fetchAllShows(createOptions(null));
+
+		Map<String, List<PlaylistItem>> loadedPlaylists = new HashMap<String, List<PlaylistItem>>();
+		Map<String, List<EpisodeItem>> loadedEpisodes = new HashMap<String, List<EpisodeItem>>();
+		for (ShowItem show : loadedShows) {
+			loadedPlaylists.put(show.getId(), queryService
+					.fetchAllPlaylists(createOptions(show.getId())));
+			loadedEpisodes.put(show.getId(), queryService
+					.fetchAllEpisodes(createOptions(show.getId())));
+		}
+
+		lock.writeLock().lock();
+		try {
+			clear();
+			for (ShowItem show : loadedShows) {
+				shows.put(show.getId(), show);
+				for (PlaylistItem playlist : loadedPlaylists.get(show.getId())) {
+					addPlaylist(show.getId(), playlist);
+				}
+				for (EpisodeItem episode : loadedEpisodes.get(show.getId())) {
+					addEpisode(show.getId(), episode);
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Create the options for loading one kind of item.
+	 * 
+	 * @param showId
+	 *            the show to limit the query to or <code>null</code>.
+	 * @return the options.
+	 */
+	private Map<String, Object> createOptions(String showId) {
+		Map<String, Object> options = new HashMap<String, Object>();
+		options.put(PER_PAGE_PARAM, pageSize);
+		if (showId != null) {
+			options.put(SHOW_ID_PARAM, showId);
+		}
+		return options;
+	}
+
+	/**
+	 * Add or replace a show.
+	 * 
+	 * @param show
+	 *            the show.
+	 */
+	public void putShow(ShowItem show) {
+		lock.writeLock().lock();
+		try {
+			shows.put(show.getId(), show);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove a show along with its playlists and episodes.
+	 * 
+	 * @param id
+	 *            the show id.
+	 */
+	public void removeShow(String id) {
+		lock.writeLock().lock();
+		try {
+			shows.remove(id);
+			for (PlaylistItem playlist : copyOf(playlistsByShow.get(id))) {
+				deletePlaylist(playlist.getId());
+			}
+			for (EpisodeItem episode : copyOf(episodesByShow.get(id))) {
+				deleteEpisode(episode.getId());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Add or replace a playlist.
+	 * 
+	 * @param showId
+	 *            the id of the show the playlist belongs to.
+	 * @param playlist
+	 *            the playlist.
+	 */
+	public void putPlaylist(String showId, PlaylistItem playlist) {
+		lock.writeLock().lock();
+		try {
+			deletePlaylist(playlist.getId());
+			addPlaylist(showId, playlist);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove a playlist.
+	 * 
+	 * @param id
+	 *            the playlist id.
+	 */
+	public void removePlaylist(String id) {
+		lock.writeLock().lock();
+		try {
+			deletePlaylist(id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Add or replace an episode, updating every index.
+	 * 
+	 * @param showId
+	 *            the id of the show the episode belongs to.
+	 * @param episode
+	 *            the episode.
+	 */
+	public void putEpisode(String showId, EpisodeItem episode) {
+		lock.writeLock().lock();
+		try {
+			deleteEpisode(episode.getId());
+			addEpisode(showId, episode);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove an episode from every index.
+	 * 
+	 * @param id
+	 *            the episode id.
+	 */
+	public void removeEpisode(String id) {
+		lock.writeLock().lock();
+		try {
+			deleteEpisode(id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Get a show.
+	 * 
+	 * @param id
+	 *            the show id.
+	 * @return the show or <code>null</code> if it is not in the mirror.
+	 */
+	public ShowItem getShow(String id) {
+		lock.readLock().lock();
+		try {
+			return shows.get(id);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return every show in the order they were loaded.
+	 */
+	public List<ShowItem> getShows() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<ShowItem>(shows.values());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get a playlist.
+	 * 
+	 * @param id
+	 *            the playlist id.
+	 * @return the playlist or <code>null</code> if it is not in the mirror.
+	 */
+	public PlaylistItem getPlaylist(String id) {
+		lock.readLock().lock();
+		try {
+			return playlists.get(id);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the playlists of a show.
+	 * 
+	 * @param showId
+	 *            the show id.
+	 * @return the playlists sorted by id.
+	 */
+	public List<PlaylistItem> getPlaylists(String showId) {
+		List<PlaylistItem> result;
+		lock.readLock().lock();
+		try {
+			result = copyOf(playlistsByShow.get(showId));
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		Collections.sort(result, new Comparator<PlaylistItem>() {
+			public int compare(PlaylistItem a, PlaylistItem b) {
+				return a.getId().compareTo(b.getId());
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Get an episode.
+	 * 
+	 * @param id
+	 *            the episode id.
+	 * @return the episode or <code>null</code> if it is not in the mirror.
+	 */
+	public EpisodeItem getEpisode(String id) {
+		lock.readLock().lock();
+		try {
+			return episodes.get(id);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the id of the show an episode belongs to.
+	 * 
+	 * @param episodeId
+	 *            the episode id.
+	 * @return the show id or <code>null</code> if the episode is not in the
+	 *         mirror.
+	 */
+	public String getShowIdForEpisode(String episodeId) {
+		lock.readLock().lock();
+		try {
+			return episodeShows.get(episodeId);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the id of the show a playlist belongs to.
+	 * 
+	 * @param playlistId
+	 *            the playlist id.
+	 * @return the show id or <code>null</code> if the playlist is not in the
+	 *         mirror.
+	 */
+	public String getShowIdForPlaylist(String playlistId) {
+		lock.readLock().lock();
+		try {
+			return playlistShows.get(playlistId);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Find the episodes matching every given condition, sorted by air date.
+	 * The smallest matching index is scanned and the other conditions are
+	 * checked against their indexes, so only the matches are sorted. Without
+	 * conditions the air date index is walked in order.
+	 * 
+	 * @param showId
+	 *            the show the episodes belong to or <code>null</code> for any
+	 *            show.
+	 * @param status
+	 *            the publishing status or <code>null</code> for any status.
+	 * @param tag
+	 *            a tag the episodes must have or <code>null</code> for any
+	 *            tags.
+	 * @return the matching episodes sorted by air date. Episodes without an
+	 *         air date come last.
+	 */
+	public List<EpisodeItem> findEpisodes(String showId,
+			EpisodePublishingStatus status, String tag) {
+		List<EpisodeItem> result = new ArrayList<EpisodeItem>();
+
+		lock.readLock().lock();
+		try {
+			List<Set<EpisodeItem>> conditions = new ArrayList<Set<EpisodeItem>>(
+					3);
+			if (showId != null) {
+				conditions.add(episodesByShow.get(showId));
+			}
+			if (status != null) {
+				conditions.add(episodesByStatus.get(status));
+			}
+			if (tag != null) {
+				conditions.add(episodesByTag.get(tag));
+			}
+			if (conditions.contains(null)) {
+				return result;
+			}
+			if (conditions.isEmpty()) {
+				for (Set<EpisodeItem> airing : episodesByAirDate.values()) {
+					result.addAll(airing);
+				}
+				result.addAll(episodesWithoutAirDate);
+				return result;
+			}
+
+			Set<EpisodeItem> smallest = conditions.get(0);
+			for (Set<EpisodeItem> condition : conditions) {
+				if (condition.size() < smallest.size()) {
+					smallest = condition;
+				}
+			}
+
+			for (EpisodeItem episode : smallest) {
+				boolean matches = true;
+				for (Set<EpisodeItem> condition : conditions) {
+					if (condition != smallest && !condition.contains(episode)) {
+						matches = false;
+						break;
+					}
+				}
+				if (matches) {
+					result.add(episode);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		Collections.sort(result, AIR_DATE_ORDER);
+		return result;
+	}
+
+	/**
+	 * Find the episodes that air in a range of time.
+	 * 
+	 * @param from
+	 *            the start of the range, inclusive.
+	 * @param to
+	 *            the end of the range, exclusive.
+	 * @return the episodes sorted by air date.
+	 * @throws IllegalArgumentException
+	 *             if <code>from</code> is after <code>to</code>.
+	 */
+	public List<EpisodeItem> findEpisodesAiring(DateTime from, DateTime to) {
+		if (from.isAfter(to)) {
+			throw new IllegalArgumentException("from must not be after to");
+		}
+		List<EpisodeItem> result = new ArrayList<EpisodeItem>();
+
+		lock.readLock().lock();
+		try {
+			SortedMap<Long, Set<EpisodeItem>> range = episodesByAirDate
+					.subMap(from.getMillis(), to.getMillis());
+			for (Set<EpisodeItem> airing : range.values()) {
+				result.addAll(airing);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return the number of shows in the mirror.
+	 */
+	public int getShowCount() {
+		lock.readLock().lock();
+		try {
+			return shows.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of playlists in the mirror.
+	 */
+	public int getPlaylistCount() {
+		lock.readLock().lock();
+		try {
+			return playlists.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of episodes in the mirror.
+	 */
+	public int getEpisodeCount() {
+		lock.readLock().lock();
+		try {
+			return episodes.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove everything. The write lock must be held.
+	 */
+	private void clear() {
+		shows.clear();
+		playlists.clear();
+		playlistShows.clear();
+		playlistsByShow.clear();
+		episodes.clear();
+		episodeShows.clear();
+		episodesByShow.clear();
+		episodesByStatus.clear();
+		episodesByTag.clear();
+		episodesByAirDate.clear();
+		episodesWithoutAirDate.clear();
+	}
+
+	/**
+	 * Index a playlist. The write lock must be held.
+	 */
+	private void addPlaylist(String showId, PlaylistItem playlist) {
+		playlists.put(playlist.getId(), playlist);
+		playlistShows.put(playlist.getId(), showId);
+		add(playlistsByShow, showId, playlist);
+	}
+
+	/**
+	 * Remove a playlist from the indexes. The write lock must be held.
+	 */
+	private void deletePlaylist(String id) {
+		PlaylistItem playlist = playlists.remove(id);
+		if (playlist != null) {
+			remove(playlistsByShow, playlistShows.remove(id), playlist);
+		}
+	}
+
+	/**
+	 * Index an episode. The write lock must be held.
+	 */
+	private void addEpisode(String showId, EpisodeItem episode) {
+		episodes.put(episode.getId(), episode);
+		episodeShows.put(episode.getId(), showId);
+		add(episodesByShow, showId, episode);
+		if (episode.getStatus() != null) {
+			add(episodesByStatus, episode.getStatus(), episode);
+		}
+		if (episode.getTags() != null) {
+			for (String tag : episode.getTags()) {
+				add(episodesByTag, tag, episode);
+			}
+		}
+		if (episode.getAirDate() != null) {
+			Set<EpisodeItem> airing = episodesByAirDate.get(episode
+					.getAirDate().getMillis());
+			if (airing == null) {
+				airing = new TreeSet<EpisodeItem>(AIR_DATE_ORDER);
+				episodesByAirDate.put(episode.getAirDate().getMillis(), airing);
+			}
+			airing.add(episode);
+		} else {
+			episodesWithoutAirDate.add(episode);
+		}
+	}
+
+	/**
+	 * Remove an episode from the indexes. The write lock must be held.
+	 */
+	private void deleteEpisode(String id) {
+		EpisodeItem episode = episodes.remove(id);
+		if (episode == null) {
+			return;
+		}
+
+		remove(episodesByShow, episodeShows.remove(id), episode);
+		if (episode.getStatus() != null) {
+			remove(episodesByStatus, episode.getStatus(), episode);
+		}
+		if (episode.getTags() != null) {
+			for (String tag : episode.getTags()) {
+				remove(episodesByTag, tag, episode);
+			}
+		}
+		if (episode.getAirDate() != null) {
+			remove(episodesByAirDate, episode.getAirDate().getMillis(),
+					episode);
+		} else {
+			episodesWithoutAirDate.remove(episode);
+		}
+	}
+
+	/**
+	 * Add an item to the set held by an index under a key.
+	 */
+	private static <K, V> void add(Map<K, Set<V>> index, K key, V item) {
+		Set<V> items = index.get(key);
+		if (items == null) {
+			items = new HashSet<V>();
+			index.put(key, items);
+		}
+		items.add(item);
+	}
+
+	/**
+	 * Remove an item from the set held by an index under a key, dropping the
+	 * set once it is empty.
+	 */
+	private static <K, V> void remove(Map<K, Set<V>> index, K key, V item) {
+		Set<V> items = index.get(key);
+		if (items != null && items.remove(item) && items.isEmpty()) {
+			index.remove(key);
+		}
+	}
+
+	/**
+	 * Copy a set that may be <code>null</code> into a new list.
+	 */
+	private static <T> List<T> copyOf(Set<T> items) {
+		return items != null ? new ArrayList<T>(items) : new ArrayList<T>();
+	}
+}
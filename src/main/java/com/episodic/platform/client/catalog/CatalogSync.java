@@ -0,0 +1,471 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.catalog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.bind.JAXBException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.joda.time.DateTime;
+
+import com.episodic.platform.client.Connection;
+import com.episodic.platform.client.exception.ResponseException;
+import com.episodic.platform.client.response.query.EpisodeItem;
+import com.episodic.platform.client.response.query.EpisodesResponse;
+import com.episodic.platform.client.response.query.Item;
+import com.episodic.platform.client.response.query.ModificationCallbackItem;
+import com.episodic.platform.client.response.query.ModificationCallbacksResponse;
+import com.episodic.platform.client.response.query.PlaylistItem;
+import com.episodic.platform.client.response.query.PlaylistsResponse;
+
+/**
+ * Keeps a {@link CatalogMirror} up to date by polling the modification
+ * callbacks instead of reloading the whole catalog. Each call to
+ * {@link #sync()} reads the callbacks registered since the last one that was
+ * applied, fetches only the episodes and playlists that changed, by id and in
+ * batches, and applies them to the mirror.
+ * 
+ * <p>
+ * Callback times only have a resolution of one second, so a callback can be
+ * registered in the same second as the last one applied but after it was
+ * read. Callbacks are therefore read from one second before the watermark,
+ * and the ones already applied at the watermark are skipped.
+ * 
+ * <p>
+ * Requests are made with {@link Connection#doGet(String, String, Map)} so
+ * that changed items are never answered from a stale entry in the
+ * connection's response cache.
+ * 
+ * @author Randy Simon
+ */
+public class CatalogSync {
+
+	/**
+	 * Logger for this class
+	 */
+	private static Log LOG = LogFactory.getLog(CatalogSync.class);
+
+	/**
+	 * The default number of callbacks or items requested at a time.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 50;
+
+	/**
+	 * The service name
+	 */
+	private static final String SERVICE_NAME = "query";
+
+	/**
+	 * Episodes query
+	 */
+	private static final String EPISODES_METHOD = "episodes";
+
+	/**
+	 * Modification callbacks query
+	 */
+	private static final String MODIFICATION_CALLBACKS_METHOD = "modification_callbacks";
+
+	/**
+	 * Playlists query
+	 */
+	private static final String PLAYLISTS_METHOD = "playlists";
+
+	/**
+	 * The param used to request items by id.
+	 */
+	private static final String ID_PARAM = "id";
+
+	/**
+	 * The param used to request a specific page.
+	 */
+	private static final String PAGE_PARAM = "page";
+
+	/**
+	 * The param used to set the page size.
+	 */
+	private static final String PER_PAGE_PARAM = "per_page";
+
+	/**
+	 * The param used to limit the callbacks to those registered after a time.
+	 */
+	private static final String SINCE_PARAM = "since";
+
+	/**
+	 * The connection used to make requests.
+	 */
+	private final Connection connection;
+
+	/**
+	 * The mirror the changes are applied to.
+	 */
+	private final CatalogMirror mirror;
+
+	/**
+	 * The number of callbacks or items requested at a time.
+	 */
+	private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * The time of the last callback applied or <code>null</code> if no
+	 * callbacks have been applied. Guarded by this object.
+	 */
+	private DateTime watermark;
+
+	/**
+	 * The callbacks registered at the watermark that have been applied.
+	 * Guarded by this object.
+	 */
+	private final Set<String> appliedAtWatermark = new HashSet<String>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param connection
+	 *            the connection used to make requests.
+	 * @param mirror
+	 *            the mirror to keep up to date.
+	 */
+	public CatalogSync(Connection connection, CatalogMirror mirror) {
+		this.connection = connection;
+		this.mirror = mirror;
+	}
+
+	/**
+	 * Set the number of callbacks requested per page and the number of
+	 * changed items requested at a time. The default is
+	 * {@link #DEFAULT_BATCH_SIZE}.
+	 * 
+	 * @param batchSize
+	 *            the batch size.
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be at least 1");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Get the time of the last callback applied.
+	 * 
+	 * @return the time or <code>null</code> if no callbacks have been applied.
+	 */
+	public synchronized DateTime getWatermark() {
+		return watermark;
+	}
+
+	/**
+	 * Set the time to read callbacks from. This is usually the time the
+	 * mirror was loaded or a watermark saved from an earlier run.
+	 * 
+	 * @param watermark
+	 *            the time or <code>null</code> to read every callback.
+	 */
+	public synchronized void setWatermark(DateTime watermark) {
+		this.watermark = watermark;
+		appliedAtWatermark.clear();
+	}
+
+	/**
+	 * Apply the changes registered since the watermark to the mirror. Only
+	 * the latest callback for each item is used. The watermark is moved
+	 * forward once every change has been applied, so the same changes are
+	 * read again by the next call if this one fails.
+	 * 
+	 * @return the number of items that were updated or removed.
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	public synchronized int sync() throws IOException, JAXBException,
+			ResponseException {
+		List<ModificationCallbackItem> callbacks = fetchCallbacks();
+		for (Iterator<ModificationCallbackItem> itr = callbacks.iterator(); itr
+				.hasNext();) {
+			ModificationCallbackItem callback = itr.next();
+			if (isSameTime(callback.getCreatedAt(), watermark)
+					&& appliedAtWatermark.contains(callbackKey(callback))) {
+				itr.remove();
+			}
+		}
+		if (callbacks.isEmpty()) {
+			return 0;
+		}
+
+		List<ModificationCallbackItem> changedEpisodes = new ArrayList<ModificationCallbackItem>();
+		List<ModificationCallbackItem> changedPlaylists = new ArrayList<ModificationCallbackItem>();
+		int count = 0;
+		for (ModificationCallbackItem callback : latestChanges(callbacks)) {
+			if (callback.isEpisode()) {
+				if (callback.isDelete()) {
+					mirror.removeEpisode(callback.getObjectId());
+					count++;
+				} else {
+					changedEpisodes.add(callback);
+				}
+			} else if (callback.isPlaylist()) {
+				if (callback.isDelete()) {
+					mirror.removePlaylist(callback.getObjectId());
+					count++;
+				} else {
+					changedPlaylists.add(callback);
+				}
+			} else if (LOG.isDebugEnabled()) {
+				LOG.debug("Ignoring callback for " + callback.getObjectType());
+			}
+		}
+
+		int size = batchSize;
+		for (int i = 0; i < changedEpisodes.size(); i += size) {
+			count += applyEpisodes(changedEpisodes.subList(i, Math.min(i
+					+ size, changedEpisodes.size())));
+		}
+		for (int i = 0; i < changedPlaylists.size(); i += size) {
+			count += applyPlaylists(changedPlaylists.subList(i, Math.min(i
+					+ size, changedPlaylists.size())));
+		}
+
+		DateTime latest = watermark;
+		for (ModificationCallbackItem callback : callbacks) {
+			if (isAfter(callback.getCreatedAt(), latest)) {
+				latest = callback.getCreatedAt();
+			}
+		}
+		if (latest != watermark) {
+			watermark = latest;
+			appliedAtWatermark.clear();
+		}
+		for (ModificationCallbackItem callback : callbacks) {
+			if (isSameTime(callback.getCreatedAt(), watermark)) {
+				appliedAtWatermark.add(callbackKey(callback));
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Read every page of callbacks registered since the watermark.
+	 * 
+	 * @return the callbacks.
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	private List<ModificationCallbackItem> fetchCallbacks()
+			throws IOException, JAXBException, ResponseException {
+		List<ModificationCallbackItem> callbacks = new ArrayList<ModificationCallbackItem>();
+		Map<String, Object> options = new HashMap<String, Object>();
+		if (watermark != null) {
+			// Back off one tick for callbacks registered in the same second
+			options.put(SINCE_PARAM, watermark.minusSeconds(1));
+		}
+		options.put(PER_PAGE_PARAM, batchSize);
+
+		for (long page = 1;; page++) {
+			options.put(PAGE_PARAM, page);
+			ModificationCallbacksResponse response = (ModificationCallbacksResponse) connection
+					.doGet(SERVICE_NAME, MODIFICATION_CALLBACKS_METHOD, options);
+			if (response.getCallbacks() == null
+					|| response.getCallbacks().isEmpty()) {
+				break;
+			}
+			callbacks.addAll(response.getCallbacks());
+			if (page >= response.getPages()) {
+				break;
+			}
+		}
+		return callbacks;
+	}
+
+	/**
+	 * Keep the latest callback for each item, in the order the items were
+	 * first changed.
+	 * 
+	 * @param callbacks
+	 *            the callbacks.
+	 * @return the latest callbacks.
+	 */
+	private static Iterable<ModificationCallbackItem> latestChanges(
+			List<ModificationCallbackItem> callbacks) {
+		Map<String, ModificationCallbackItem> latest = new LinkedHashMap<String, ModificationCallbackItem>();
+		for (ModificationCallbackItem callback : callbacks) {
+			String key = callback.getObjectType() + ":"
+					+ callback.getObjectId();
+			ModificationCallbackItem previous = latest.get(key);
+			if (previous == null
+					|| !isAfter(previous.getCreatedAt(), callback
+							.getCreatedAt())) {
+				latest.put(key, callback);
+			}
+		}
+		return latest.values();
+	}
+
+	/**
+	 * Fetch a batch of changed episodes and apply them to the mirror.
+	 * Episodes that no longer exist are removed.
+	 * 
+	 * @param callbacks
+	 *            the callbacks for the changed episodes.
+	 * @return the number of episodes updated or removed.
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	private int applyEpisodes(List<ModificationCallbackItem> callbacks)
+			throws IOException, JAXBException, ResponseException {
+		EpisodesResponse response = (EpisodesResponse) connection.doGet(
+				SERVICE_NAME, EPISODES_METHOD, createOptions(callbacks));
+		Map<String, EpisodeItem> fetched = indexById(response.getEpisodes());
+
+		int count = 0;
+		for (ModificationCallbackItem callback : callbacks) {
+			String id = callback.getObjectId();
+			EpisodeItem episode = fetched.get(id);
+			if (episode == null) {
+				mirror.removeEpisode(id);
+				count++;
+				continue;
+			}
+
+			String showId = callback.getShowId() != null ? callback
+					.getShowId() : mirror.getShowIdForEpisode(id);
+			if (showId == null) {
+				LOG.warn("Skipping episode " + id + " with no show id");
+				continue;
+			}
+			mirror.putEpisode(showId, episode);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Fetch a batch of changed playlists and apply them to the mirror.
+	 * Playlists that no longer exist are removed.
+	 * 
+	 * @param callbacks
+	 *            the callbacks for the changed playlists.
+	 * @return the number of playlists updated or removed.
+	 * @throws IOException
+	 * @throws JAXBException
+	 * @throws ResponseException
+	 */
+	private int applyPlaylists(List<ModificationCallbackItem> callbacks)
+			throws IOException, JAXBException, ResponseException {
+		PlaylistsResponse response = (PlaylistsResponse) connection.doGet(
+				SERVICE_NAME, PLAYLISTS_METHOD, createOptions(callbacks));
+		Map<String, PlaylistItem> fetched = indexById(response.getPlaylists());
+
+		int count = 0;
+		for (ModificationCallbackItem callback : callbacks) {
+			String id = callback.getObjectId();
+			PlaylistItem playlist = fetched.get(id);
+			if (playlist == null) {
+				mirror.removePlaylist(id);
+				count++;
+				continue;
+			}
+
+			String showId = callback.getShowId() != null ? callback
+					.getShowId() : mirror.getShowIdForPlaylist(id);
+			if (showId == null) {
+				LOG.warn("Skipping playlist " + id + " with no show id");
+				continue;
+			}
+			mirror.putPlaylist(showId, playlist);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Create the options for fetching the items of a batch of callbacks.
+	 * 
+	 * @param callbacks
+	 *            the callbacks.
+	 * @return the options.
+	 */
+	private static Map<String, Object> createOptions(
+			List<ModificationCallbackItem> callbacks) {
+		List<String> ids = new ArrayList<String>(callbacks.size());
+		for (ModificationCallbackItem callback : callbacks) {
+			ids.add(callback.getObjectId());
+		}
+
+		Map<String, Object> options = new HashMap<String, Object>();
+		options.put(ID_PARAM, ids);
+		options.put(PER_PAGE_PARAM, ids.size());
+		return options;
+	}
+
+	/**
+	 * Index the items that exist by id.
+	 * 
+	 * @param items
+	 *            the items or <code>null</code>.
+	 * @return the items by id.
+	 */
+	private static <T extends Item> Map<String, T> indexById(List<T> items) {
+		Map<String, T> result = new HashMap<String, T>();
+		if (items != null) {
+			for (T item : items) {
+				if (item.exists()) {
+					result.put(item.getId(), item);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Compare two times where <code>null</code> is before every time.
+	 */
+	private static boolean isAfter(DateTime time, DateTime other) {
+		return time != null && (other == null || time.isAfter(other));
+	}
+
+	/**
+	 * Check if two times are the same instant.
+	 * 
+	 * @param time
+	 *            the time, which may be <code>null</code>.
+	 * @param other
+	 *            the time to compare with, which may be <code>null</code>.
+	 * @return <code>true</code> if neither time is <code>null</code> and they
+	 *         are the same instant.
+	 */
+	private static boolean isSameTime(DateTime time, DateTime other) {
+		return time != null && other != null
+				&& time.getMillis() == other.getMillis();
+	}
+
+	/**
+	 * Identify a callback among those registered in the same second.
+	 * 
+	 * @param callback
+	 *            the callback.
+	 * @return the key.
+	 */
+	private static String callbackKey(ModificationCallbackItem callback) {
+		return callback.getObjectType() + ":" + callback.getObjectId() + ":"
+				+ callback.getAction() + ":" + callback.getStatus();
+	}
+}
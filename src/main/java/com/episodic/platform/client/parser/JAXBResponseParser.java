@@ -0,0 +1,299 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.parser;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.episodic.platform.client.response.ErrorResponse;
+import com.episodic.platform.client.response.Response;
+import com.episodic.platform.client.response.analytics.CampaignsDailyResponse;
+import com.episodic.platform.client.response.analytics.EpisodeDailyResponse;
+import com.episodic.platform.client.response.analytics.EpisodesSummaryResponse;
+import com.episodic.platform.client.response.query.CustomFieldItem;
+import com.episodic.platform.client.response.query.CustomFieldValue;
+import com.episodic.platform.client.response.query.EpisodeItem;
+import com.episodic.platform.client.response.query.EpisodesResponse;
+import com.episodic.platform.client.response.query.Item;
+import com.episodic.platform.client.response.query.ModificationCallbackItem;
+import com.episodic.platform.client.response.query.ModificationCallbacksResponse;
+import com.episodic.platform.client.response.query.PlayerItem;
+import com.episodic.platform.client.response.query.PlaylistsResponse;
+import com.episodic.platform.client.response.query.ShowsResponse;
+import com.episodic.platform.client.response.write.CreateAssetResponse;
+import com.episodic.platform.client.response.write.CreateEpisodeResponse;
+import com.episodic.platform.client.response.write.CreatePlaylistResponse;
+import com.episodic.platform.client.response.write.UpdateEpisodeResponse;
+import com.episodic.platform.client.response.write.UpdatePlaylistResponse;
+import com.episodic.platform.client.util.CommaSeperatedStringArrayXmlAdapter;
+import com.episodic.platform.client.util.DateXmlAdapter;
+import com.episodic.platform.client.util.EpisodeStatusXmlAdapter;
+import com.episodic.platform.client.util.StringPool;
+
+/**
+ * Parses responses with JAXB using the annotations on the response classes.
+ * This is the default parser. The JAXB context is created the first time a
+ * response is parsed rather than when the class is loaded, and unmarshallers
+ * are reused from a small pool shared by every thread.
+ * 
+ * @author Randy Simon
+ */
+public class JAXBResponseParser implements ResponseParser {
+
+	/**
+	 * Logger for this class
+	 */
+	private static Log LOG = LogFactory.getLog(JAXBResponseParser.class);
+
+	/**
+	 * The maximum number of idle unmarshallers kept for reuse.
+	 */
+	private static final int MAX_POOLED_UNMARSHALLERS = 16;
+
+	/**
+	 * Idle unmarshallers. Requests may run on a new thread each, so
+	 * unmarshallers are pooled rather than kept per thread.
+	 */
+	private static final Queue<Unmarshaller> UNMARSHALLERS = new ConcurrentLinkedQueue<Unmarshaller>();
+
+	/**
+	 * The number of unmarshallers in the pool.
+	 */
+	private static final AtomicInteger POOLED_UNMARSHALLERS = new AtomicInteger();
+
+	/**
+	 * The number of unmarshallers created.
+	 */
+	private static final AtomicInteger CREATED_UNMARSHALLERS = new AtomicInteger();
+
+	/**
+	 * Converts date strings.
+	 */
+	private static final DateXmlAdapter DATE_ADAPTER = new DateXmlAdapter();
+
+	/**
+	 * Converts comma separated tags.
+	 */
+	private static final CommaSeperatedStringArrayXmlAdapter TAGS_ADAPTER = new CommaSeperatedStringArrayXmlAdapter();
+
+	/**
+	 * Converts episode status strings.
+	 */
+	private static final EpisodeStatusXmlAdapter STATUS_ADAPTER = new EpisodeStatusXmlAdapter();
+
+	/**
+	 * Replaces parsed strings with their pooled instances or <code>null</code>
+	 * if strings are not pooled.
+	 */
+	private volatile PoolingListener poolingListener;
+
+	/**
+	 * Holds the XML parsing context. Building a JAXB context is expensive so
+	 * it is deferred until the first response is parsed with JAXB, which
+	 * means connections that use another parser never pay for it.
+	 */
+	private static class ContextHolder {
+
+		/**
+		 * The XML parsing context.
+		 */
+		private static final JAXBContext CTX = createContext();
+
+		/**
+		 * Define the unmarshalling classes.
+		 */
+		private static JAXBContext createContext() {
+			try {
+				return JAXBContext.newInstance(CreateAssetResponse.class,
+						CreateEpisodeResponse.class,
+						CreatePlaylistResponse.class, ErrorResponse.class,
+						CampaignsDailyResponse.class,
+						EpisodeDailyResponse.class, EpisodesResponse.class,
+						EpisodesSummaryResponse.class,
+						ModificationCallbacksResponse.class,
+						PlaylistsResponse.class, ShowsResponse.class,
+						UpdateEpisodeResponse.class,
+						UpdatePlaylistResponse.class);
+			} catch (JAXBException e) {
+				LOG.error(e.getMessage(), e);
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Get the XML parsing context, creating it on first use.
+	 * 
+	 * @return the context.
+	 * @throws JAXBException
+	 *             if the context could not be created.
+	 */
+	private static JAXBContext getContext() throws JAXBException {
+		JAXBContext ctx = ContextHolder.CTX;
+		if (ctx == null) {
+			throw new JAXBException("The JAXB context could not be created");
+		}
+		return ctx;
+	}
+
+	/**
+	 * Take an unmarshaller from the pool or create one if the pool is empty.
+	 * Unmarshallers are not thread safe but can be reused, so each one is
+	 * used by one parse at a time and then returned with
+	 * {@link #releaseUnmarshaller(Unmarshaller)}.
+	 * 
+	 * @return the unmarshaller.
+	 * @throws JAXBException
+	 *             if the unmarshaller could not be created.
+	 */
+	private static Unmarshaller acquireUnmarshaller() throws JAXBException {
+		Unmarshaller unmarshaller = UNMARSHALLERS.poll();
+		if (unmarshaller != null) {
+			POOLED_UNMARSHALLERS.decrementAndGet();
+			return unmarshaller;
+		}
+
+		unmarshaller = getContext().createUnmarshaller();
+		CREATED_UNMARSHALLERS.incrementAndGet();
+
+		// The adapters are stateless so one instance can be shared
+		unmarshaller.setAdapter(DateXmlAdapter.class, DATE_ADAPTER);
+		unmarshaller.setAdapter(CommaSeperatedStringArrayXmlAdapter.class,
+				TAGS_ADAPTER);
+		unmarshaller.setAdapter(EpisodeStatusXmlAdapter.class, STATUS_ADAPTER);
+		return unmarshaller;
+	}
+
+	/**
+	 * Return an unmarshaller to the pool. It is dropped if the pool is full.
+	 * 
+	 * @param unmarshaller
+	 *            the unmarshaller.
+	 */
+	private static void releaseUnmarshaller(Unmarshaller unmarshaller) {
+		unmarshaller.setListener(null);
+		if (POOLED_UNMARSHALLERS.incrementAndGet() <= MAX_POOLED_UNMARSHALLERS) {
+			UNMARSHALLERS.offer(unmarshaller);
+		} else {
+			POOLED_UNMARSHALLERS.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Get the number of unmarshallers created by all parsers so far, which
+	 * shows how well they are being reused.
+	 * 
+	 * @return the number of unmarshallers created.
+	 */
+	public static int getCreatedUnmarshallerCount() {
+		return CREATED_UNMARSHALLERS.get();
+	}
+
+	/**
+	 * Set a pool used to share one instance of the strings that repeat across
+	 * items, such as names, tags and custom field values. Ids are unique to
+	 * each item and are not pooled. By default strings are not pooled.
+	 * 
+	 * @param stringPool
+	 *            the pool or <code>null</code> to stop pooling.
+	 */
+	public void setStringPool(StringPool stringPool) {
+		this.poolingListener = (stringPool != null) ? new PoolingListener(
+				stringPool) : null;
+	}
+
+	/**
+	 * Get the pool used to share repeated strings.
+	 * 
+	 * @return the pool or <code>null</code> if strings are not pooled.
+	 */
+	public StringPool getStringPool() {
+		PoolingListener listener = poolingListener;
+		return (listener != null) ? listener.pool : null;
+	}
+
+	public Response parse(InputStream in) throws JAXBException {
+		Unmarshaller unmarshaller = acquireUnmarshaller();
+		try {
+			unmarshaller.setListener(poolingListener);
+			return (Response) unmarshaller.unmarshal(in);
+		} finally {
+			releaseUnmarshaller(unmarshaller);
+		}
+	}
+
+	public Response parse(Reader reader) throws JAXBException {
+		Unmarshaller unmarshaller = acquireUnmarshaller();
+		try {
+			unmarshaller.setListener(poolingListener);
+			return (Response) unmarshaller.unmarshal(reader);
+		} finally {
+			releaseUnmarshaller(unmarshaller);
+		}
+	}
+
+	/**
+	 * Replaces the repeated strings of each item with their pooled instances
+	 * once the item has been unmarshalled.
+	 */
+	private static class PoolingListener extends Unmarshaller.Listener {
+
+		/**
+		 * The pool.
+		 */
+		private final StringPool pool;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param pool
+		 *            the pool.
+		 */
+		PoolingListener(StringPool pool) {
+			this.pool = pool;
+		}
+
+		public void afterUnmarshal(Object target, Object parent) {
+			if (target instanceof Item) {
+				Item item = (Item) target;
+				item.setName(pool.intern(item.getName()));
+			}
+
+			if (target instanceof EpisodeItem) {
+				pool.internAll(((EpisodeItem) target).getTags());
+			} else if (target instanceof PlayerItem) {
+				PlayerItem player = (PlayerItem) target;
+				player.setConfig(pool.intern(player.getConfig()));
+			} else if (target instanceof CustomFieldItem) {
+				CustomFieldItem field = (CustomFieldItem) target;
+				field.setType(pool.intern(field.getType()));
+			} else if (target instanceof CustomFieldValue) {
+				CustomFieldValue value = (CustomFieldValue) target;
+				value.setValue(pool.intern(value.getValue()));
+			} else if (target instanceof ModificationCallbackItem) {
+				ModificationCallbackItem callback = (ModificationCallbackItem) target;
+				callback.setObjectType(pool.intern(callback.getObjectType()));
+				callback.setShowId(pool.intern(callback.getShowId()));
+				callback.setAction(pool.intern(callback.getAction()));
+				callback.setStatus(pool.intern(callback.getStatus()));
+			}
+		}
+	}
+}
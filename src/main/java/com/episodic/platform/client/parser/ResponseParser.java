@@ -0,0 +1,50 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.parser;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+import javax.xml.bind.JAXBException;
+
+import com.episodic.platform.client.response.Response;
+
+/**
+ * Converts the XML returned by the Episodic Platform API into one of the
+ * response objects. Implementations must be safe to use from multiple threads.
+ * 
+ * @see com.episodic.platform.client.Connection#setResponseParser(ResponseParser)
+ * @author Randy Simon
+ */
+public interface ResponseParser {
+
+	/**
+	 * Parse a response from a byte stream. The encoding is detected from the
+	 * XML declaration.
+	 * 
+	 * @param in
+	 *            the XML stream.
+	 * @return the parsed response.
+	 * @throws JAXBException
+	 *             Thrown if there are issues with the xml stream passed in.
+	 */
+	Response parse(InputStream in) throws JAXBException;
+
+	/**
+	 * Parse a response from a character stream.
+	 * 
+	 * @param reader
+	 *            the XML stream.
+	 * @return the parsed response.
+	 * @throws JAXBException
+	 *             Thrown if there are issues with the xml stream passed in.
+	 */
+	Response parse(Reader reader) throws JAXBException;
+}
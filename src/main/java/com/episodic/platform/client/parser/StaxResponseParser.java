@@ -0,0 +1,925 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.parser;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.joda.time.DateTime;
+
+import com.episodic.platform.client.response.ErrorResponse;
+import com.episodic.platform.client.response.InvalidParameter;
+import com.episodic.platform.client.response.Response;
+import com.episodic.platform.client.response.analytics.CampaignsDailyResponse;
+import com.episodic.platform.client.response.analytics.EpisodeDailyResponse;
+import com.episodic.platform.client.response.analytics.EpisodesSummaryResponse;
+import com.episodic.platform.client.response.analytics.TokenResponse;
+import com.episodic.platform.client.response.query.CollectionResponse;
+import com.episodic.platform.client.response.query.CustomFieldItem;
+import com.episodic.platform.client.response.query.CustomFieldValue;
+import com.episodic.platform.client.response.query.DownloadItem;
+import com.episodic.platform.client.response.query.EpisodeItem;
+import com.episodic.platform.client.response.query.EpisodePlaylistItem;
+import com.episodic.platform.client.response.query.EpisodesResponse;
+import com.episodic.platform.client.response.query.Item;
+import com.episodic.platform.client.response.query.ModificationCallbackItem;
+import com.episodic.platform.client.response.query.ModificationCallbacksResponse;
+import com.episodic.platform.client.response.query.PlayerItem;
+import com.episodic.platform.client.response.query.PlaylistEpisodeItem;
+import com.episodic.platform.client.response.query.PlaylistItem;
+import com.episodic.platform.client.response.query.PlaylistsResponse;
+import com.episodic.platform.client.response.query.ShowItem;
+import com.episodic.platform.client.response.query.ShowsResponse;
+import com.episodic.platform.client.response.query.ThumbnailItem;
+import com.episodic.platform.client.response.query.EpisodeItem.EpisodePublishingStatus;
+import com.episodic.platform.client.response.write.CreateAssetResponse;
+import com.episodic.platform.client.response.write.CreateEpisodeResponse;
+import com.episodic.platform.client.response.write.CreatePlaylistResponse;
+import com.episodic.platform.client.response.write.CreateUpdateEpisodeResponse;
+import com.episodic.platform.client.response.write.CreateUpdatePlaylistResponse;
+import com.episodic.platform.client.response.write.UpdateEpisodeResponse;
+import com.episodic.platform.client.response.write.UpdatePlaylistResponse;
+import com.episodic.platform.client.response.write.Upload;
+import com.episodic.platform.client.response.write.UploadParam;
+import com.episodic.platform.client.util.CommaSeperatedStringArrayXmlAdapter;
+import com.episodic.platform.client.util.DateXmlAdapter;
+import com.episodic.platform.client.util.EpisodeStatusXmlAdapter;
+import com.episodic.platform.client.util.StringPool;
+
+/**
+ * Parses responses with a StAX pull parser instead of JAXB. The element
+ * mapping is written out by hand to match the JAXB annotations on the
+ * response classes, so both parsers produce the same objects. This avoids
+ * building a JAXB context and the reflection JAXB uses for every element,
+ * which makes it noticeably faster for large query responses.
+ * 
+ * @author Randy Simon
+ */
+public class StaxResponseParser implements ResponseParser {
+
+	/**
+	 * The factory used to create stream readers. Factories are expensive to
+	 * create but safe to share once configured.
+	 */
+	private static final XMLInputFactory FACTORY;
+
+	static {
+		FACTORY = XMLInputFactory.newInstance();
+		FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		FACTORY.setProperty(
+				XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+				Boolean.FALSE);
+	}
+
+	/**
+	 * Converts date strings.
+	 */
+	private static final DateXmlAdapter DATE_ADAPTER = new DateXmlAdapter();
+
+	/**
+	 * Converts comma separated tags.
+	 */
+	private static final CommaSeperatedStringArrayXmlAdapter TAGS_ADAPTER = new CommaSeperatedStringArrayXmlAdapter();
+
+	/**
+	 * Converts episode status strings.
+	 */
+	private static final EpisodeStatusXmlAdapter STATUS_ADAPTER = new EpisodeStatusXmlAdapter();
+
+	/**
+	 * Shares repeated strings or <code>null</code> if strings are not pooled.
+	 */
+	private volatile StringPool stringPool;
+
+	/**
+	 * Set a pool used to share one instance of the strings that repeat across
+	 * items, such as names, tags and custom field values. Ids are unique to
+	 * each item and are not pooled. By default strings are not pooled.
+	 * 
+	 * @param stringPool
+	 *            the pool or <code>null</code> to stop pooling.
+	 */
+	public void setStringPool(StringPool stringPool) {
+		this.stringPool = stringPool;
+	}
+
+	/**
+	 * Get the pool used to share repeated strings.
+	 * 
+	 * @return the pool or <code>null</code> if strings are not pooled.
+	 */
+	public StringPool getStringPool() {
+		return stringPool;
+	}
+
+	public Response parse(InputStream in) throws JAXBException {
+		try {
+			return parse(FACTORY.createXMLStreamReader(in));
+		} catch (XMLStreamException e) {
+			throw new JAXBException(e.getMessage(), e);
+		}
+	}
+
+	public Response parse(Reader reader) throws JAXBException {
+		try {
+			return parse(FACTORY.createXMLStreamReader(reader));
+		} catch (XMLStreamException e) {
+			throw new JAXBException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Create a stream reader configured the same way as the one used by this
+	 * parser.
+	 * 
+	 * @param in
+	 *            the XML stream.
+	 * @return the stream reader.
+	 * @throws XMLStreamException
+	 */
+	public static XMLStreamReader createReader(InputStream in)
+			throws XMLStreamException {
+		return FACTORY.createXMLStreamReader(in);
+	}
+
+	/**
+	 * Create a stream reader configured the same way as the one used by this
+	 * parser.
+	 * 
+	 * @param reader
+	 *            the XML stream.
+	 * @return the stream reader.
+	 * @throws XMLStreamException
+	 */
+	public static XMLStreamReader createReader(Reader reader)
+			throws XMLStreamException {
+		return FACTORY.createXMLStreamReader(reader);
+	}
+
+	/**
+	 * Parse the response from the stream reader and close it.
+	 * 
+	 * @param reader
+	 *            the stream reader positioned at the start of the document.
+	 * @return the parsed response.
+	 * @throws XMLStreamException
+	 * @throws JAXBException
+	 *             if the root element is not a known response.
+	 */
+	private Response parse(XMLStreamReader reader) throws XMLStreamException,
+			JAXBException {
+		try {
+			reader.nextTag();
+			return readResponse(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Read the response for the root element the reader is positioned on.
+	 * 
+	 * @param reader
+	 *            the stream reader positioned on the root element.
+	 * @return the parsed response.
+	 * @throws XMLStreamException
+	 * @throws JAXBException
+	 *             if the root element is not a known response.
+	 */
+	public Response readResponse(XMLStreamReader reader)
+			throws XMLStreamException, JAXBException {
+		String name = reader.getLocalName();
+
+		if ("episodes".equals(name)) {
+			EpisodesResponse response = new EpisodesResponse();
+			readCollectionAttributes(reader, response);
+			List<EpisodeItem> episodes = null;
+			while (nextChild(reader)) {
+				if ("episode".equals(reader.getLocalName())) {
+					if (episodes == null) {
+						episodes = new ArrayList<EpisodeItem>();
+					}
+					episodes.add(readEpisode(reader));
+				} else {
+					skip(reader);
+				}
+			}
+			response.setEpisodes(episodes);
+			return response;
+		} else if ("playlists".equals(name)) {
+			PlaylistsResponse response = new PlaylistsResponse();
+			readCollectionAttributes(reader, response);
+			List<PlaylistItem> playlists = null;
+			while (nextChild(reader)) {
+				if ("playlist".equals(reader.getLocalName())) {
+					if (playlists == null) {
+						playlists = new ArrayList<PlaylistItem>();
+					}
+					playlists.add(readPlaylist(reader));
+				} else {
+					skip(reader);
+				}
+			}
+			response.setPlaylists(playlists);
+			return response;
+		} else if ("shows".equals(name)) {
+			ShowsResponse response = new ShowsResponse();
+			readCollectionAttributes(reader, response);
+			List<ShowItem> shows = null;
+			while (nextChild(reader)) {
+				if ("show".equals(reader.getLocalName())) {
+					if (shows == null) {
+						shows = new ArrayList<ShowItem>();
+					}
+					shows.add(readShow(reader));
+				} else {
+					skip(reader);
+				}
+			}
+			response.setShows(shows);
+			return response;
+		} else if ("modification_callbacks".equals(name)) {
+			ModificationCallbacksResponse response = new ModificationCallbacksResponse();
+			readCollectionAttributes(reader, response);
+			List<ModificationCallbackItem> callbacks = null;
+			while (nextChild(reader)) {
+				if ("modification_callback".equals(reader.getLocalName())) {
+					if (callbacks == null) {
+						callbacks = new ArrayList<ModificationCallbackItem>();
+					}
+					callbacks.add(readModificationCallback(reader));
+				} else {
+					skip(reader);
+				}
+			}
+			response.setCallbacks(callbacks);
+			return response;
+		} else if ("error".equals(name)) {
+			return readError(reader);
+		} else if ("create_asset_response".equals(name)) {
+			CreateAssetResponse response = new CreateAssetResponse();
+			response.setAssetId(reader.getAttributeValue(null, "asset_id"));
+			skip(reader);
+			return response;
+		} else if ("create_episode_response".equals(name)) {
+			return readCreateUpdateEpisode(reader, new CreateEpisodeResponse());
+		} else if ("update_episode_response".equals(name)) {
+			return readCreateUpdateEpisode(reader, new UpdateEpisodeResponse());
+		} else if ("create_playlist_response".equals(name)) {
+			return readCreateUpdatePlaylist(reader,
+					new CreatePlaylistResponse());
+		} else if ("update_playlist_response".equals(name)) {
+			return readCreateUpdatePlaylist(reader,
+					new UpdatePlaylistResponse());
+		} else if ("episodes_summary_response".equals(name)) {
+			return readToken(reader, new EpisodesSummaryResponse());
+		} else if ("episode_daily_response".equals(name)) {
+			return readToken(reader, new EpisodeDailyResponse());
+		} else if ("campaigns_daily_response".equals(name)) {
+			return readToken(reader, new CampaignsDailyResponse());
+		}
+
+		throw new JAXBException("Unexpected element \"" + name + "\"");
+	}
+
+	/**
+	 * Read an <code>episode</code> element.
+	 * 
+	 * @param reader
+	 *            the stream reader positioned on the start of the element. On
+	 *            return it is positioned on the end of the element.
+	 * @return the episode.
+	 * @throws XMLStreamException
+	 */
+	public EpisodeItem readEpisode(XMLStreamReader reader)
+			throws XMLStreamException {
+		EpisodeItem episode = new EpisodeItem();
+
+		while (nextChild(reader)) {
+			String name = reader.getLocalName();
+			if (readItemElement(reader, episode)) {
+				continue;
+			} else if ("air_date".equals(name)) {
+				episode.setAirDate(toDate(readText(reader)));
+			} else if ("off_air_date".equals(name)) {
+				episode.setOffAirDate(toDate(readText(reader)));
+			} else if ("duration".equals(name)) {
+				episode.setDuration(readText(reader));
+			} else if ("status".equals(name)) {
+				episode.setStatus(toStatus(readText(reader)));
+			} else if ("tags".equals(name)) {
+				episode.setTags(internAll(toTags(readText(reader))));
+			} else if ("custom_fields".equals(name)) {
+				episode.setCustomFields(readCustomFields(reader));
+			} else if ("downloads".equals(name)) {
+				List<DownloadItem> downloads = new ArrayList<DownloadItem>();
+				while (nextChild(reader)) {
+					if ("download".equals(reader.getLocalName())) {
+						downloads.add(readDownload(reader));
+					} else {
+						skip(reader);
+					}
+				}
+				episode.setDownloads(downloads);
+			} else if ("players".equals(name)) {
+				episode.setPlayers(readPlayers(reader));
+			} else if ("playlists".equals(name)) {
+				List<EpisodePlaylistItem> playlists = new ArrayList<EpisodePlaylistItem>();
+				while (nextChild(reader)) {
+					if ("playlist".equals(reader.getLocalName())) {
+						EpisodePlaylistItem playlist = new EpisodePlaylistItem();
+						playlist.setPosition(toInt(reader.getAttributeValue(
+								null, "position")));
+						readItem(reader, playlist);
+						playlists.add(playlist);
+					} else {
+						skip(reader);
+					}
+				}
+				episode.setPlaylists(playlists);
+			} else if ("thumbnails".equals(name)) {
+				episode.setThumbnails(readThumbnails(reader));
+			} else {
+				skip(reader);
+			}
+		}
+
+		return episode;
+	}
+
+	/**
+	 * Read a <code>playlist</code> element.
+	 * 
+	 * @param reader
+	 *            the stream reader positioned on the start of the element. On
+	 *            return it is positioned on the end of the element.
+	 * @return the playlist.
+	 * @throws XMLStreamException
+	 */
+	public PlaylistItem readPlaylist(XMLStreamReader reader)
+			throws XMLStreamException {
+		PlaylistItem playlist = new PlaylistItem();
+
+		while (nextChild(reader)) {
+			String name = reader.getLocalName();
+			if (readItemElement(reader, playlist)) {
+				continue;
+			} else if ("created_at".equals(name)) {
+				playlist.setCreatedAt(toDate(readText(reader)));
+			} else if ("custom_fields".equals(name)) {
+				playlist.setCustomFields(readCustomFields(reader));
+			} else if ("players".equals(name)) {
+				playlist.setPlayers(readPlayers(reader));
+			} else if ("episodes".equals(name)) {
+				List<PlaylistEpisodeItem> episodes = new ArrayList<PlaylistEpisodeItem>();
+				while (nextChild(reader)) {
+					if ("episode".equals(reader.getLocalName())) {
+						PlaylistEpisodeItem episode = new PlaylistEpisodeItem();
+						episode.setPosition(toInt(reader.getAttributeValue(
+								null, "position")));
+						readItem(reader, episode);
+						episodes.add(episode);
+					} else {
+						skip(reader);
+					}
+				}
+				playlist.setEpisodes(episodes);
+			} else if ("thumbnails".equals(name)) {
+				playlist.setThumbnails(readThumbnails(reader));
+			} else {
+				skip(reader);
+			}
+		}
+
+		return playlist;
+	}
+
+	/**
+	 * Read a <code>show</code> element.
+	 * 
+	 * @param reader
+	 *            the stream reader positioned on the start of the element. On
+	 *            return it is positioned on the end of the element.
+	 * @return the show.
+	 * @throws XMLStreamException
+	 */
+	public ShowItem readShow(XMLStreamReader reader) throws XMLStreamException {
+		ShowItem show = new ShowItem();
+
+		while (nextChild(reader)) {
+			String name = reader.getLocalName();
+			if (readItemElement(reader, show)) {
+				continue;
+			} else if ("itunes_url".equals(name)) {
+				show.setItunesURL(readText(reader));
+			} else if ("page_url".equals(name)) {
+				show.setPageURL(readText(reader));
+			} else if ("players".equals(name)) {
+				show.setPlayers(readPlayers(reader));
+			} else if ("thumbnails".equals(name)) {
+				show.setThumbnails(readThumbnails(reader));
+			} else {
+				skip(reader);
+			}
+		}
+
+		return show;
+	}
+
+	/**
+	 * Read a <code>modification_callback</code> element.
+	 * 
+	 * @param reader
+	 *            the stream reader positioned on the start of the element. On
+	 *            return it is positioned on the end of the element.
+	 * @return the callback.
+	 * @throws XMLStreamException
+	 */
+	public ModificationCallbackItem readModificationCallback(
+			XMLStreamReader reader) throws XMLStreamException {
+		ModificationCallbackItem callback = new ModificationCallbackItem();
+
+		while (nextChild(reader)) {
+			String name = reader.getLocalName();
+			if (readItemElement(reader, callback)) {
+				continue;
+			} else if ("object_type".equals(name)) {
+				callback.setObjectType(intern(readText(reader)));
+			} else if ("object_id".equals(name)) {
+				callback.setObjectId(readText(reader));
+			} else if ("show_id".equals(name)) {
+				callback.setShowId(intern(readText(reader)));
+			} else if ("action".equals(name)) {
+				callback.setAction(intern(readText(reader)));
+			} else if ("status".equals(name)) {
+				callback.setStatus(intern(readText(reader)));
+			} else if ("created_at".equals(name)) {
+				callback.setCreatedAt(toDate(readText(reader)));
+			} else {
+				skip(reader);
+			}
+		}
+
+		return callback;
+	}
+
+	/**
+	 * Read the page attributes of a collection response.
+	 * 
+	 * @param reader
+	 *            the stream reader positioned on the collection element.
+	 * @param response
+	 *            the response to set the attributes on.
+	 */
+	public void readCollectionAttributes(XMLStreamReader reader,
+			CollectionResponse response) {
+		response.setPage(toLong(reader.getAttributeValue(null, "page")));
+		response.setPages(toLong(reader.getAttributeValue(null, "pages")));
+		response.setPerPage(toLong(reader.getAttributeValue(null, "per_page")));
+		response.setTotal(toLong(reader.getAttributeValue(null, "total")));
+	}
+
+	/**
+	 * Read an element with only the common item elements.
+	 */
+	private void readItem(XMLStreamReader reader, Item item)
+			throws XMLStreamException {
+		while (nextChild(reader)) {
+			if (!readItemElement(reader, item)) {
+				skip(reader);
+			}
+		}
+	}
+
+	/**
+	 * Read the current element if it is one of the elements common to all
+	 * items.
+	 * 
+	 * @return <code>true</code> if the element was read.
+	 */
+	private boolean readItemElement(XMLStreamReader reader, Item item)
+			throws XMLStreamException {
+		String name = reader.getLocalName();
+
+		if ("id".equals(name)) {
+			item.setId(readText(reader));
+		} else if ("name".equals(name)) {
+			item.setName(intern(readText(reader)));
+		} else if ("description".equals(name)) {
+			item.setDescription(readText(reader));
+		} else if ("error".equals(name)) {
+			item.setError(readText(reader));
+		} else {
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Read a <code>custom_fields</code> element.
+	 */
+	private List<CustomFieldItem> readCustomFields(XMLStreamReader reader)
+			throws XMLStreamException {
+		List<CustomFieldItem> fields = new ArrayList<CustomFieldItem>();
+
+		while (nextChild(reader)) {
+			if ("field".equals(reader.getLocalName())) {
+				CustomFieldItem field = new CustomFieldItem();
+				field.setPosition(toInt(reader.getAttributeValue(null,
+						"position")));
+				field.setRequired(toBoolean(reader.getAttributeValue(null,
+						"required")));
+				field.setType(intern(reader.getAttributeValue(null, "type")));
+
+				while (nextChild(reader)) {
+					if ("value".equals(reader.getLocalName())) {
+						CustomFieldValue value = new CustomFieldValue();
+						value.setId(reader.getAttributeValue(null, "id"));
+						value.setValue(intern(readText(reader)));
+						field.getValues().add(value);
+					} else if (!readItemElement(reader, field)) {
+						skip(reader);
+					}
+				}
+
+				fields.add(field);
+			} else {
+				skip(reader);
+			}
+		}
+
+		return fields;
+	}
+
+	/**
+	 * Read a <code>players</code> element.
+	 */
+	private List<PlayerItem> readPlayers(XMLStreamReader reader)
+			throws XMLStreamException {
+		List<PlayerItem> players = new ArrayList<PlayerItem>();
+
+		while (nextChild(reader)) {
+			if ("player".equals(reader.getLocalName())) {
+				PlayerItem player = new PlayerItem();
+				player.setDefaultPlayer(toBoolean(reader.getAttributeValue(
+						null, "default")));
+				player.setHeight(toInt(reader.getAttributeValue(null,
+						"height")));
+				player.setWidth(toInt(reader.getAttributeValue(null, "width")));
+
+				while (nextChild(reader)) {
+					String name = reader.getLocalName();
+					if ("config".equals(name)) {
+						player.setConfig(intern(readText(reader)));
+					} else if ("embed_code".equals(name)) {
+						player.setEmbedCode(readText(reader));
+					} else if (!readItemElement(reader, player)) {
+						skip(reader);
+					}
+				}
+
+				players.add(player);
+			} else {
+				skip(reader);
+			}
+		}
+
+		return players;
+	}
+
+	/**
+	 * Read a <code>thumbnails</code> element.
+	 */
+	private List<ThumbnailItem> readThumbnails(XMLStreamReader reader)
+			throws XMLStreamException {
+		List<ThumbnailItem> thumbnails = new ArrayList<ThumbnailItem>();
+
+		while (nextChild(reader)) {
+			if ("thumbnail".equals(reader.getLocalName())) {
+				ThumbnailItem thumbnail = new ThumbnailItem();
+				thumbnail.setHeight(toInt(reader.getAttributeValue(null,
+						"height")));
+				thumbnail.setWidth(toInt(reader.getAttributeValue(null,
+						"width")));
+				thumbnail.setUrl(readText(reader));
+				thumbnails.add(thumbnail);
+			} else {
+				skip(reader);
+			}
+		}
+
+		return thumbnails;
+	}
+
+	/**
+	 * Read a <code>download</code> element.
+	 */
+	private DownloadItem readDownload(XMLStreamReader reader)
+			throws XMLStreamException {
+		DownloadItem download = new DownloadItem();
+		download.setHeight(toInt(reader.getAttributeValue(null, "height")));
+		download.setWidth(toInt(reader.getAttributeValue(null, "width")));
+
+		while (nextChild(reader)) {
+			if ("url".equals(reader.getLocalName())) {
+				download.setUrl(readText(reader));
+			} else {
+				skip(reader);
+			}
+		}
+
+		return download;
+	}
+
+	/**
+	 * Read an <code>error</code> element.
+	 */
+	private ErrorResponse readError(XMLStreamReader reader)
+			throws XMLStreamException {
+		ErrorResponse response = new ErrorResponse();
+
+		while (nextChild(reader)) {
+			String name = reader.getLocalName();
+			if ("code".equals(name)) {
+				response.setCode(toInt(readText(reader)));
+			} else if ("message".equals(name)) {
+				response.setMessage(readText(reader));
+			} else if ("invalid_parameters".equals(name)) {
+				List<InvalidParameter> parameters = new ArrayList<InvalidParameter>();
+				while (nextChild(reader)) {
+					if ("invalid_parameter".equals(reader.getLocalName())) {
+						InvalidParameter parameter = new InvalidParameter();
+						parameter.setName(reader.getAttributeValue(null,
+								"name"));
+						parameter.setMessage(readText(reader));
+						parameters.add(parameter);
+					} else {
+						skip(reader);
+					}
+				}
+				response.setInvalidParameters(parameters);
+			} else {
+				skip(reader);
+			}
+		}
+
+		return response;
+	}
+
+	/**
+	 * Read a create or update episode response.
+	 */
+	private CreateUpdateEpisodeResponse readCreateUpdateEpisode(
+			XMLStreamReader reader, CreateUpdateEpisodeResponse response)
+			throws XMLStreamException {
+		response.setEpisodeId(reader.getAttributeValue(null, "episode_id"));
+
+		while (nextChild(reader)) {
+			if ("upload".equals(reader.getLocalName())) {
+				Upload upload = new Upload();
+				upload.setFilename(reader.getAttributeValue(null, "filename"));
+				upload.setUrl(reader.getAttributeValue(null, "url"));
+
+				while (nextChild(reader)) {
+					if ("param".equals(reader.getLocalName())) {
+						UploadParam param = new UploadParam();
+						param.setName(reader.getAttributeValue(null, "name"));
+						param.setValue(readText(reader));
+						upload.getUploadParams().add(param);
+					} else {
+						skip(reader);
+					}
+				}
+
+				response.getUploads().add(upload);
+			} else {
+				skip(reader);
+			}
+		}
+
+		return response;
+	}
+
+	/**
+	 * Read a create or update playlist response.
+	 */
+	private CreateUpdatePlaylistResponse readCreateUpdatePlaylist(
+			XMLStreamReader reader, CreateUpdatePlaylistResponse response)
+			throws XMLStreamException {
+		response.setPlaylistId(reader.getAttributeValue(null, "playlist_id"));
+		skip(reader);
+		return response;
+	}
+
+	/**
+	 * Read an analytics report token response.
+	 */
+	private TokenResponse readToken(XMLStreamReader reader,
+			TokenResponse response) throws XMLStreamException {
+		while (nextChild(reader)) {
+			if ("report_token".equals(reader.getLocalName())) {
+				response.setToken(readText(reader));
+			} else {
+				skip(reader);
+			}
+		}
+		return response;
+	}
+
+	/**
+	 * Advance to the next child element of the current element.
+	 * 
+	 * @param reader
+	 *            the stream reader.
+	 * @return <code>true</code> if the reader is on the start of a child
+	 *         element or <code>false</code> if it is on the end of the
+	 *         current element.
+	 * @throws XMLStreamException
+	 */
+	public static boolean nextChild(XMLStreamReader reader)
+			throws XMLStreamException {
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				return true;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Skip the current element and everything in it.
+	 * 
+	 * @param reader
+	 *            the stream reader positioned on the start of the element. On
+	 *            return it is positioned on the end of the element.
+	 * @throws XMLStreamException
+	 */
+	public static void skip(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0 && reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	/**
+	 * Read the text directly inside the current element after its last
+	 * nested element. This matches JAXB, which drops the text it has collected
+	 * when it meets a nested element and ignores the text inside it.
+	 * 
+	 * @param reader
+	 *            the stream reader positioned on the start of the element. On
+	 *            return it is positioned on the end of the element.
+	 * @return the text, which is empty if the element has no text.
+	 * @throws XMLStreamException
+	 */
+	private static String readText(XMLStreamReader reader)
+			throws XMLStreamException {
+		String text = null;
+		StringBuilder builder = null;
+		int depth = 1;
+
+		while (depth > 0 && reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				if (depth == 1) {
+					text = null;
+					builder = null;
+				}
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			} else if (depth == 1
+					&& (event == XMLStreamConstants.CHARACTERS
+							|| event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE)) {
+				// Most elements have a single text event so avoid the builder
+				if (text == null) {
+					text = reader.getText();
+				} else {
+					if (builder == null) {
+						builder = new StringBuilder(text);
+					}
+					builder.append(reader.getText());
+				}
+			}
+		}
+
+		if (builder != null) {
+			return builder.toString();
+		}
+		return text != null ? text : "";
+	}
+
+	/**
+	 * Convert a date the same way as {@link DateXmlAdapter}.
+	 */
+	private static DateTime toDate(String value) {
+		try {
+			return DATE_ADAPTER.unmarshal(value);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Get the pooled instance of a string if there is a pool.
+	 */
+	private String intern(String value) {
+		StringPool pool = stringPool;
+		return (pool != null) ? pool.intern(value) : value;
+	}
+
+	/**
+	 * Replace the strings with their pooled instances if there is a pool.
+	 */
+	private String[] internAll(String[] values) {
+		StringPool pool = stringPool;
+		return (pool != null) ? pool.internAll(values) : values;
+	}
+
+	/**
+	 * Convert tags the same way as {@link CommaSeperatedStringArrayXmlAdapter}.
+	 */
+	private static String[] toTags(String value) {
+		try {
+			return TAGS_ADAPTER.unmarshal(value);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Convert a status the same way as {@link EpisodeStatusXmlAdapter}.
+	 */
+	private static EpisodePublishingStatus toStatus(String value) {
+		try {
+			return STATUS_ADAPTER.unmarshal(value);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Convert an int leniently, returning zero for missing or invalid values.
+	 */
+	private static int toInt(String value) {
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				// Fall through to the default
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Convert a long leniently, returning zero for missing or invalid values.
+	 */
+	private static long toLong(String value) {
+		if (value != null) {
+			try {
+				return Long.parseLong(value.trim());
+			} catch (NumberFormatException e) {
+				// Fall through to the default
+			}
+		}
+		return 0L;
+	}
+
+	/**
+	 * Convert a boolean the same way as the XML schema, where "true" and "1"
+	 * are true.
+	 */
+	private static boolean toBoolean(String value) {
+		if (value != null) {
+			String trimmed = value.trim();
+			return "true".equals(trimmed) || "1".equals(trimmed);
+		}
+		return false;
+	}
+}
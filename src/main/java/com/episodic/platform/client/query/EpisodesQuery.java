@@ -0,0 +1,117 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.query;
+
+import com.episodic.platform.client.response.query.EpisodeItem.EpisodePublishingStatus;
+
+/**
+ * The options for an episodes query.
+ * 
+ * @see com.episodic.platform.client.QueryService#episodes(EpisodesQuery)
+ * @author Randy Simon
+ */
+public class EpisodesQuery extends Query<EpisodesQuery> {
+
+	@Override
+	protected EpisodesQuery self() {
+		return this;
+	}
+
+	/**
+	 * A single id or an array of show ids. If this param is not provided then
+	 * all shows in your network are queried.
+	 * 
+	 * @param showIds
+	 *            the show ids.
+	 * @return this query.
+	 */
+	public EpisodesQuery showIds(String... showIds) {
+		return set("show_id", showIds);
+	}
+
+	/**
+	 * A keywords search against the title, description, tags and custom fields
+	 * of an episode. Tags should be separated by commas.
+	 * 
+	 * @param searchTerm
+	 *            the search term.
+	 * @return this query.
+	 */
+	public EpisodesQuery searchTerm(String searchTerm) {
+		return set("search_term", searchTerm);
+	}
+
+	/**
+	 * The fields the search term is matched against.
+	 * 
+	 * @param searchType
+	 *            "tags", "name_description" or "all".
+	 * @return this query.
+	 */
+	public EpisodesQuery searchType(String searchType) {
+		return set("search_type", searchType);
+	}
+
+	/**
+	 * How tags are combined when the search type is "tags".
+	 * 
+	 * @param tagMode
+	 *            "any" or "all".
+	 * @return this query.
+	 */
+	public EpisodesQuery tagMode(String tagMode) {
+		return set("tag_mode", tagMode);
+	}
+
+	/**
+	 * Limit the episodes to those with one of the publishing statuses.
+	 * 
+	 * @param statuses
+	 *            the statuses.
+	 * @return this query.
+	 */
+	public EpisodesQuery status(EpisodePublishingStatus... statuses) {
+		return set("status", statuses);
+	}
+
+	/**
+	 * Include total views and complete views in the response. This may result
+	 * in slower response times.
+	 * 
+	 * @param includeViews
+	 *            <code>true</code> to include views.
+	 * @return this query.
+	 */
+	public EpisodesQuery includeViews(boolean includeViews) {
+		return set("include_views", String.valueOf(includeViews));
+	}
+
+	/**
+	 * The width of the player in pixels.
+	 * 
+	 * @param embedWidth
+	 *            the width.
+	 * @return this query.
+	 */
+	public EpisodesQuery embedWidth(int embedWidth) {
+		return set("embed_width", String.valueOf(embedWidth));
+	}
+
+	/**
+	 * The height of the player in pixels.
+	 * 
+	 * @param embedHeight
+	 *            the height.
+	 * @return this query.
+	 */
+	public EpisodesQuery embedHeight(int embedHeight) {
+		return set("embed_height", String.valueOf(embedHeight));
+	}
+}
@@ -0,0 +1,70 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.query;
+
+/**
+ * The options for a playlists query.
+ * 
+ * @see com.episodic.platform.client.QueryService#playlists(PlaylistsQuery)
+ * @author Randy Simon
+ */
+public class PlaylistsQuery extends Query<PlaylistsQuery> {
+
+	@Override
+	protected PlaylistsQuery self() {
+		return this;
+	}
+
+	/**
+	 * A single id or an array of show ids. If this param is not provided then
+	 * all shows in your network are queried.
+	 * 
+	 * @param showIds
+	 *            the show ids.
+	 * @return this query.
+	 */
+	public PlaylistsQuery showIds(String... showIds) {
+		return set("show_id", showIds);
+	}
+
+	/**
+	 * A keywords search against the title, description and custom fields of
+	 * a playlist.
+	 * 
+	 * @param searchTerm
+	 *            the search term.
+	 * @return this query.
+	 */
+	public PlaylistsQuery searchTerm(String searchTerm) {
+		return set("search_term", searchTerm);
+	}
+
+	/**
+	 * The width of the player in pixels.
+	 * 
+	 * @param embedWidth
+	 *            the width.
+	 * @return this query.
+	 */
+	public PlaylistsQuery embedWidth(int embedWidth) {
+		return set("embed_width", String.valueOf(embedWidth));
+	}
+
+	/**
+	 * The height of the player in pixels.
+	 * 
+	 * @param embedHeight
+	 *            the height.
+	 * @return this query.
+	 */
+	public PlaylistsQuery embedHeight(int embedHeight) {
+		return set("embed_height", String.valueOf(embedHeight));
+	}
+}
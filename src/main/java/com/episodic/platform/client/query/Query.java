@@ -0,0 +1,175 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.query;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.episodic.platform.client.util.FormEncoder;
+import com.episodic.platform.client.util.StringUtil;
+
+/**
+ * Base class of the typed query objects that can be used in place of an
+ * options map. The params are converted to strings when they are set and the
+ * encoded query string is built once and reused, so a query object can be
+ * kept and passed to many requests cheaply. Only the page and the params
+ * added to every request, such as the signature, are converted per request.
+ * 
+ * <p>
+ * Query objects may be shared between threads.
+ * 
+ * @author Randy Simon
+ */
+abstract public class Query<Q extends Query<Q>> {
+
+	/**
+	 * The params converted to strings, sorted by name.
+	 */
+	private final Map<String, String> params = new TreeMap<String, String>();
+
+	/**
+	 * An unmodifiable copy of the params or <code>null</code> if the params
+	 * have changed since it was made.
+	 */
+	private Map<String, String> paramsSnapshot;
+
+	/**
+	 * The encoded query string or <code>null</code> if the params have
+	 * changed since it was built.
+	 */
+	private String encodedParams;
+
+	/**
+	 * Get this object with its subclass type so that setters can be chained.
+	 * 
+	 * @return this query.
+	 */
+	protected abstract Q self();
+
+	/**
+	 * A single id or an array of ids of the items to return.
+	 * 
+	 * @param ids
+	 *            the ids.
+	 * @return this query.
+	 */
+	public Q ids(String... ids) {
+		return set("id", ids);
+	}
+
+	/**
+	 * The field to sort the results by.
+	 * 
+	 * @param sortBy
+	 *            the field name, for example "created_at" or "name".
+	 * @return this query.
+	 */
+	public Q sortBy(String sortBy) {
+		return set("sort_by", sortBy);
+	}
+
+	/**
+	 * The sort direction.
+	 * 
+	 * @param sortDir
+	 *            "asc" or "desc".
+	 * @return this query.
+	 */
+	public Q sortDir(String sortDir) {
+		return set("sort_dir", sortDir);
+	}
+
+	/**
+	 * The page number to return the results for. The default is 1.
+	 * 
+	 * @param page
+	 *            the page number.
+	 * @return this query.
+	 */
+	public Q page(long page) {
+		return set("page", String.valueOf(page));
+	}
+
+	/**
+	 * The number of items per page. The default is 20.
+	 * 
+	 * @param perPage
+	 *            the number of items.
+	 * @return this query.
+	 */
+	public Q perPage(int perPage) {
+		return set("per_page", String.valueOf(perPage));
+	}
+
+	/**
+	 * Get the params of this query converted to strings.
+	 * 
+	 * @return an unmodifiable map of the params.
+	 */
+	public synchronized Map<String, String> getParams() {
+		if (paramsSnapshot == null) {
+			paramsSnapshot = Collections
+					.unmodifiableMap(new TreeMap<String, String>(params));
+		}
+		return paramsSnapshot;
+	}
+
+	/**
+	 * Get the params of this query encoded for use in a query string.
+	 * 
+	 * @return the encoded params, which is empty if there are no params.
+	 */
+	public synchronized String getEncodedParams() {
+		if (encodedParams == null) {
+			encodedParams = FormEncoder.appendParams(new StringBuilder(),
+					params).toString();
+		}
+		return encodedParams;
+	}
+
+	/**
+	 * Set a param.
+	 * 
+	 * @param name
+	 *            the param name.
+	 * @param value
+	 *            the value or <code>null</code> to remove the param.
+	 * @return this query.
+	 */
+	protected synchronized Q set(String name, String value) {
+		if (value == null) {
+			params.remove(name);
+		} else {
+			params.put(name, value);
+		}
+		paramsSnapshot = null;
+		encodedParams = null;
+		return self();
+	}
+
+	/**
+	 * Set a param to a comma delimited list of values.
+	 * 
+	 * @param name
+	 *            the param name.
+	 * @param values
+	 *            the values or <code>null</code> to remove the param.
+	 * @return this query.
+	 */
+	protected Q set(String name, Object[] values) {
+		return set(name, values != null ? StringUtil.join(values, ",") : null);
+	}
+
+	@Override
+	public String toString() {
+		return getEncodedParams();
+	}
+}
@@ -0,0 +1,24 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.query;
+
+/**
+ * The options for a shows query. Shows can only be limited by id and paged.
+ * 
+ * @see com.episodic.platform.client.QueryService#shows(ShowsQuery)
+ * @author Randy Simon
+ */
+public class ShowsQuery extends Query<ShowsQuery> {
+
+	@Override
+	protected ShowsQuery self() {
+		return this;
+	}
+}
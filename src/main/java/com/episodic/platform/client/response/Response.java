@@ -26,7 +26,8 @@ public class Response implements Serializable {
 	private static final long serialVersionUID = 1L;
 
 	/**
-	 * The raw XML from the response
+	 * The raw XML from the response. This is only kept when requested since it
+	 * can be large.
 	 */
 	private String body;
 
@@ -36,9 +37,11 @@ public class Response implements Serializable {
 	private int statusCode;
 
 	/**
-	 * Get the XML from the response.
+	 * Get the XML from the response. For parsed responses this is only set if
+	 * {@link com.episodic.platform.client.Connection#setRetainResponseBody(boolean)}
+	 * is enabled.
 	 * 
-	 * @return the xml
+	 * @return the xml or <code>null</code> if it was not kept.
 	 */
 	public String getBody() {
 		return body;
@@ -9,12 +9,14 @@
  */
 package com.episodic.platform.client.response.query;
 
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.bind.annotation.XmlAttribute;
 
 import com.episodic.platform.client.response.Response;
+import com.episodic.platform.client.util.ListSnapshot;
 
 /**
  * Base class for responses that include a collection of items that supports
@@ -49,6 +51,11 @@ abstract public class CollectionResponse extends Response {
 	 */
 	private long total;
 
+	/**
+	 * The items by id or <code>null</code> if they have not been indexed.
+	 */
+	private transient volatile ListSnapshot<Map<String, Item>> itemIndex;
+
 	/**
 	 * Get the current page for a paginated response.
 	 * 
@@ -130,7 +137,13 @@ abstract public class CollectionResponse extends Response {
 	}
 
 	/**
-	 * Helper method used by subclasses to get a sepecific item specified by id
+	 * Helper method used by subclasses to get a sepecific item specified by
+	 * id. The items are indexed by id the first time this is called so that
+	 * looking up many items in a large page does not scan the list each time.
+	 * The index is rebuilt if a different list is passed or an item is added,
+	 * removed or replaced in the list. Changing the id of an item in place is
+	 * not seen. The index is published without locking, so lookups from many
+	 * threads do not wait on each other.
 	 * 
 	 * @param id
 	 *            the id of the item to find
@@ -139,19 +152,24 @@ abstract public class CollectionResponse extends Response {
 	 * @return the found item or <code>null</code>
 	 */
 	protected Item getItemById(String id, List<? extends Item> items) {
+		if (items == null) {
+			return null;
+		}
 
-		Item item = null;
-
-		if (items != null) {
-			for (Iterator<? extends Item> itr = items.iterator(); itr.hasNext();) {
-				Item currentItem = itr.next();
-				if (currentItem.getId().equals(id)) {
-					item = currentItem;
-					break;
+		ListSnapshot<Map<String, Item>> index = itemIndex;
+		if (!ListSnapshot.isCurrent(index, items)) {
+			Map<String, Item> byId = new HashMap<String, Item>(
+					items.size() * 4 / 3 + 1);
+			for (Item item : items) {
+				// Keep the first item with an id like a scan would
+				if (item.getId() != null && !byId.containsKey(item.getId())) {
+					byId.put(item.getId(), item);
 				}
 			}
+			index = new ListSnapshot<Map<String, Item>>(items, byId);
+			itemIndex = index;
 		}
 
-		return item;
+		return index.getValue().get(id);
 	}
 }
@@ -0,0 +1,250 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.response.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.joda.time.DateTime;
+
+import com.episodic.platform.client.util.DateXmlAdapter;
+
+/**
+ * The custom fields of an episode or playlist indexed by name. The values are
+ * converted once when the view is built: the values of "date" fields are
+ * parsed and the values of "external_select" fields are mapped by id, so
+ * reading a field does not scan or convert anything.
+ * 
+ * <p>
+ * A view is immutable and may be shared between threads.
+ * 
+ * @see EpisodeItem#getCustomFieldsByName()
+ * @see PlaylistItem#getCustomFieldsByName()
+ * @author Randy Simon
+ */
+public class CustomFields {
+
+	/**
+	 * The type of a date field.
+	 */
+	public static final String DATE_TYPE = "date";
+
+	/**
+	 * The type of an external select field.
+	 */
+	public static final String EXTERNAL_SELECT_TYPE = "external_select";
+
+	/**
+	 * Parses the values of date fields.
+	 */
+	private static final DateXmlAdapter DATE_ADAPTER = new DateXmlAdapter();
+
+	/**
+	 * The fields by name in the order they were returned.
+	 */
+	private final Map<String, Field> fields;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param customFields
+	 *            the custom fields or <code>null</code> if there are none.
+	 */
+	public CustomFields(List<CustomFieldItem> customFields) {
+		Map<String, Field> byName = new LinkedHashMap<String, Field>();
+		if (customFields != null) {
+			for (CustomFieldItem customField : customFields) {
+				// Keep the first field with a name like a scan would
+				if (customField.getName() != null
+						&& !byName.containsKey(customField.getName())) {
+					byName.put(customField.getName(), new Field(customField));
+				}
+			}
+		}
+		this.fields = byName;
+	}
+
+	/**
+	 * Get the names of the fields.
+	 * 
+	 * @return the names in the order the fields were returned.
+	 */
+	public Set<String> getNames() {
+		return Collections.unmodifiableSet(fields.keySet());
+	}
+
+	/**
+	 * Check if there is a field with a name.
+	 * 
+	 * @param name
+	 *            the field name.
+	 * @return <code>true</code> if the field exists.
+	 */
+	public boolean contains(String name) {
+		return fields.containsKey(name);
+	}
+
+	/**
+	 * Get a field.
+	 * 
+	 * @param name
+	 *            the field name, for example "Series Name".
+	 * @return the field or <code>null</code> if there is no such field.
+	 */
+	public CustomFieldItem getField(String name) {
+		Field field = fields.get(name);
+		return (field != null) ? field.item : null;
+	}
+
+	/**
+	 * Get the first value of a field.
+	 * 
+	 * @param name
+	 *            the field name.
+	 * @return the value or <code>null</code> if the field does not exist or
+	 *         has no value.
+	 */
+	public String getValue(String name) {
+		List<String> values = getValues(name);
+		return values.isEmpty() ? null : values.get(0);
+	}
+
+	/**
+	 * Get the values of a field.
+	 * 
+	 * @param name
+	 *            the field name.
+	 * @return the values, which is empty if the field does not exist.
+	 */
+	public List<String> getValues(String name) {
+		Field field = fields.get(name);
+		return (field != null) ? field.values : Collections
+				.<String> emptyList();
+	}
+
+	/**
+	 * Get the first value of a date field.
+	 * 
+	 * @param name
+	 *            the field name.
+	 * @return the date or <code>null</code> if the field does not exist, is
+	 *         not a date field or has no value.
+	 */
+	public DateTime getDate(String name) {
+		List<DateTime> dates = getDates(name);
+		return dates.isEmpty() ? null : dates.get(0);
+	}
+
+	/**
+	 * Get the values of a date field. Values that are not valid dates are
+	 * left out.
+	 * 
+	 * @param name
+	 *            the field name.
+	 * @return the dates, which is empty if the field does not exist or is not
+	 *         a date field.
+	 */
+	public List<DateTime> getDates(String name) {
+		Field field = fields.get(name);
+		return (field != null) ? field.dates : Collections
+				.<DateTime> emptyList();
+	}
+
+	/**
+	 * Get the selected values of an external select field by id.
+	 * 
+	 * @param name
+	 *            the field name.
+	 * @return the values by id, which is empty if the field does not exist or
+	 *         is not an external select field.
+	 */
+	public Map<String, String> getSelectValues(String name) {
+		Field field = fields.get(name);
+		return (field != null) ? field.selectValues : Collections
+				.<String, String> emptyMap();
+	}
+
+	/**
+	 * A field with its converted values.
+	 */
+	private static class Field {
+
+		/**
+		 * The field.
+		 */
+		private final CustomFieldItem item;
+
+		/**
+		 * The values as strings.
+		 */
+		private final List<String> values;
+
+		/**
+		 * The values of a date field.
+		 */
+		private final List<DateTime> dates;
+
+		/**
+		 * The values of an external select field by id.
+		 */
+		private final Map<String, String> selectValues;
+
+		/**
+		 * Constructor. Converts the values of the field.
+		 * 
+		 * @param item
+		 *            the field.
+		 */
+		Field(CustomFieldItem item) {
+			this.item = item;
+
+			List<String> stringValues = new ArrayList<String>();
+			List<DateTime> dateValues = new ArrayList<DateTime>();
+			Map<String, String> byId = new LinkedHashMap<String, String>();
+			boolean date = DATE_TYPE.equals(item.getType());
+			boolean select = EXTERNAL_SELECT_TYPE.equals(item.getType());
+
+			if (item.getValues() != null) {
+				for (CustomFieldValue value : item.getValues()) {
+					stringValues.add(value.getValue());
+					if (date) {
+						DateTime dateTime = toDate(value.getValue());
+						if (dateTime != null) {
+							dateValues.add(dateTime);
+						}
+					} else if (select && value.getId() != null) {
+						byId.put(value.getId(), value.getValue());
+					}
+				}
+			}
+
+			this.values = Collections.unmodifiableList(stringValues);
+			this.dates = Collections.unmodifiableList(dateValues);
+			this.selectValues = Collections.unmodifiableMap(byId);
+		}
+
+		/**
+		 * Parse a date value.
+		 * 
+		 * @return the date or <code>null</code> if it is empty or invalid.
+		 */
+		private static DateTime toDate(String value) {
+			try {
+				return DATE_ADAPTER.unmarshal(value);
+			} catch (Exception e) {
+				return null;
+			}
+		}
+	}
+}
@@ -15,6 +15,7 @@ import java.util.List;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlElements;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import org.joda.time.DateTime;
@@ -22,6 +23,7 @@ import org.joda.time.DateTime;
 import com.episodic.platform.client.util.CommaSeperatedStringArrayXmlAdapter;
 import com.episodic.platform.client.util.DateXmlAdapter;
 import com.episodic.platform.client.util.EpisodeStatusXmlAdapter;
+import com.episodic.platform.client.util.ListSnapshot;
 
 /**
  * Represents a deserialized episode from an episodes request.
@@ -103,6 +105,12 @@ public class EpisodeItem extends Item {
 	 */
 	private List<CustomFieldItem> customFields;
 
+	/**
+	 * The custom fields by name or <code>null</code> if they have not been
+	 * indexed.
+	 */
+	private transient volatile ListSnapshot<CustomFields> customFieldsByName;
+
 	/**
 	 * The list of downloads for this episode.
 	 */
@@ -353,6 +361,28 @@ public class EpisodeItem extends Item {
 		this.thumbnails = thumbnails;
 	}
 
+	/**
+	 * Get the custom fields of this episode indexed by name with their values
+	 * converted. The view is built on the first call and rebuilt if the list
+	 * of custom fields is replaced or a field is added, removed or replaced
+	 * in it. Changes made to a field in place are not seen. The view is
+	 * published without locking, so an item shared by many threads, such as
+	 * one from a cached response, can be read by all of them at once.
+	 * 
+	 * @return the custom fields by name.
+	 */
+	@XmlTransient
+	public CustomFields getCustomFieldsByName() {
+		List<CustomFieldItem> customFields = this.customFields;
+		ListSnapshot<CustomFields> byName = customFieldsByName;
+		if (!ListSnapshot.isCurrent(byName, customFields)) {
+			byName = new ListSnapshot<CustomFields>(customFields,
+					new CustomFields(customFields));
+			customFieldsByName = byName;
+		}
+		return byName.getValue();
+	}
+
 	/**
 	 * Find the custom field in the list specified by position.
 	 * 
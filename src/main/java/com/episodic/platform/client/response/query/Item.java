@@ -12,6 +12,7 @@ package com.episodic.platform.client.response.query;
 import java.io.Serializable;
 
 import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlTransient;
 
 /**
  * Base class of common attributes for items included in a query response.
@@ -129,4 +130,16 @@ abstract public class Item implements Serializable {
 	public boolean exists() {
 		return error == null;
 	}
+
+	/**
+	 * Set the error for an item that could not be found. This is used by
+	 * response parsers and there is normally no need to call it directly.
+	 * 
+	 * @param error
+	 *            the error to set
+	 */
+	@XmlTransient
+	public void setError(String error) {
+		this.error = error;
+	}
 }
@@ -0,0 +1,243 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.response.query;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlTransient;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+import org.joda.time.DateTime;
+
+import com.episodic.platform.client.util.DateXmlAdapter;
+
+/**
+ * A callback sent to the network's modification URL when an episode or
+ * playlist was created, modified or deleted. It appears in the
+ * "modification_callbacks" response.
+ * 
+ * <p>
+ * The API documentation does not describe the response in detail, so the
+ * element names used here are a best guess at the following form. Elements
+ * that are not recognized are ignored.
+ * 
+ * <pre>
+ * &lt;modification_callback&gt;
+ *   &lt;id&gt;callback id&lt;/id&gt;
+ *   &lt;object_type&gt;episode | playlist&lt;/object_type&gt;
+ *   &lt;object_id&gt;id of the changed episode or playlist&lt;/object_id&gt;
+ *   &lt;show_id&gt;id of the show it belongs to&lt;/show_id&gt;
+ *   &lt;action&gt;create | update | delete&lt;/action&gt;
+ *   &lt;status&gt;pending | complete | failed&lt;/status&gt;
+ *   &lt;created_at&gt;2010-01-06 02:12:39&lt;/created_at&gt;
+ * &lt;/modification_callback&gt;
+ * </pre>
+ * 
+ * @author Randy Simon
+ */
+public class ModificationCallbackItem extends Item {
+
+	/**
+	 * Default serial version UID
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The object type of a changed episode.
+	 */
+	public static final String EPISODE = "episode";
+
+	/**
+	 * The object type of a changed playlist.
+	 */
+	public static final String PLAYLIST = "playlist";
+
+	/**
+	 * The action of a deleted object.
+	 */
+	public static final String DELETE = "delete";
+
+	/**
+	 * The type of the changed object.
+	 */
+	private String objectType;
+
+	/**
+	 * The id of the changed object.
+	 */
+	private String objectId;
+
+	/**
+	 * The id of the show the changed object belongs to.
+	 */
+	private String showId;
+
+	/**
+	 * What happened to the object.
+	 */
+	private String action;
+
+	/**
+	 * The delivery status of the callback.
+	 */
+	private String status;
+
+	/**
+	 * When the callback was registered.
+	 */
+	private DateTime createdAt;
+
+	/**
+	 * Get the type of the changed object, either {@link #EPISODE} or
+	 * {@link #PLAYLIST}.
+	 * 
+	 * @return the object type
+	 */
+	@XmlElement(name = "object_type")
+	public String getObjectType() {
+		return objectType;
+	}
+
+	/**
+	 * Set the type of the changed object.
+	 * 
+	 * @param objectType
+	 *            the object type to set
+	 */
+	public void setObjectType(String objectType) {
+		this.objectType = objectType;
+	}
+
+	/**
+	 * Get the id of the changed episode or playlist.
+	 * 
+	 * @return the object id
+	 */
+	@XmlElement(name = "object_id")
+	public String getObjectId() {
+		return objectId;
+	}
+
+	/**
+	 * Set the id of the changed episode or playlist.
+	 * 
+	 * @param objectId
+	 *            the object id to set
+	 */
+	public void setObjectId(String objectId) {
+		this.objectId = objectId;
+	}
+
+	/**
+	 * Get the id of the show the changed object belongs to. This may be
+	 * <code>null</code> if not specified in the response.
+	 * 
+	 * @return the show id
+	 */
+	@XmlElement(name = "show_id")
+	public String getShowId() {
+		return showId;
+	}
+
+	/**
+	 * Set the id of the show the changed object belongs to.
+	 * 
+	 * @param showId
+	 *            the show id to set
+	 */
+	public void setShowId(String showId) {
+		this.showId = showId;
+	}
+
+	/**
+	 * Get what happened to the object, for example "create", "update" or
+	 * {@link #DELETE}.
+	 * 
+	 * @return the action
+	 */
+	@XmlElement
+	public String getAction() {
+		return action;
+	}
+
+	/**
+	 * Set what happened to the object.
+	 * 
+	 * @param action
+	 *            the action to set
+	 */
+	public void setAction(String action) {
+		this.action = action;
+	}
+
+	/**
+	 * Get the delivery status of the callback, for example "pending".
+	 * 
+	 * @return the status
+	 */
+	@XmlElement
+	public String getStatus() {
+		return status;
+	}
+
+	/**
+	 * Set the delivery status of the callback.
+	 * 
+	 * @param status
+	 *            the status to set
+	 */
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	/**
+	 * Get when the callback was registered.
+	 * 
+	 * @return the created at date
+	 */
+	@XmlElement(name = "created_at")
+	@XmlJavaTypeAdapter(DateXmlAdapter.class)
+	public DateTime getCreatedAt() {
+		return createdAt;
+	}
+
+	/**
+	 * Set when the callback was registered.
+	 * 
+	 * @param createdAt
+	 *            the date to set
+	 */
+	public void setCreatedAt(DateTime createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	/**
+	 * @return <code>true</code> if the changed object is an episode.
+	 */
+	@XmlTransient
+	public boolean isEpisode() {
+		return EPISODE.equals(objectType);
+	}
+
+	/**
+	 * @return <code>true</code> if the changed object is a playlist.
+	 */
+	@XmlTransient
+	public boolean isPlaylist() {
+		return PLAYLIST.equals(objectType);
+	}
+
+	/**
+	 * @return <code>true</code> if the object was deleted.
+	 */
+	@XmlTransient
+	public boolean isDelete() {
+		return DELETE.equals(action);
+	}
+}
@@ -0,0 +1,59 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.response.query;
+
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * A deserialized list of modification callbacks returned from a
+ * modification_callbacks request.
+ * 
+ * @see ModificationCallbackItem
+ * @author Randy Simon
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlRootElement(name = "modification_callbacks")
+public class ModificationCallbacksResponse extends CollectionResponse {
+
+	/**
+	 * Default serial version UID
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The list of callback items that appear in the response
+	 */
+	private List<ModificationCallbackItem> callbackItems;
+
+	/**
+	 * Get the list of callback items from the response.
+	 * 
+	 * @return a list of {@link ModificationCallbackItem} objects.
+	 */
+	@XmlElement(name = "modification_callback")
+	public List<ModificationCallbackItem> getCallbacks() {
+		return callbackItems;
+	}
+
+	/**
+	 * Set the list of callback items for the response.
+	 * 
+	 * @param callbacks
+	 *            a list of {@link ModificationCallbackItem} objects.
+	 */
+	public void setCallbacks(List<ModificationCallbackItem> callbacks) {
+		this.callbackItems = callbacks;
+	}
+}
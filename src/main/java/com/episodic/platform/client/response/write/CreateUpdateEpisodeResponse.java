@@ -11,14 +11,16 @@ package com.episodic.platform.client.response.write;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElements;
 
 import com.episodic.platform.client.response.Response;
+import com.episodic.platform.client.util.ListSnapshot;
 
 /**
  * Base class for a create or update episode request. The data in the response
@@ -44,6 +46,12 @@ abstract public class CreateUpdateEpisodeResponse extends Response {
 	 */
 	private List<Upload> uploads = new ArrayList<Upload>();
 
+	/**
+	 * The uploads by filename or <code>null</code> if they have not been
+	 * indexed.
+	 */
+	private transient volatile ListSnapshot<Map<String, Upload>> uploadIndex;
+
 	/**
 	 * Gets the ID of the created or updated episode.
 	 * 
@@ -115,26 +123,37 @@ abstract public class CreateUpdateEpisodeResponse extends Response {
 	 * . The {@link Upload} object returned from this method can be passed to
 	 * {@link com.episodic.platform.client.WriteService#uploadFileForEpisode(Upload, File)}
 	 * 
+	 * <p>
+	 * The uploads are indexed by filename on the first call, and the index is
+	 * rebuilt if the list of uploads is replaced or an upload is added,
+	 * removed or replaced in it.
+	 * 
 	 * @param file
 	 *            the file object for the file to be uploaded.
 	 * @return the upload params or <c>null</c> if the upload params cannot be
 	 *         found.
 	 */
 	public Upload getUploadForFile(File file) {
-		String filename = file.getName();
-
-		Upload upload = null;
+		List<Upload> uploads = this.uploads;
+		if (uploads == null) {
+			return null;
+		}
 
-		if (uploads != null) {
-			for (Iterator<Upload> itr = uploads.iterator(); itr.hasNext();) {
-				Upload currentUpload = itr.next();
-				if (currentUpload.getFilename().equals(filename)) {
-					upload = currentUpload;
-					break;
+		ListSnapshot<Map<String, Upload>> index = uploadIndex;
+		if (!ListSnapshot.isCurrent(index, uploads)) {
+			Map<String, Upload> byFilename = new HashMap<String, Upload>(
+					uploads.size() * 4 / 3 + 1);
+			for (Upload upload : uploads) {
+				// Keep the first upload for a filename like a scan would
+				if (upload.getFilename() != null
+						&& !byFilename.containsKey(upload.getFilename())) {
+					byFilename.put(upload.getFilename(), upload);
 				}
 			}
+			index = new ListSnapshot<Map<String, Upload>>(uploads, byFilename);
+			uploadIndex = index;
 		}
 
-		return upload;
+		return index.getValue().get(file.getName());
 	}
 }
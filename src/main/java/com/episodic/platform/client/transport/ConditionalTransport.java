@@ -0,0 +1,40 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.transport;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * A {@link Transport} that can send request headers with a GET. The
+ * connection uses this to revalidate cached responses with
+ * <code>If-None-Match</code> and <code>If-Modified-Since</code>. Cached
+ * responses are downloaded again in full when the transport does not
+ * implement this interface.
+ * 
+ * @author Randy Simon
+ */
+public interface ConditionalTransport extends Transport {
+
+	/**
+	 * Makes a GET request with extra request headers.
+	 * 
+	 * @param uri
+	 *            the full request URI including the query string.
+	 * @param headers
+	 *            the headers to send.
+	 * @return the response, which may be a <code>304 Not Modified</code>.
+	 *         The caller must close it once the body has been read.
+	 * @throws IOException
+	 */
+	TransportResponse get(URI uri, Map<String, String> headers)
+			throws IOException;
+}
@@ -0,0 +1,273 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.entity.mime.MultipartEntity;
+import org.apache.http.entity.mime.content.FileBody;
+import org.apache.http.entity.mime.content.StringBody;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+
+/**
+ * The default {@link Transport} built on Apache HttpClient. Requests share a
+ * pool of keep-alive connections and a daemon thread evicts expired and idle
+ * connections from the pool.
+ * 
+ * @author Randy Simon
+ */
+public class HttpClientTransport implements ConditionalTransport {
+
+	/**
+	 * The default maximum number of pooled connections.
+	 */
+	public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 20;
+
+	/**
+	 * The default maximum number of pooled connections to a single host.
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+
+	/**
+	 * The default number of milliseconds a pooled connection may sit idle
+	 * before it is closed.
+	 */
+	public static final long DEFAULT_IDLE_CONNECTION_TIMEOUT = 30000L;
+
+	/**
+	 * The charset used for string parts of multipart requests.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * The pooled client.
+	 */
+	private final HttpClient httpClient;
+
+	/**
+	 * Background thread that evicts expired and idle pooled connections.
+	 */
+	private final IdleConnectionMonitor idleConnectionMonitor;
+
+	/**
+	 * Constructor that uses the default pool settings.
+	 */
+	public HttpClientTransport() {
+		this(DEFAULT_MAX_TOTAL_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+				DEFAULT_IDLE_CONNECTION_TIMEOUT);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param maxTotalConnections
+	 *            the maximum number of pooled connections.
+	 * @param maxConnectionsPerRoute
+	 *            the maximum number of pooled connections to a single host.
+	 * @param idleConnectionTimeout
+	 *            the number of milliseconds a pooled connection may sit idle
+	 *            before it is closed. A value of zero or less disables idle
+	 *            eviction.
+	 */
+	public HttpClientTransport(int maxTotalConnections,
+			int maxConnectionsPerRoute, long idleConnectionTimeout) {
+		HttpParams httpParams = new BasicHttpParams();
+		HttpProtocolParams.setVersion(httpParams, HttpVersion.HTTP_1_1);
+		HttpProtocolParams.setContentCharset(httpParams, "UTF-8");
+		ConnManagerParams.setMaxTotalConnections(httpParams,
+				maxTotalConnections);
+		ConnManagerParams.setMaxConnectionsPerRoute(httpParams,
+				new ConnPerRouteBean(maxConnectionsPerRoute));
+
+		SchemeRegistry schemeRegistry = new SchemeRegistry();
+		schemeRegistry.register(new Scheme("http", PlainSocketFactory
+				.getSocketFactory(), 80));
+		schemeRegistry.register(new Scheme("https", SSLSocketFactory
+				.getSocketFactory(), 443));
+
+		ClientConnectionManager connectionManager = new ThreadSafeClientConnManager(
+				httpParams, schemeRegistry);
+		httpClient = new DefaultHttpClient(connectionManager, httpParams);
+
+		if (idleConnectionTimeout > 0) {
+			idleConnectionMonitor = new IdleConnectionMonitor(
+					connectionManager, idleConnectionTimeout);
+			idleConnectionMonitor.start();
+		} else {
+			idleConnectionMonitor = null;
+		}
+	}
+
+	public TransportResponse get(URI uri) throws IOException {
+		return execute(new HttpGet(uri));
+	}
+
+	public TransportResponse get(URI uri, Map<String, String> headers)
+			throws IOException {
+		HttpGet method = new HttpGet(uri);
+		if (headers != null) {
+			for (Map.Entry<String, String> entry : headers.entrySet()) {
+				method.addHeader(entry.getKey(), entry.getValue());
+			}
+		}
+		return execute(method);
+	}
+
+	public TransportResponse post(URI uri, Map<String, String> params,
+			Map<String, File> files) throws IOException {
+		HttpPost method = new HttpPost(uri);
+
+		MultipartEntity multipartEntity = new MultipartEntity();
+		if (params != null) {
+			for (Map.Entry<String, String> entry : params.entrySet()) {
+				multipartEntity.addPart(entry.getKey(), new StringBody(entry
+						.getValue(), UTF_8));
+			}
+		}
+		if (files != null) {
+			for (Map.Entry<String, File> entry : files.entrySet()) {
+				multipartEntity.addPart(entry.getKey(), new FileBody(entry
+						.getValue()));
+			}
+		}
+		method.setEntity(multipartEntity);
+
+		return execute(method);
+	}
+
+	public void close() {
+		if (idleConnectionMonitor != null) {
+			idleConnectionMonitor.shutdown();
+		}
+		httpClient.getConnectionManager().shutdown();
+	}
+
+	/**
+	 * Executes the request and wraps the response. The connection stays
+	 * leased until the body stream is closed or fully read.
+	 * 
+	 * @param method
+	 *            the request to execute.
+	 * @return the wrapped response.
+	 * @throws IOException
+	 */
+	private TransportResponse execute(HttpUriRequest method)
+			throws IOException {
+		HttpResponse httpResponse = httpClient.execute(method);
+
+		Map<String, String> headers = new HashMap<String, String>();
+		Header[] allHeaders = httpResponse.getAllHeaders();
+		for (int i = 0; i < allHeaders.length; i++) {
+			headers.put(allHeaders[i].getName(), allHeaders[i].getValue());
+		}
+
+		HttpEntity entity = httpResponse.getEntity();
+		InputStream body = entity != null ? entity.getContent() : null;
+
+		StatusLine statusLine = httpResponse.getStatusLine();
+		return new TransportResponse(statusLine.getStatusCode(), statusLine
+				.getReasonPhrase(), headers, body);
+	}
+
+	/**
+	 * Thread that periodically closes expired and idle connections in the
+	 * pool so that sockets closed by the server are not handed out to new
+	 * requests.
+	 */
+	private static class IdleConnectionMonitor extends Thread {
+
+		/**
+		 * The pool to evict connections from.
+		 */
+		private final ClientConnectionManager connectionManager;
+
+		/**
+		 * The number of milliseconds a connection may sit idle.
+		 */
+		private final long idleConnectionTimeout;
+
+		/**
+		 * Set to <code>true</code> to stop the thread.
+		 */
+		private volatile boolean shutdown;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param connectionManager
+		 *            the pool to evict connections from.
+		 * @param idleConnectionTimeout
+		 *            the idle timeout in milliseconds.
+		 */
+		public IdleConnectionMonitor(ClientConnectionManager connectionManager,
+				long idleConnectionTimeout) {
+			super("episodic-idle-connection-monitor");
+			setDaemon(true);
+			this.connectionManager = connectionManager;
+			this.idleConnectionTimeout = idleConnectionTimeout;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!shutdown) {
+					synchronized (this) {
+						wait(Math.max(idleConnectionTimeout / 2, 1000L));
+					}
+					if (shutdown) {
+						break;
+					}
+					connectionManager.closeExpiredConnections();
+					connectionManager.closeIdleConnections(
+							idleConnectionTimeout, TimeUnit.MILLISECONDS);
+				}
+			} catch (InterruptedException e) {
+				// Exit quietly
+			}
+		}
+
+		/**
+		 * Stop the thread.
+		 */
+		public void shutdown() {
+			shutdown = true;
+			synchronized (this) {
+				notifyAll();
+			}
+		}
+	}
+}
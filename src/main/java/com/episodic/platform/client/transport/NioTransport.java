@@ -0,0 +1,730 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.StatusLine;
+import org.apache.http.entity.mime.MultipartEntity;
+import org.apache.http.entity.mime.content.FileBody;
+import org.apache.http.entity.mime.content.StringBody;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.nio.DefaultClientIOEventDispatch;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.nio.NHttpConnection;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.protocol.BufferingHttpClientHandler;
+import org.apache.http.nio.protocol.EventListener;
+import org.apache.http.nio.protocol.HttpRequestExecutionHandler;
+import org.apache.http.nio.reactor.ConnectingIOReactor;
+import org.apache.http.nio.reactor.IOEventDispatch;
+import org.apache.http.nio.reactor.SessionRequest;
+import org.apache.http.nio.reactor.SessionRequestCallback;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.BasicHttpProcessor;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.RequestConnControl;
+import org.apache.http.protocol.RequestContent;
+import org.apache.http.protocol.RequestTargetHost;
+import org.apache.http.util.EntityUtils;
+
+import com.episodic.platform.client.util.DaemonThreadFactory;
+
+/**
+ * A non-blocking {@link Transport} built on Apache HttpCore NIO. A small
+ * number of I/O threads drive every socket from a selector, so requests in
+ * flight do not each hold a thread while they wait on the network.
+ * 
+ * <p>
+ * {@link #getAsync(URI, Map)} and {@link #postAsync(URI, Map, Map)} queue a
+ * request and return straight away with a {@link Future}, which lets a single
+ * caller keep many requests in flight. The blocking {@link Transport} methods
+ * queue the request the same way and wait for it. Requests to a host share
+ * up to <code>maxConnectionsPerHost</code> keep-alive connections; a
+ * connection takes the next queued request for its host as soon as it is
+ * free and is closed once the queue is empty.
+ * 
+ * <p>
+ * Response bodies are read into memory before the future completes, and so
+ * are request bodies, including file parts. Large uploads are better sent
+ * with {@link HttpClientTransport}. Only <code>http</code> URIs are
+ * supported.
+ * 
+ * @author Randy Simon
+ */
+public class NioTransport implements ConditionalTransport {
+
+	/**
+	 * Logger for this class
+	 */
+	private static Log LOG = LogFactory.getLog(NioTransport.class);
+
+	/**
+	 * The default maximum number of connections to a single host.
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+	/**
+	 * The default number of I/O threads.
+	 */
+	public static final int DEFAULT_IO_THREADS = 2;
+
+	/**
+	 * The default number of milliseconds to wait to connect or for data.
+	 */
+	public static final int DEFAULT_TIMEOUT = 30000;
+
+	/**
+	 * The charset used for string parts of multipart requests.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Context attribute holding the queue of the host a connection serves.
+	 */
+	private static final String HOST_QUEUE = "episodic.host-queue";
+
+	/**
+	 * Context attribute holding the exchange a connection is serving.
+	 */
+	private static final String EXCHANGE = "episodic.exchange";
+
+	/**
+	 * Context attribute holding the error that closed a connection.
+	 */
+	private static final String ERROR = "episodic.error";
+
+	/**
+	 * The reactor that connects and drives the sockets.
+	 */
+	private final ConnectingIOReactor ioReactor;
+
+	/**
+	 * The maximum number of connections to a single host.
+	 */
+	private final int maxConnectionsPerHost;
+
+	/**
+	 * The number of milliseconds to wait to connect.
+	 */
+	private final int connectTimeout;
+
+	/**
+	 * The queued requests and open connections of each host.
+	 */
+	private final ConcurrentMap<HttpHost, HostQueue> hostQueues = new ConcurrentHashMap<HttpHost, HostQueue>();
+
+	/**
+	 * Set once the transport has been closed.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Constructor that uses the default settings.
+	 * 
+	 * @throws IOException
+	 *             if the reactor could not be started.
+	 */
+	public NioTransport() throws IOException {
+		this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_IO_THREADS,
+				DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param maxConnectionsPerHost
+	 *            the maximum number of connections to a single host.
+	 * @param ioThreads
+	 *            the number of threads that read and write the sockets.
+	 * @param timeout
+	 *            the number of milliseconds to wait to connect or for data
+	 *            on an open connection.
+	 * @throws IOException
+	 *             if the reactor could not be started.
+	 */
+	public NioTransport(int maxConnectionsPerHost, int ioThreads, int timeout)
+			throws IOException {
+		if (maxConnectionsPerHost < 1) {
+			throw new IllegalArgumentException(
+					"maxConnectionsPerHost must be at least 1");
+		}
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+		this.connectTimeout = timeout;
+
+		HttpParams httpParams = new BasicHttpParams();
+		HttpProtocolParams.setVersion(httpParams, HttpVersion.HTTP_1_1);
+		HttpProtocolParams.setContentCharset(httpParams, "UTF-8");
+		HttpConnectionParams.setSoTimeout(httpParams, timeout);
+		HttpConnectionParams.setConnectionTimeout(httpParams, timeout);
+		HttpConnectionParams.setTcpNoDelay(httpParams, true);
+		HttpConnectionParams.setSocketBufferSize(httpParams, 8 * 1024);
+
+		BasicHttpProcessor httpProcessor = new BasicHttpProcessor();
+		httpProcessor.addInterceptor(new RequestContent());
+		httpProcessor.addInterceptor(new RequestTargetHost());
+		httpProcessor.addInterceptor(new RequestConnControl());
+
+		BufferingHttpClientHandler handler = new BufferingHttpClientHandler(
+				httpProcessor, new ExecutionHandler(),
+				new DefaultConnectionReuseStrategy(), httpParams);
+		handler.setEventListener(new ErrorListener());
+
+		ioReactor = new DefaultConnectingIOReactor(ioThreads,
+				new DaemonThreadFactory("episodic-nio-worker"), httpParams);
+		final IOEventDispatch ioEventDispatch = new DefaultClientIOEventDispatch(
+				handler, httpParams);
+		new DaemonThreadFactory("episodic-nio-dispatcher").newThread(
+				new Runnable() {
+					public void run() {
+						try {
+							ioReactor.execute(ioEventDispatch);
+						} catch (IOException e) {
+							LOG.error("NIO reactor stopped", e);
+						} finally {
+							shutdown();
+						}
+					}
+				}).start();
+	}
+
+	public TransportResponse get(URI uri) throws IOException {
+		return waitFor(getAsync(uri, null));
+	}
+
+	public TransportResponse get(URI uri, Map<String, String> headers)
+			throws IOException {
+		return waitFor(getAsync(uri, headers));
+	}
+
+	public TransportResponse post(URI uri, Map<String, String> params,
+			Map<String, File> files) throws IOException {
+		return waitFor(postAsync(uri, params, files));
+	}
+
+	/**
+	 * Queues a GET request without waiting for it.
+	 * 
+	 * @param uri
+	 *            the full request URI including the query string.
+	 * @param headers
+	 *            extra headers to send. This may be <code>null</code>.
+	 * @return the pending response. Its body is already in memory once the
+	 *         future completes.
+	 * @throws IOException
+	 *             if the URI is not supported or the transport is closed.
+	 */
+	public Future<TransportResponse> getAsync(URI uri,
+			Map<String, String> headers) throws IOException {
+		HttpRequest request = new BasicHttpRequest("GET", requestTarget(uri),
+				HttpVersion.HTTP_1_1);
+		if (headers != null) {
+			for (Map.Entry<String, String> entry : headers.entrySet()) {
+				request.addHeader(entry.getKey(), entry.getValue());
+			}
+		}
+		return submit(uri, request);
+	}
+
+	/**
+	 * Queues a multipart POST request without waiting for it. The body is
+	 * encoded on the calling thread.
+	 * 
+	 * @param uri
+	 *            the request URI.
+	 * @param params
+	 *            the string parts of the request. Parts are sent in iteration
+	 *            order.
+	 * @param files
+	 *            the file parts of the request, sent after the string parts.
+	 *            This may be <code>null</code>.
+	 * @return the pending response. Its body is already in memory once the
+	 *         future completes.
+	 * @throws IOException
+	 *             if the URI is not supported, a file could not be read or
+	 *             the transport is closed.
+	 */
+	public Future<TransportResponse> postAsync(URI uri,
+			Map<String, String> params, Map<String, File> files)
+			throws IOException {
+		MultipartEntity multipartEntity = new MultipartEntity();
+		if (params != null) {
+			for (Map.Entry<String, String> entry : params.entrySet()) {
+				multipartEntity.addPart(entry.getKey(), new StringBody(entry
+						.getValue(), UTF_8));
+			}
+		}
+		if (files != null) {
+			for (Map.Entry<String, File> entry : files.entrySet()) {
+				multipartEntity.addPart(entry.getKey(), new FileBody(entry
+						.getValue()));
+			}
+		}
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		multipartEntity.writeTo(content);
+		NByteArrayEntity entity = new NByteArrayEntity(content.toByteArray());
+		entity.setContentType(multipartEntity.getContentType());
+
+		BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest(
+				"POST", requestTarget(uri), HttpVersion.HTTP_1_1);
+		request.setEntity(entity);
+		return submit(uri, request);
+	}
+
+	/**
+	 * Stops the reactor, closes every connection and fails the requests that
+	 * are still queued or in flight.
+	 */
+	public void close() {
+		try {
+			ioReactor.shutdown();
+		} catch (IOException e) {
+			LOG.warn("Failed to shut down the NIO reactor", e);
+		}
+		shutdown();
+	}
+
+	/**
+	 * Marks the transport closed and fails every queued request.
+	 */
+	private void shutdown() {
+		closed = true;
+		IOException closedException = new IOException("Transport is closed");
+		for (HostQueue hostQueue : hostQueues.values()) {
+			Exchange exchange;
+			while ((exchange = hostQueue.pending.poll()) != null) {
+				exchange.fail(closedException);
+			}
+		}
+	}
+
+	/**
+	 * Builds the request target, the path and query, of a URI.
+	 * 
+	 * @param uri
+	 *            the request URI.
+	 * @return the request target.
+	 * @throws IOException
+	 *             if the URI is not an <code>http</code> URI.
+	 */
+	private static String requestTarget(URI uri) throws IOException {
+		if (!"http".equalsIgnoreCase(uri.getScheme())) {
+			throw new IOException("Unsupported scheme: " + uri.getScheme());
+		}
+		String path = uri.getRawPath();
+		if (path == null || path.length() == 0) {
+			path = "/";
+		}
+		String query = uri.getRawQuery();
+		return query != null ? path + "?" + query : path;
+	}
+
+	/**
+	 * Queues a request for its host and opens a connection for it if the
+	 * host is below its connection limit.
+	 * 
+	 * @param uri
+	 *            the request URI.
+	 * @param request
+	 *            the request.
+	 * @return the pending response.
+	 * @throws IOException
+	 *             if the transport is closed.
+	 */
+	private Future<TransportResponse> submit(URI uri, HttpRequest request)
+			throws IOException {
+		if (closed) {
+			throw new IOException("Transport is closed");
+		}
+		int port = uri.getPort() != -1 ? uri.getPort() : 80;
+		HttpHost host = new HttpHost(uri.getHost(), port, "http");
+		HostQueue hostQueue = hostQueues.get(host);
+		if (hostQueue == null) {
+			HostQueue created = new HostQueue(host);
+			hostQueue = hostQueues.putIfAbsent(host, created);
+			if (hostQueue == null) {
+				hostQueue = created;
+			}
+		}
+
+		Exchange exchange = new Exchange(request);
+		hostQueue.pending.add(exchange);
+		if (closed) {
+			// Closed while queueing; make sure this request is not stranded
+			shutdown();
+		} else {
+			openConnectionIfNeeded(hostQueue);
+		}
+		return exchange;
+	}
+
+	/**
+	 * Opens a connection to a host if requests are queued for it and it is
+	 * below its connection limit. This is called both after a request is
+	 * queued and after a connection goes away, so a request queued while the
+	 * last connection is closing is always picked up by one or the other.
+	 * 
+	 * @param hostQueue
+	 *            the host.
+	 */
+	private void openConnectionIfNeeded(HostQueue hostQueue) {
+		while (!closed && !hostQueue.pending.isEmpty()) {
+			int connections = hostQueue.connections.get();
+			if (connections >= maxConnectionsPerHost) {
+				return;
+			}
+			if (hostQueue.connections.compareAndSet(connections,
+					connections + 1)) {
+				HttpHost host = hostQueue.host;
+				SessionRequest sessionRequest = ioReactor.connect(
+						new InetSocketAddress(host.getHostName(), host
+								.getPort()), null, hostQueue,
+						new ConnectCallback(hostQueue));
+				sessionRequest.setConnectTimeout(connectTimeout);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Called once a connection to a host has gone away or could not be
+	 * opened.
+	 * 
+	 * @param hostQueue
+	 *            the host.
+	 */
+	private void connectionReleased(HostQueue hostQueue) {
+		hostQueue.connections.decrementAndGet();
+		openConnectionIfNeeded(hostQueue);
+	}
+
+	/**
+	 * Waits for a pending response.
+	 * 
+	 * @param future
+	 *            the pending response.
+	 * @return the response.
+	 * @throws IOException
+	 *             if the request failed or the wait was interrupted.
+	 */
+	private static TransportResponse waitFor(Future<TransportResponse> future)
+			throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(false);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for response");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			IOException ioe = new IOException(cause.getMessage());
+			ioe.initCause(cause);
+			throw ioe;
+		}
+	}
+
+	/**
+	 * Reads a response into memory.
+	 * 
+	 * @param httpResponse
+	 *            the response.
+	 * @return the wrapped response.
+	 * @throws IOException
+	 */
+	private static TransportResponse toTransportResponse(
+			HttpResponse httpResponse) throws IOException {
+		Map<String, String> headers = new HashMap<String, String>();
+		Header[] allHeaders = httpResponse.getAllHeaders();
+		for (int i = 0; i < allHeaders.length; i++) {
+			headers.put(allHeaders[i].getName(), allHeaders[i].getValue());
+		}
+
+		HttpEntity entity = httpResponse.getEntity();
+		byte[] body = entity != null ? EntityUtils.toByteArray(entity) : null;
+
+		StatusLine statusLine = httpResponse.getStatusLine();
+		return new TransportResponse(statusLine.getStatusCode(), statusLine
+				.getReasonPhrase(), headers, body != null
+				? new ByteArrayInputStream(body) : null);
+	}
+
+	/**
+	 * The queued requests and the number of open or opening connections of a
+	 * host.
+	 */
+	private static class HostQueue {
+
+		/**
+		 * The host.
+		 */
+		final HttpHost host;
+
+		/**
+		 * Requests waiting for a connection.
+		 */
+		final ConcurrentLinkedQueue<Exchange> pending = new ConcurrentLinkedQueue<Exchange>();
+
+		/**
+		 * The number of open or opening connections.
+		 */
+		final AtomicInteger connections = new AtomicInteger();
+
+		/**
+		 * Constructor
+		 * 
+		 * @param host
+		 *            the host.
+		 */
+		HostQueue(HttpHost host) {
+			this.host = host;
+		}
+
+		/**
+		 * Take the next request that has not been cancelled.
+		 * 
+		 * @return the request or <code>null</code> if none are queued.
+		 */
+		Exchange next() {
+			Exchange exchange;
+			while ((exchange = pending.poll()) != null) {
+				if (!exchange.isDone()) {
+					return exchange;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * A request and the future its response is delivered to.
+	 */
+	private static class Exchange extends FutureTask<TransportResponse> {
+
+		/**
+		 * Never called; the result is set by the I/O threads.
+		 */
+		private static final Callable<TransportResponse> NOTHING = new Callable<TransportResponse>() {
+			public TransportResponse call() {
+				throw new UnsupportedOperationException();
+			}
+		};
+
+		/**
+		 * The request.
+		 */
+		final HttpRequest request;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param request
+		 *            the request.
+		 */
+		Exchange(HttpRequest request) {
+			super(NOTHING);
+			this.request = request;
+		}
+
+		/**
+		 * Complete the future with a response.
+		 * 
+		 * @param response
+		 *            the response.
+		 */
+		void complete(TransportResponse response) {
+			set(response);
+		}
+
+		/**
+		 * Complete the future with an error.
+		 * 
+		 * @param error
+		 *            the error.
+		 */
+		void fail(IOException error) {
+			setException(error);
+		}
+	}
+
+	/**
+	 * Feeds queued requests to connections and delivers their responses.
+	 * Every method is called on an I/O thread.
+	 */
+	private class ExecutionHandler implements HttpRequestExecutionHandler {
+
+		public void initalizeContext(HttpContext context, Object attachment) {
+			HostQueue hostQueue = (HostQueue) attachment;
+			context.setAttribute(HOST_QUEUE, hostQueue);
+			context.setAttribute(ExecutionContext.HTTP_TARGET_HOST,
+					hostQueue.host);
+		}
+
+		public HttpRequest submitRequest(HttpContext context) {
+			HostQueue hostQueue = (HostQueue) context.getAttribute(HOST_QUEUE);
+			Exchange exchange = closed ? null : hostQueue.next();
+			if (exchange == null) {
+				// Nothing left for this host; the close releases the slot
+				try {
+					((NHttpConnection) context
+							.getAttribute(ExecutionContext.HTTP_CONNECTION))
+							.close();
+				} catch (IOException e) {
+					LOG.debug("Failed to close idle connection", e);
+				}
+				return null;
+			}
+			context.setAttribute(EXCHANGE, exchange);
+			return exchange.request;
+		}
+
+		public void handleResponse(HttpResponse response, HttpContext context) {
+			Exchange exchange = (Exchange) context.removeAttribute(EXCHANGE);
+			if (exchange == null) {
+				return;
+			}
+			try {
+				exchange.complete(toTransportResponse(response));
+			} catch (IOException e) {
+				exchange.fail(e);
+			}
+		}
+
+		public void finalizeContext(HttpContext context) {
+			Exchange exchange = (Exchange) context.removeAttribute(EXCHANGE);
+			if (exchange != null) {
+				IOException error = (IOException) context.getAttribute(ERROR);
+				exchange.fail(error != null ? error : new IOException(
+						"Connection closed before the response was received"));
+			}
+			HostQueue hostQueue = (HostQueue) context.removeAttribute(HOST_QUEUE);
+			if (hostQueue != null) {
+				connectionReleased(hostQueue);
+			}
+		}
+	}
+
+	/**
+	 * Records why a connection was closed so the request it was serving can
+	 * be failed with the cause.
+	 */
+	private static class ErrorListener implements EventListener {
+
+		public void fatalIOException(IOException ex, NHttpConnection conn) {
+			conn.getContext().setAttribute(ERROR, ex);
+		}
+
+		public void fatalProtocolException(HttpException ex,
+				NHttpConnection conn) {
+			IOException ioe = new IOException(ex.getMessage());
+			ioe.initCause(ex);
+			conn.getContext().setAttribute(ERROR, ioe);
+		}
+
+		public void connectionTimeout(NHttpConnection conn) {
+			conn.getContext().setAttribute(ERROR,
+					new SocketTimeoutException("Read timed out"));
+		}
+
+		public void connectionOpen(NHttpConnection conn) {
+		}
+
+		public void connectionClosed(NHttpConnection conn) {
+		}
+	}
+
+	/**
+	 * Fails a queued request when a connection for its host cannot be
+	 * opened.
+	 */
+	private class ConnectCallback implements SessionRequestCallback {
+
+		/**
+		 * The host being connected to.
+		 */
+		private final HostQueue hostQueue;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param hostQueue
+		 *            the host being connected to.
+		 */
+		ConnectCallback(HostQueue hostQueue) {
+			this.hostQueue = hostQueue;
+		}
+
+		public void completed(SessionRequest request) {
+		}
+
+		public void failed(SessionRequest request) {
+			IOException error = request.getException();
+			connectFailed(error != null ? error : new IOException(
+					"Connect failed"));
+		}
+
+		public void timeout(SessionRequest request) {
+			connectFailed(new SocketTimeoutException("Connect timed out"));
+		}
+
+		public void cancelled(SessionRequest request) {
+			connectFailed(new IOException("Connect cancelled"));
+		}
+
+		/**
+		 * Fail the next queued request and try again for the rest.
+		 * 
+		 * @param error
+		 *            why the connection could not be opened.
+		 */
+		private void connectFailed(IOException error) {
+			Exchange exchange = hostQueue.next();
+			if (exchange != null) {
+				exchange.fail(error);
+			}
+			connectionReleased(hostQueue);
+		}
+	}
+}
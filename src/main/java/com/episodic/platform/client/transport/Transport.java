@@ -0,0 +1,61 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * The HTTP layer used by {@link com.episodic.platform.client.Connection} to
+ * send requests. The connection builds and signs the request; a transport is
+ * only responsible for moving bytes. Implementations must be safe to use from
+ * multiple threads since a single connection is normally shared by all
+ * services.
+ * 
+ * @author Randy Simon
+ */
+public interface Transport {
+
+	/**
+	 * Makes a GET request.
+	 * 
+	 * @param uri
+	 *            the full request URI including the query string.
+	 * @return the response. The caller must close it once the body has been
+	 *         read.
+	 * @throws IOException
+	 */
+	TransportResponse get(URI uri) throws IOException;
+
+	/**
+	 * Makes a multipart POST request.
+	 * 
+	 * @param uri
+	 *            the request URI.
+	 * @param params
+	 *            the string parts of the request. Parts are sent in iteration
+	 *            order.
+	 * @param files
+	 *            the file parts of the request, sent after the string parts.
+	 *            This may be <code>null</code>.
+	 * @return the response. The caller must close it once the body has been
+	 *         read.
+	 * @throws IOException
+	 */
+	TransportResponse post(URI uri, Map<String, String> params,
+			Map<String, File> files) throws IOException;
+
+	/**
+	 * Releases any resources, such as pooled sockets, held by the transport.
+	 */
+	void close();
+}
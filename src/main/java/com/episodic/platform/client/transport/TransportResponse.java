@@ -0,0 +1,197 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The status, headers and body returned by a {@link Transport}. The body is
+ * an open stream that must be released by calling {@link #close()}.
+ * 
+ * @author Randy Simon
+ */
+public class TransportResponse {
+
+	/**
+	 * The charset used when the response does not specify one.
+	 */
+	public static final String DEFAULT_CHARSET = "ISO-8859-1";
+
+	/**
+	 * The HTTP status code.
+	 */
+	private final int statusCode;
+
+	/**
+	 * The HTTP reason phrase.
+	 */
+	private final String reasonPhrase;
+
+	/**
+	 * The response headers keyed case insensitively by name.
+	 */
+	private final Map<String, String> headers = new TreeMap<String, String>(
+			String.CASE_INSENSITIVE_ORDER);
+
+	/**
+	 * The response body.
+	 */
+	private final InputStream body;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param statusCode
+	 *            the HTTP status code.
+	 * @param reasonPhrase
+	 *            the HTTP reason phrase.
+	 * @param headers
+	 *            the response headers. This may be <code>null</code>.
+	 * @param body
+	 *            the response body. This may be <code>null</code> if the
+	 *            response has no body.
+	 */
+	public TransportResponse(int statusCode, String reasonPhrase,
+			Map<String, String> headers, InputStream body) {
+		this.statusCode = statusCode;
+		this.reasonPhrase = reasonPhrase;
+		if (headers != null) {
+			this.headers.putAll(headers);
+		}
+		this.body = body != null ? body : new ByteArrayInputStream(new byte[0]);
+	}
+
+	/**
+	 * Get the HTTP status code.
+	 * 
+	 * @return the status code
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Get the HTTP reason phrase.
+	 * 
+	 * @return the reason phrase
+	 */
+	public String getReasonPhrase() {
+		return reasonPhrase;
+	}
+
+	/**
+	 * Get a response header.
+	 * 
+	 * @param name
+	 *            the header name. The lookup is case insensitive.
+	 * @return the header value or <code>null</code>
+	 */
+	public String getHeader(String name) {
+		return headers.get(name);
+	}
+
+	/**
+	 * Get the response body. The stream is not buffered.
+	 * 
+	 * @return the body stream
+	 */
+	public InputStream getBody() {
+		return body;
+	}
+
+	/**
+	 * Get the charset used to decode the body as text.
+	 * 
+	 * @return the declared charset or {@link #DEFAULT_CHARSET} if none was
+	 *         declared.
+	 */
+	public String getCharset() {
+		String charset = getDeclaredCharset();
+		return charset != null ? charset : DEFAULT_CHARSET;
+	}
+
+	/**
+	 * Get the charset declared in the Content-Type header.
+	 * 
+	 * @return the charset or <code>null</code> if none was declared.
+	 */
+	public String getDeclaredCharset() {
+		String contentType = getHeader("Content-Type");
+		if (contentType != null) {
+			String[] parts = contentType.split(";");
+			for (int i = 1; i < parts.length; i++) {
+				String part = parts[i].trim();
+				if (part.regionMatches(true, 0, "charset=", 0, 8)) {
+					String charset = part.substring(8).trim();
+					if (charset.startsWith("\"") && charset.endsWith("\"")
+							&& charset.length() > 1) {
+						charset = charset.substring(1, charset.length() - 1);
+					}
+					if (charset.length() > 0) {
+						return charset;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Read the entire body as bytes.
+	 * 
+	 * @return the body
+	 * @throws IOException
+	 */
+	public byte[] getBodyAsBytes() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = body.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Read the entire body as a string using the response's charset.
+	 * 
+	 * @return the body
+	 * @throws IOException
+	 */
+	public String getBodyAsString() throws IOException {
+		Reader reader = new InputStreamReader(body, getCharset());
+		StringBuilder builder = new StringBuilder();
+		char[] buffer = new char[4096];
+		int read;
+		while ((read = reader.read(buffer)) != -1) {
+			builder.append(buffer, 0, read);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Release the body. For pooled transports this returns the connection to
+	 * the pool.
+	 */
+	public void close() {
+		try {
+			body.close();
+		} catch (IOException e) {
+			// Nothing more can be done with the stream
+		}
+	}
+}
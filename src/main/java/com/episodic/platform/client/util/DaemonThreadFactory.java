@@ -0,0 +1,49 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named daemon threads so that an unclosed connection does not
+ * prevent the JVM from exiting.
+ * 
+ * @author Randy Simon
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+	/**
+	 * Used to number the threads.
+	 */
+	private final AtomicInteger count = new AtomicInteger();
+
+	/**
+	 * The thread name prefix.
+	 */
+	private final String prefix;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param prefix
+	 *            the thread name prefix.
+	 */
+	public DaemonThreadFactory(String prefix) {
+		this.prefix = prefix;
+	}
+
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, prefix + "-"
+				+ count.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+}
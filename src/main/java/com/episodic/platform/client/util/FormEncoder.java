@@ -0,0 +1,151 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.util;
+
+import java.util.Map;
+
+/**
+ * Encodes query strings in a single pass. The output is the same as
+ * {@link java.net.URLEncoder} with UTF-8, which is what
+ * {@link org.apache.http.client.utils.URLEncodedUtils} uses, but the bytes are
+ * written straight into the caller's buffer instead of creating intermediate
+ * strings and byte arrays for every value.
+ * 
+ * @author Randy Simon
+ */
+public class FormEncoder {
+
+	/**
+	 * Used to percent encode bytes.
+	 */
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF"
+			.toCharArray();
+
+	/**
+	 * <code>true</code> for the ASCII characters that are not encoded.
+	 */
+	private static final boolean[] SAFE = new boolean[128];
+
+	static {
+		for (char c = 'a'; c <= 'z'; c++) {
+			SAFE[c] = true;
+		}
+		for (char c = 'A'; c <= 'Z'; c++) {
+			SAFE[c] = true;
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			SAFE[c] = true;
+		}
+		SAFE['.'] = true;
+		SAFE['-'] = true;
+		SAFE['*'] = true;
+		SAFE['_'] = true;
+	}
+
+	/**
+	 * Append the params to the buffer in the form
+	 * <code>name=value&amp;name=value</code>.
+	 * 
+	 * @param buffer
+	 *            the buffer to append to.
+	 * @param params
+	 *            the params to encode.
+	 * @return the buffer.
+	 */
+	public static StringBuilder appendParams(StringBuilder buffer,
+			Map<String, String> params) {
+		boolean first = true;
+		for (Map.Entry<String, String> entry : params.entrySet()) {
+			if (!first) {
+				buffer.append('&');
+			}
+			appendParam(buffer, entry.getKey(), entry.getValue());
+			first = false;
+		}
+		return buffer;
+	}
+
+	/**
+	 * Append a param to the buffer in the form <code>name=value</code>.
+	 * 
+	 * @param buffer
+	 *            the buffer to append to.
+	 * @param name
+	 *            the param name.
+	 * @param value
+	 *            the param value. A <code>null</code> value is encoded as an
+	 *            empty string.
+	 * @return the buffer.
+	 */
+	public static StringBuilder appendParam(StringBuilder buffer, String name,
+			String value) {
+		append(buffer, name);
+		buffer.append('=');
+		if (value != null) {
+			append(buffer, value);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Append the encoded value to the buffer.
+	 * 
+	 * @param buffer
+	 *            the buffer to append to.
+	 * @param value
+	 *            the value to encode.
+	 * @return the buffer.
+	 */
+	public static StringBuilder append(StringBuilder buffer, String value) {
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+
+			if (c < 0x80) {
+				if (SAFE[c]) {
+					buffer.append(c);
+				} else if (c == ' ') {
+					buffer.append('+');
+				} else {
+					appendByte(buffer, c);
+				}
+			} else if (c < 0x800) {
+				appendByte(buffer, 0xc0 | (c >> 6));
+				appendByte(buffer, 0x80 | (c & 0x3f));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				appendByte(buffer, 0xf0 | (codePoint >> 18));
+				appendByte(buffer, 0x80 | ((codePoint >> 12) & 0x3f));
+				appendByte(buffer, 0x80 | ((codePoint >> 6) & 0x3f));
+				appendByte(buffer, 0x80 | (codePoint & 0x3f));
+			} else if (Character.isHighSurrogate(c)
+					|| Character.isLowSurrogate(c)) {
+				// Unpaired surrogates are replaced the same way the UTF-8
+				// encoder replaces them.
+				appendByte(buffer, '?');
+			} else {
+				appendByte(buffer, 0xe0 | (c >> 12));
+				appendByte(buffer, 0x80 | ((c >> 6) & 0x3f));
+				appendByte(buffer, 0x80 | (c & 0x3f));
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * Append a percent encoded byte.
+	 */
+	private static void appendByte(StringBuilder buffer, int b) {
+		buffer.append('%');
+		buffer.append(HEX_DIGITS[(b >> 4) & 0x0f]);
+		buffer.append(HEX_DIGITS[b & 0x0f]);
+	}
+}
@@ -0,0 +1,96 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.util;
+
+import java.util.List;
+
+/**
+ * A value built from a list, such as an index of its items, along with the
+ * list it was built from and a copy of its elements. The value can be reused
+ * until the list is replaced or any of its elements is added, removed or
+ * replaced. Checking compares element references only, so it is cheap, but
+ * changes made to the elements themselves are not detected.
+ * 
+ * <p>
+ * A snapshot is immutable, so it can be kept in a <code>volatile</code> field
+ * and read without locking. Two threads may both build a new snapshot at the
+ * same time, in which case either one is kept.
+ * 
+ * @author Randy Simon
+ */
+public class ListSnapshot<T> {
+
+	/**
+	 * The list the value was built from.
+	 */
+	private final List<?> list;
+
+	/**
+	 * The elements of the list when the value was built.
+	 */
+	private final Object[] elements;
+
+	/**
+	 * The value.
+	 */
+	private final T value;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param list
+	 *            the list the value was built from, which may be
+	 *            <code>null</code>.
+	 * @param value
+	 *            the value.
+	 */
+	public ListSnapshot(List<?> list, T value) {
+		this.list = list;
+		this.elements = (list != null) ? list.toArray() : null;
+		this.value = value;
+	}
+
+	/**
+	 * Check if a snapshot was built from a list as it is now.
+	 * 
+	 * @param snapshot
+	 *            the snapshot or <code>null</code> if none has been built.
+	 * @param list
+	 *            the list, which may be <code>null</code>.
+	 * @return <code>true</code> if the snapshot can be used.
+	 */
+	public static boolean isCurrent(ListSnapshot<?> snapshot, List<?> list) {
+		if (snapshot == null || snapshot.list != list) {
+			return false;
+		}
+		if (list == null) {
+			return true;
+		}
+
+		Object[] elements = snapshot.elements;
+		if (elements.length != list.size()) {
+			return false;
+		}
+		int i = 0;
+		for (Object element : list) {
+			if (i == elements.length || elements[i++] != element) {
+				return false;
+			}
+		}
+		return i == elements.length;
+	}
+
+	/**
+	 * @return the value.
+	 */
+	public T getValue() {
+		return value;
+	}
+}
@@ -0,0 +1,136 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded pool used to share one instance of strings that are repeated
+ * across many parsed items, such as tags, custom field names, player names
+ * and show ids. Keeping a large catalog in memory holds far fewer copies of
+ * the same characters when the parser is given a pool.
+ * 
+ * <p>
+ * The pool is a fixed size table indexed by the string's hash. A string that
+ * lands on a slot holding a different string replaces it, so the pool never
+ * grows past its capacity and never needs a lock, at the cost of missing a
+ * few duplicates when two common values collide. Strings longer than the
+ * maximum length are not pooled since they are rarely repeated.
+ * 
+ * <p>
+ * A pool may be shared between threads and parsers.
+ * 
+ * @see com.episodic.platform.client.parser.StaxResponseParser#setStringPool(StringPool)
+ * @see com.episodic.platform.client.parser.JAXBResponseParser#setStringPool(StringPool)
+ * @author Randy Simon
+ */
+public class StringPool {
+
+	/**
+	 * The default number of slots.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * The default maximum length of a pooled string.
+	 */
+	public static final int DEFAULT_MAX_LENGTH = 128;
+
+	/**
+	 * The pooled strings.
+	 */
+	private final AtomicReferenceArray<String> slots;
+
+	/**
+	 * Used to map a hash to a slot.
+	 */
+	private final int mask;
+
+	/**
+	 * The maximum length of a pooled string.
+	 */
+	private final int maxLength;
+
+	/**
+	 * Constructor. Uses the default capacity and maximum length.
+	 */
+	public StringPool() {
+		this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param capacity
+	 *            the number of slots, which is rounded up to a power of two.
+	 * @param maxLength
+	 *            the maximum length of a pooled string.
+	 */
+	public StringPool(int capacity, int maxLength) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Invalid capacity " + capacity);
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.slots = new AtomicReferenceArray<String>(size);
+		this.mask = size - 1;
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Get the pooled instance of a string, adding it to the pool if it is not
+	 * there.
+	 * 
+	 * @param value
+	 *            the string or <code>null</code>.
+	 * @return the pooled string, or the given one if it is not pooled.
+	 */
+	public String intern(String value) {
+		if (value == null || value.length() > maxLength) {
+			return value;
+		}
+
+		int hash = value.hashCode();
+		int index = (hash ^ (hash >>> 16)) & mask;
+		String pooled = slots.get(index);
+		if (pooled != null && pooled.equals(value)) {
+			return pooled;
+		}
+		slots.set(index, value);
+		return value;
+	}
+
+	/**
+	 * Replace every string in an array with its pooled instance.
+	 * 
+	 * @param values
+	 *            the strings or <code>null</code>.
+	 * @return the same array.
+	 */
+	public String[] internAll(String[] values) {
+		if (values != null) {
+			for (int i = 0; i < values.length; i++) {
+				values[i] = intern(values[i]);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Get the number of slots.
+	 * 
+	 * @return the capacity.
+	 */
+	public int getCapacity() {
+		return slots.length();
+	}
+}
@@ -41,4 +41,25 @@ public class StringUtil {
 		return buffer.toString();
 	}
 
+	/**
+	 * Convert an array to a delimited string.
+	 * 
+	 * @param array
+	 *            The array
+	 * @param delimiter
+	 *            The delimiter to use
+	 * 
+	 * @return A string delimited by the specified delimiter.
+	 */
+	public static String join(Object[] array, String delimiter) {
+		StringBuffer buffer = new StringBuffer();
+		for (int i = 0; i < array.length; i++) {
+			if (i > 0) {
+				buffer.append(delimiter);
+			}
+			buffer.append(array[i]);
+		}
+		return buffer.toString();
+	}
+
 }
@@ -0,0 +1,84 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests which nested bulk tasks run on the caller's thread.
+ * 
+ * @author Randy Simon
+ */
+public class BulkExecutorTest {
+
+	private BulkExecutor first;
+
+	private BulkExecutor second;
+
+	@Before
+	public void setUp() {
+		first = new BulkExecutor(Executors.newCachedThreadPool(), 1, true);
+		second = new BulkExecutor(Executors.newCachedThreadPool(), 1, true);
+	}
+
+	@After
+	public void tearDown() {
+		first.shutdown();
+		second.shutdown();
+	}
+
+	@Test
+	public void testNestedTaskOfSameExecutorRunsInline() throws Exception {
+		Thread[] threads = first.submit(new Callable<Thread[]>() {
+			public Thread[] call() throws Exception {
+				Thread inner = first.submit(new Callable<Thread>() {
+					public Thread call() {
+						return Thread.currentThread();
+					}
+				}).get();
+				return new Thread[] { Thread.currentThread(), inner };
+			}
+		}).get();
+
+		assertSame(threads[0], threads[1]);
+	}
+
+	@Test
+	public void testNestedTaskOfOtherExecutorUsesItsSlots() throws Exception {
+		Thread[] threads = first.submit(new Callable<Thread[]>() {
+			public Thread[] call() throws Exception {
+				Thread inner = second.submit(new Callable<Thread>() {
+					public Thread call() {
+						return Thread.currentThread();
+					}
+				}).get();
+
+				// Back on this executor's task after the other one ran
+				Thread nested = first.submit(new Callable<Thread>() {
+					public Thread call() {
+						return Thread.currentThread();
+					}
+				}).get();
+				return new Thread[] { Thread.currentThread(), inner, nested };
+			}
+		}).get();
+
+		assertNotSame(threads[0], threads[1]);
+		assertSame(threads[0], threads[2]);
+	}
+}
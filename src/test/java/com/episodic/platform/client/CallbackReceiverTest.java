@@ -0,0 +1,170 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.episodic.platform.client.callback.CallbackListener;
+import com.episodic.platform.client.callback.CallbackReceiver;
+import com.episodic.platform.client.response.query.EpisodeItem;
+import com.episodic.platform.client.response.query.Item;
+import com.episodic.platform.client.response.query.PlaylistItem;
+
+/**
+ * Tests receiving modification callbacks.
+ * 
+ * @author Randy Simon
+ */
+public class CallbackReceiverTest extends TestCase {
+
+	private CallbackReceiver receiver;
+
+	@After
+	public void tearDown() throws Exception {
+		if (receiver != null) {
+			receiver.stop(5, TimeUnit.SECONDS);
+		}
+	}
+
+	private CallbackReceiver start(CallbackListener listener, int capacity)
+			throws IOException {
+		receiver = new CallbackReceiver(new InetSocketAddress("127.0.0.1", 0),
+				"/callbacks");
+		receiver.setQueueCapacity(capacity);
+		receiver.setWorkerCount(1);
+		receiver.addListener(listener);
+		receiver.start();
+		return receiver;
+	}
+
+	private int post(String method, String xml) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(
+				"http://127.0.0.1:" + receiver.getPort() + "/callbacks")
+				.openConnection();
+		connection.setRequestMethod(method);
+		if (xml != null) {
+			connection.setDoOutput(true);
+			OutputStream out = connection.getOutputStream();
+			out.write(xml.getBytes("UTF-8"));
+			out.close();
+		}
+		int status = connection.getResponseCode();
+		connection.disconnect();
+		return status;
+	}
+
+	@Test
+	public void testDispatch() throws Exception {
+		final BlockingQueue<Item> received = new LinkedBlockingQueue<Item>();
+		start(new CallbackListener() {
+			public void itemsModified(List<Item> items) {
+				received.addAll(items);
+			}
+		}, 100);
+
+		assertEquals(200, post("POST",
+				"<episode><id>e1</id><name>First</name></episode>"));
+		assertEquals(200, post("POST", "<playlists page=\"1\">"
+				+ "<playlist><id>p1</id></playlist>"
+				+ "<playlist><id>p2</id></playlist></playlists>"));
+		assertEquals(400, post("POST", "<show><id>s1</id></show>"));
+		assertEquals(400, post("POST", "not xml"));
+		assertEquals(405, post("GET", null));
+
+		Item item = received.poll(5, TimeUnit.SECONDS);
+		assertTrue(item instanceof EpisodeItem);
+		assertEquals("First", item.getName());
+		item = received.poll(5, TimeUnit.SECONDS);
+		assertTrue(item instanceof PlaylistItem);
+		assertEquals("p1", item.getId());
+		assertEquals("p2", received.poll(5, TimeUnit.SECONDS).getId());
+		assertEquals(3, receiver.getReceivedCount());
+	}
+
+	@Test
+	public void testQueueFull() throws Exception {
+		final CountDownLatch dispatching = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final BlockingQueue<Item> received = new LinkedBlockingQueue<Item>();
+		start(new CallbackListener() {
+			public void itemsModified(List<Item> items) {
+				dispatching.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				received.addAll(items);
+			}
+		}, 1);
+
+		// The worker holds the first item and the second fills the queue
+		assertEquals(200, post("POST", "<episode><id>e1</id></episode>"));
+		assertTrue(dispatching.await(5, TimeUnit.SECONDS));
+		assertEquals(200, post("POST", "<episode><id>e2</id></episode>"));
+		assertEquals(503, post("POST", "<episode><id>e3</id></episode>"));
+		assertEquals(1, receiver.getRejectedCount());
+
+		release.countDown();
+		assertTrue(receiver.stop(5, TimeUnit.SECONDS));
+		assertEquals("e1", received.poll().getId());
+		assertEquals("e2", received.poll().getId());
+		assertNull(received.poll());
+	}
+
+	@Test
+	public void testQueueFullForBatch() throws Exception {
+		final CountDownLatch dispatching = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final BlockingQueue<Item> received = new LinkedBlockingQueue<Item>();
+		start(new CallbackListener() {
+			public void itemsModified(List<Item> items) {
+				dispatching.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				received.addAll(items);
+			}
+		}, 2);
+
+		// Only one more item fits while the worker holds the first
+		assertEquals(200, post("POST", "<episode><id>e1</id></episode>"));
+		assertTrue(dispatching.await(5, TimeUnit.SECONDS));
+		assertEquals(200, post("POST", "<episode><id>e2</id></episode>"));
+		assertEquals(503, post("POST", "<episodes page=\"1\">"
+				+ "<episode><id>e3</id></episode>"
+				+ "<episode><id>e4</id></episode></episodes>"));
+		assertEquals(200, post("POST", "<episode><id>e5</id></episode>"));
+		assertEquals(3, receiver.getReceivedCount());
+
+		release.countDown();
+		assertTrue(receiver.stop(5, TimeUnit.SECONDS));
+		assertEquals("e1", received.poll().getId());
+		assertEquals("e2", received.poll().getId());
+		assertEquals("e5", received.poll().getId());
+		assertNull(received.poll());
+	}
+}
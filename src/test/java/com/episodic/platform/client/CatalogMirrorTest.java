@@ -0,0 +1,175 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.episodic.platform.client.catalog.CatalogMirror;
+import com.episodic.platform.client.response.query.EpisodeItem;
+import com.episodic.platform.client.response.query.EpisodeItem.EpisodePublishingStatus;
+import com.episodic.platform.client.transport.Transport;
+import com.episodic.platform.client.transport.TransportResponse;
+
+/**
+ * Tests loading and querying the local catalog mirror.
+ * 
+ * @author Randy Simon
+ */
+public class CatalogMirrorTest extends BaseResponseTest {
+
+	private static final Pattern SHOW_ID = Pattern
+			.compile("(^|&)show_id=([^&]*)");
+
+	private static final Map<String, String> EPISODES = new HashMap<String, String>();
+
+	private static final Map<String, String> PLAYLISTS = new HashMap<String, String>();
+
+	static {
+		EPISODES.put("s1", episode("e1", "on_the_air", "a,b",
+				"2010-01-02 10:00:00")
+				+ episode("e2", "off_the_air", "a", "2010-01-01 10:00:00"));
+		EPISODES.put("s2", episode("e3", "on_the_air", "b", ""));
+		PLAYLISTS.put("s1", "<playlist><id>p1</id></playlist>");
+		PLAYLISTS.put("s2", "<playlist><id>p2</id></playlist>");
+	}
+
+	private CatalogMirror mirror;
+
+	private static String episode(String id, String status, String tags,
+			String airDate) {
+		return "<episode><id>" + id + "</id><status>" + status
+				+ "</status><tags>" + tags + "</tags><air_date>" + airDate
+				+ "</air_date></episode>";
+	}
+
+	private static String collection(String name, String items) {
+		return "<" + name + " page=\"1\" pages=\"1\" per_page=\"50\">" + items
+				+ "</" + name + ">";
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		Connection catalogConnection = new Connection("key", "secret");
+		catalogConnection.setTransport(new Transport() {
+			public TransportResponse get(URI uri) throws IOException {
+				Matcher matcher = SHOW_ID.matcher(uri.getRawQuery());
+				String showId = matcher.find() ? matcher.group(2) : null;
+
+				String xml;
+				if (uri.getPath().endsWith("/shows")) {
+					xml = collection("shows", "<show><id>s1</id></show>"
+							+ "<show><id>s2</id></show>");
+				} else if (uri.getPath().endsWith("/episodes")) {
+					xml = collection("episodes", EPISODES.get(showId));
+				} else {
+					xml = collection("playlists", PLAYLISTS.get(showId));
+				}
+
+				return new TransportResponse(200, "OK",
+						new HashMap<String, String>(),
+						new ByteArrayInputStream(xml.getBytes("UTF-8")));
+			}
+
+			public TransportResponse post(URI uri, Map<String, String> params,
+					Map<String, File> files) throws IOException {
+				throw new UnsupportedOperationException();
+			}
+
+			public void close() {
+			}
+		});
+
+		QueryService queryService = QueryService.getInstance();
+		queryService.setConnection(catalogConnection);
+		mirror = new CatalogMirror(queryService);
+		mirror.load();
+	}
+
+	@Test
+	public void testLoad() throws Exception {
+		assertEquals(2, mirror.getShowCount());
+		assertEquals(2, mirror.getPlaylistCount());
+		assertEquals(3, mirror.getEpisodeCount());
+		assertEquals("s2", mirror.getShowIdForEpisode("e3"));
+		assertEquals("p1", mirror.getPlaylists("s1").get(0).getId());
+		assertEquals("e1", mirror.getEpisode("e1").getId());
+	}
+
+	@Test
+	public void testFindEpisodes() throws Exception {
+		assertIds(mirror.findEpisodes("s1", EpisodePublishingStatus.ON_THE_AIR,
+				null), "e1");
+		assertIds(mirror.findEpisodes("s1", null, "a"), "e2", "e1");
+		assertIds(mirror.findEpisodes(null,
+				EpisodePublishingStatus.ON_THE_AIR, null), "e1", "e3");
+		assertIds(mirror.findEpisodes(null, null, "b"), "e1", "e3");
+		assertIds(mirror.findEpisodes(null, null, "missing"));
+		assertIds(mirror.findEpisodes(null, null, null), "e2", "e1", "e3");
+
+		assertIds(mirror.findEpisodesAiring(mirror.getEpisode("e2")
+				.getAirDate(), mirror.getEpisode("e1").getAirDate()), "e2");
+		assertIds(mirror.findEpisodesAiring(mirror.getEpisode("e1")
+				.getAirDate(), mirror.getEpisode("e1").getAirDate()));
+		try {
+			mirror.findEpisodesAiring(mirror.getEpisode("e1").getAirDate(),
+					mirror.getEpisode("e2").getAirDate());
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testUpdates() throws Exception {
+		EpisodeItem episode = new EpisodeItem();
+		episode.setId("e2");
+		episode.setStatus(EpisodePublishingStatus.ON_THE_AIR);
+		episode.setTags(new String[] { "c" });
+		mirror.putEpisode("s1", episode);
+
+		assertEquals(3, mirror.getEpisodeCount());
+		assertIds(mirror.findEpisodes("s1", null, "a"), "e1");
+		assertIds(mirror.findEpisodes(null, null, "c"), "e2");
+		assertIds(mirror.findEpisodes(null,
+				EpisodePublishingStatus.OFF_THE_AIR, null));
+
+		EpisodeItem withoutId = new EpisodeItem();
+		withoutId.setStatus(EpisodePublishingStatus.ON_THE_AIR);
+		mirror.putEpisode("s2", withoutId);
+		assertIds(mirror.findEpisodes("s2", null, null), "e3", null);
+		assertIds(mirror.findEpisodes(null,
+				EpisodePublishingStatus.ON_THE_AIR, null), "e1", "e2", "e3", null);
+		mirror.removeEpisode(null);
+
+		mirror.removeShow("s1");
+		assertNull(mirror.getShow("s1"));
+		assertNull(mirror.getPlaylist("p1"));
+		assertIds(mirror.findEpisodes(null, null, null), "e3");
+	}
+
+	private static void assertIds(List<EpisodeItem> episodes, String... ids) {
+		assertEquals(ids.length, episodes.size());
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(ids[i], episodes.get(i).getId());
+		}
+	}
+}
@@ -0,0 +1,227 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.episodic.platform.client.catalog.CatalogMirror;
+import com.episodic.platform.client.catalog.CatalogSync;
+import com.episodic.platform.client.transport.Transport;
+import com.episodic.platform.client.transport.TransportResponse;
+import com.episodic.platform.client.util.DateXmlAdapter;
+
+/**
+ * Tests applying modification callbacks to the local catalog mirror.
+ * 
+ * @author Randy Simon
+ */
+public class CatalogSyncTest extends BaseResponseTest {
+
+	private static final Pattern ID = Pattern.compile("(^|&)id=([^&]*)");
+
+	private static final Pattern SHOW_ID = Pattern
+			.compile("(^|&)show_id=([^&]*)");
+
+	private final Map<String, String> episodes = new HashMap<String, String>();
+
+	private final Map<String, String> playlists = new HashMap<String, String>();
+
+	private final List<String> requests = new ArrayList<String>();
+
+	private String callbacks = "";
+
+	private CatalogMirror mirror;
+
+	private CatalogSync sync;
+
+	private static String callback(String type, String id, String showId,
+			String action, String createdAt) {
+		return "<modification_callback><object_type>" + type
+				+ "</object_type><object_id>" + id + "</object_id>"
+				+ (showId != null ? "<show_id>" + showId + "</show_id>" : "")
+				+ "<action>" + action + "</action><created_at>" + createdAt
+				+ "</created_at></modification_callback>";
+	}
+
+	private static String collection(String name, String items) {
+		return "<" + name + " page=\"1\" pages=\"1\" per_page=\"50\">" + items
+				+ "</" + name + ">";
+	}
+
+	private static String find(Pattern pattern, String query)
+			throws IOException {
+		Matcher matcher = pattern.matcher(query);
+		return matcher.find() ? URLDecoder.decode(matcher.group(2), "UTF-8")
+				: null;
+	}
+
+	/**
+	 * Return the items with the requested ids, or every item of the show
+	 * when no ids are requested.
+	 */
+	private static String select(Map<String, String> items, String ids,
+			String showId, String itemName) {
+		StringBuilder xml = new StringBuilder();
+		if (ids == null) {
+			for (Map.Entry<String, String> item : items.entrySet()) {
+				if (item.getValue().equals(showId)) {
+					xml.append("<" + itemName + "><id>" + item.getKey()
+							+ "</id></" + itemName + ">");
+				}
+			}
+			return xml.toString();
+		}
+
+		for (String id : ids.split(",")) {
+			xml.append("<" + itemName + "><id>" + id + "</id>");
+			if (!items.containsKey(id)) {
+				xml.append("<error>Not found</error>");
+			}
+			xml.append("</" + itemName + ">");
+		}
+		return xml.toString();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		episodes.put("e1", "s1");
+		episodes.put("e2", "s1");
+		episodes.put("e3", "s2");
+		playlists.put("p1", "s1");
+
+		Connection syncConnection = new Connection("key", "secret");
+		syncConnection.setTransport(new Transport() {
+			public TransportResponse get(URI uri) throws IOException {
+				String query = uri.getRawQuery();
+				String ids = find(ID, query);
+				String showId = find(SHOW_ID, query);
+
+				String xml;
+				if (uri.getPath().endsWith("/shows")) {
+					xml = collection("shows", "<show><id>s1</id></show>"
+							+ "<show><id>s2</id></show>");
+				} else if (uri.getPath().endsWith("/modification_callbacks")) {
+					requests.add(query);
+					xml = collection("modification_callbacks", callbacks);
+				} else if (uri.getPath().endsWith("/episodes")) {
+					if (ids != null) {
+						requests.add("episodes " + ids);
+					}
+					xml = collection("episodes", select(episodes, ids, showId,
+							"episode"));
+				} else {
+					if (ids != null) {
+						requests.add("playlists " + ids);
+					}
+					xml = collection("playlists", select(playlists, ids,
+							showId, "playlist"));
+				}
+
+				return new TransportResponse(200, "OK",
+						new HashMap<String, String>(),
+						new ByteArrayInputStream(xml.getBytes("UTF-8")));
+			}
+
+			public TransportResponse post(URI uri, Map<String, String> params,
+					Map<String, File> files) throws IOException {
+				throw new UnsupportedOperationException();
+			}
+
+			public void close() {
+			}
+		});
+
+		QueryService queryService = QueryService.getInstance();
+		queryService.setConnection(syncConnection);
+		mirror = new CatalogMirror(queryService);
+		mirror.load();
+		sync = new CatalogSync(syncConnection, mirror);
+	}
+
+	@Test
+	public void testSync() throws Exception {
+		episodes.remove("e2");
+		episodes.put("e4", "s2");
+		episodes.remove("e3");
+		callbacks = callback("episode", "e1", "s1", "update",
+				"2010-01-06 02:12:39")
+				+ callback("episode", "e2", "s1", "delete",
+						"2010-01-06 02:13:00")
+				+ callback("episode", "e4", "s2", "create",
+						"2010-01-06 02:14:00")
+				+ callback("episode", "e3", "s2", "update",
+						"2010-01-06 02:15:00")
+				+ callback("playlist", "p1", null, "update",
+						"2010-01-06 02:16:00")
+				+ callback("episode", "e1", "s1", "update",
+						"2010-01-06 02:17:00");
+		sync.setBatchSize(2);
+
+		assertEquals(5, sync.sync());
+		assertEquals(2, mirror.getEpisodeCount());
+		assertNotNull(mirror.getEpisode("e1"));
+		assertNull(mirror.getEpisode("e2"));
+		assertNull(mirror.getEpisode("e3"));
+		assertEquals("s2", mirror.getShowIdForEpisode("e4"));
+		assertEquals("s1", mirror.getShowIdForPlaylist("p1"));
+		assertEquals(new DateXmlAdapter().unmarshal(
+				"2010-01-06 02:17:00"), sync.getWatermark());
+
+		// The deleted episode is not fetched and each item is fetched once
+		assertFalse(requests.get(0).contains("since="));
+		assertEquals("episodes e1,e4", requests.get(1));
+		assertEquals("episodes e3", requests.get(2));
+		assertEquals("playlists p1", requests.get(3));
+		assertEquals(4, requests.size());
+
+		// Read again from one second before the watermark
+		callbacks = "";
+		assertEquals(0, sync.sync());
+		assertTrue(requests.get(4).contains("since="
+				+ (sync.getWatermark().getMillis() / 1000L - 1)));
+	}
+
+	@Test
+	public void testCallbacksSharingTheWatermarkSecond() throws Exception {
+		callbacks = callback("episode", "e1", "s1", "update",
+				"2010-01-06 02:12:39");
+		assertEquals(1, sync.sync());
+		assertEquals("episodes e1", requests.get(1));
+
+		// Another callback registered in the same second after the last read
+		callbacks = callback("episode", "e1", "s1", "update",
+				"2010-01-06 02:12:39")
+				+ callback("episode", "e2", "s1", "update",
+						"2010-01-06 02:12:39");
+		assertEquals(1, sync.sync());
+		assertEquals("episodes e2", requests.get(3));
+		assertEquals(4, requests.size());
+
+		// Nothing new in that second
+		assertEquals(0, sync.sync());
+		assertEquals(5, requests.size());
+		assertEquals(new DateXmlAdapter().unmarshal("2010-01-06 02:12:39"),
+				sync.getWatermark());
+	}
+}
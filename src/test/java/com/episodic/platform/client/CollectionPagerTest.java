@@ -0,0 +1,142 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.episodic.platform.client.response.query.EpisodeItem;
+import com.episodic.platform.client.response.query.EpisodesResponse;
+import com.episodic.platform.client.transport.Transport;
+import com.episodic.platform.client.transport.TransportResponse;
+
+/**
+ * Tests paging through a query served by a fake transport.
+ * 
+ * @author Randy Simon
+ */
+public class CollectionPagerTest extends BaseResponseTest {
+
+	private static final int PAGES = 3;
+
+	private static final Pattern PAGE = Pattern.compile("(^|&)page=(\\d+)");
+
+	private Connection pagingConnection;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		pagingConnection = new Connection("key", "secret");
+		pagingConnection.setTransport(new Transport() {
+			public TransportResponse get(URI uri) throws IOException {
+				Matcher matcher = PAGE.matcher(uri.getRawQuery());
+				int page = matcher.find() ? Integer.parseInt(matcher.group(2))
+						: 1;
+
+				StringBuilder xml = new StringBuilder();
+				xml.append("<episodes page=\"" + page + "\" pages=\"" + PAGES
+						+ "\" per_page=\"2\" total=\"" + (PAGES * 2) + "\">");
+				for (int i = 0; i < 2; i++) {
+					xml.append("<episode><id>" + page + "-" + i
+							+ "</id></episode>");
+				}
+				xml.append("</episodes>");
+
+				return new TransportResponse(200, "OK",
+						new HashMap<String, String>(),
+						new ByteArrayInputStream(xml.toString().getBytes(
+								"UTF-8")));
+			}
+
+			public TransportResponse post(URI uri, Map<String, String> params,
+					Map<String, File> files) throws IOException {
+				throw new UnsupportedOperationException();
+			}
+
+			public void close() {
+			}
+		});
+	}
+
+	@Test
+	public void testPagesInOrder() throws Exception {
+		QueryService queryService = QueryService.getInstance();
+		queryService.setConnection(pagingConnection);
+
+		CollectionPager<EpisodesResponse, EpisodeItem> pager = queryService
+				.episodesPager(new HashMap<String, Object>());
+		assertEquals(PAGES * 2, pager.getTotal());
+
+		int count = 0;
+		while (pager.hasNext()) {
+			EpisodeItem episode = pager.next();
+			assertEquals((count / 2 + 1) + "-" + (count % 2), episode.getId());
+			count++;
+		}
+		assertEquals(PAGES * 2, count);
+		assertEquals(PAGES, pager.getPage());
+
+		pagingConnection.close();
+	}
+
+	@Test
+	public void testFetchAll() throws Exception {
+		QueryService queryService = QueryService.getInstance();
+		queryService.setConnection(pagingConnection);
+
+		List<EpisodeItem> episodes = queryService
+				.fetchAllEpisodes(new HashMap<String, Object>());
+
+		assertEquals(PAGES * 2, episodes.size());
+		for (int i = 0; i < episodes.size(); i++) {
+			assertEquals((i / 2 + 1) + "-" + (i % 2), episodes.get(i).getId());
+		}
+
+		pagingConnection.close();
+	}
+
+	@Test
+	public void testFetchAllFromTasks() throws Exception {
+		// One thread each, so fan-out that waited on its own pool would hang
+		pagingConnection.setAsyncThreads(1);
+		pagingConnection.setBulkConcurrency(1);
+		final QueryService queryService = QueryService.getInstance();
+		queryService.setConnection(pagingConnection);
+
+		Callable<List<EpisodeItem>> fetchAll = new Callable<List<EpisodeItem>>() {
+			public List<EpisodeItem> call() throws Exception {
+				return queryService
+						.fetchAllEpisodes(new HashMap<String, Object>());
+			}
+		};
+
+		Future<List<EpisodeItem>> async = pagingConnection.submit(fetchAll);
+		assertEquals(PAGES * 2, async.get(5, TimeUnit.SECONDS).size());
+
+		Future<List<EpisodeItem>> bulk = pagingConnection.getBulkExecutor()
+				.submit(fetchAll);
+		assertEquals(PAGES * 2, bulk.get(5, TimeUnit.SECONDS).size());
+
+		pagingConnection.close();
+	}
+}
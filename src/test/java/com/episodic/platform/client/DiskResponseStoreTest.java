@@ -0,0 +1,181 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.episodic.platform.client.cache.CachedResponse;
+import com.episodic.platform.client.cache.DiskResponseStore;
+import com.episodic.platform.client.cache.ResponseCache;
+import com.episodic.platform.client.response.query.ShowsResponse;
+import com.episodic.platform.client.transport.Transport;
+import com.episodic.platform.client.transport.TransportResponse;
+
+/**
+ * Tests keeping cached responses on disk.
+ * 
+ * @author Randy Simon
+ */
+public class DiskResponseStoreTest extends BaseResponseTest {
+
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		directory = File.createTempFile("response-cache", "");
+		directory.delete();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		ResponseCache cache = new ResponseCache();
+		cache.setStore(new DiskResponseStore(directory));
+		cache.put("query/shows?page=1", "shows", 200, "UTF-8", "<shows/>"
+				.getBytes("UTF-8"), "\"v1\"", null);
+		cache.put("query/shows?page=2", "shows", 200, null, new byte[0]);
+		cache.invalidate("query/shows?page=2");
+		cache.flush();
+
+		ResponseCache restarted = new ResponseCache();
+		restarted.setStore(new DiskResponseStore(directory));
+		assertEquals(1, restarted.size());
+
+		CachedResponse response = restarted.get("query/shows?page=1");
+		assertNotNull(response);
+		assertEquals(200, response.getStatusCode());
+		assertEquals("UTF-8", response.getCharset());
+		assertEquals("\"v1\"", response.getETag());
+		assertNull(response.getLastModified());
+		assertEquals("<shows/>", response.getBodyAsString());
+	}
+
+	@Test
+	public void testRenewWritesOnlyTheTimes() throws Exception {
+		ResponseCache cache = new ResponseCache();
+		DiskResponseStore store = new DiskResponseStore(directory);
+		cache.setStore(store);
+		CachedResponse stored = cache.put("query/shows?page=1", "shows", 200,
+				"UTF-8", "<shows/>".getBytes("UTF-8"), "\"v1\"", null);
+		cache.flush();
+		File[] files = directory.listFiles();
+		assertEquals(1, files.length);
+		long length = files[0].length();
+
+		CachedResponse renewed = stored.renew(stored.getStoredAt() + 1000,
+				stored.getExpiresAt() + 1000);
+		assertTrue(store.renew("query/shows?page=1", renewed));
+		assertEquals(length, files[0].length());
+		CachedResponse loaded = store.loadAll().get("query/shows?page=1");
+		assertEquals(renewed.getExpiresAt(), loaded.getExpiresAt());
+		assertEquals("<shows/>", loaded.getBodyAsString());
+
+		// A file holding a different response is not renewed
+		assertFalse(store.renew("query/shows?page=1", new CachedResponse(200,
+				"UTF-8", "<shows/>".getBytes("UTF-8"), "\"v2\"", null, 0, 1)));
+		assertFalse(store.renew("query/shows?page=2", renewed));
+
+		cache.revalidate("query/shows?page=1", "shows", cache
+				.getForRevalidation("query/shows?page=1"));
+		cache.flush();
+		assertEquals(cache.get("query/shows?page=1").getExpiresAt(), store
+				.loadAll().get("query/shows?page=1").getExpiresAt());
+	}
+
+	@Test
+	public void testUnreadableFilesAreSkipped() throws Exception {
+		DiskResponseStore store = new DiskResponseStore(directory);
+		store.save("a", new CachedResponse(200, null, new byte[10], 0,
+				Long.MAX_VALUE));
+
+		File broken = new File(directory, "broken.entry");
+		FileOutputStream out = new FileOutputStream(broken);
+		out.write(new byte[] { 1, 2, 3 });
+		out.close();
+
+		Map<String, CachedResponse> entries = store.loadAll();
+		assertEquals(1, entries.size());
+		assertTrue(entries.containsKey("a"));
+		assertFalse(broken.exists());
+	}
+
+	@Test
+	public void testServeStaleAndRefreshInBackground() throws Exception {
+		DiskResponseStore store = new DiskResponseStore(directory);
+		byte[] xml = readFileAsString(
+				currentPath + "/src/test/xml/shows-response.xml").getBytes(
+				"UTF-8");
+		Connection warmConnection = new Connection("key", "secret");
+		String key = warmConnection.createCacheKey("query", "shows",
+				new HashMap<String, String>());
+		store.save(key, new CachedResponse(200, "UTF-8", xml, 0, 1));
+
+		ResponseCache cache = new ResponseCache();
+		cache.setRevalidateInBackground(true);
+		cache.setStore(store);
+
+		final AtomicInteger requests = new AtomicInteger();
+		final byte[] body = xml;
+		warmConnection.setResponseCache(cache);
+		warmConnection.setTransport(new Transport() {
+			public TransportResponse get(URI uri) throws IOException {
+				requests.incrementAndGet();
+				InputStream in = new ByteArrayInputStream(body);
+				return new TransportResponse(200, "OK",
+						new HashMap<String, String>(), in);
+			}
+
+			public TransportResponse post(URI uri, Map<String, String> params,
+					Map<String, File> files) throws IOException {
+				throw new UnsupportedOperationException();
+			}
+
+			public void close() {
+			}
+		});
+
+		// The stale response is returned and refreshed on another thread
+		ShowsResponse response = (ShowsResponse) warmConnection.doCachedGet(
+				"query", "shows", new HashMap<String, Object>());
+		assertEquals(2, response.getShows().size());
+
+		for (int i = 0; i < 100 && cache.get(key).isExpired(
+				System.currentTimeMillis()); i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, requests.get());
+		assertFalse(cache.get(key).isExpired(System.currentTimeMillis()));
+
+		warmConnection.close();
+	}
+}
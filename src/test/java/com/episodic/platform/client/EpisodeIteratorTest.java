@@ -0,0 +1,129 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.episodic.platform.client.exception.InvalidParametersException;
+import com.episodic.platform.client.parser.JAXBResponseParser;
+import com.episodic.platform.client.response.query.EpisodeItem;
+import com.episodic.platform.client.transport.Transport;
+import com.episodic.platform.client.transport.TransportResponse;
+import com.episodic.platform.client.util.StringPool;
+
+/**
+ * Tests streaming episodes from a canned response.
+ * 
+ * @author Randy Simon
+ */
+public class EpisodeIteratorTest extends BaseResponseTest {
+
+	private Connection streamingConnection;
+
+	private String responseXML;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		streamingConnection = new Connection("key", "secret");
+		streamingConnection.setTransport(new Transport() {
+			public TransportResponse get(URI uri) throws IOException {
+				return new TransportResponse(200, "OK",
+						new HashMap<String, String>(),
+						new ByteArrayInputStream(responseXML.getBytes("UTF-8")));
+			}
+
+			public TransportResponse post(URI uri, Map<String, String> params,
+					Map<String, File> files) throws IOException {
+				throw new UnsupportedOperationException();
+			}
+
+			public void close() {
+			}
+		});
+	}
+
+	@Test
+	public void testIterateEpisodes() throws Exception {
+		responseXML = readFileAsString(currentPath
+				+ "/src/test/xml/episodes-response.xml");
+
+		QueryService queryService = QueryService.getInstance();
+		queryService.setConnection(streamingConnection);
+		EpisodeIterator episodes = queryService
+				.episodesIterator(new HashMap<String, Object>());
+
+		assertEquals(14, episodes.getTotal());
+		assertEquals(20, episodes.getPerPage());
+		assertEquals(1, episodes.getPage());
+		assertEquals(1, episodes.getPages());
+
+		int count = 0;
+		while (episodes.hasNext()) {
+			EpisodeItem episode = episodes.next();
+			assertNotNull(episode.getId());
+			if (count == 1) {
+				assertEquals("Episode 2", episode.getName());
+				assertEquals(4, episode.getCustomFields().size());
+			}
+			count++;
+		}
+		assertEquals(14, count);
+		assertFalse(episodes.hasNext());
+	}
+
+	@Test
+	public void testStringPoolOfJAXBParser() throws Exception {
+		responseXML = readFileAsString(currentPath
+				+ "/src/test/xml/episodes-response.xml");
+
+		StringPool pool = new StringPool();
+		JAXBResponseParser parser = new JAXBResponseParser();
+		parser.setStringPool(pool);
+		streamingConnection.setResponseParser(parser);
+
+		QueryService queryService = QueryService.getInstance();
+		queryService.setConnection(streamingConnection);
+		EpisodeIterator episodes = queryService
+				.episodesIterator(new HashMap<String, Object>());
+
+		String playerName = pool.intern(new String("Default Player"));
+		int count = 0;
+		while (episodes.hasNext()) {
+			assertSame(playerName, episodes.next().getPlayers().get(0)
+					.getName());
+			count++;
+		}
+		assertEquals(14, count);
+	}
+
+	@Test
+	public void testErrorResponse() throws Exception {
+		responseXML = readFileAsString(currentPath
+				+ "/src/test/xml/invalid-param-response-single.xml");
+
+		QueryService queryService = QueryService.getInstance();
+		queryService.setConnection(streamingConnection);
+		try {
+			queryService.episodesIterator(new HashMap<String, Object>());
+			fail("Expected an InvalidParametersException");
+		} catch (InvalidParametersException e) {
+			assertEquals(1, e.getResponse().getInvalidParameters().size());
+		}
+	}
+}
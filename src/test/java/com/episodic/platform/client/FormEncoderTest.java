@@ -0,0 +1,53 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.episodic.platform.client.util.FormEncoder;
+
+/**
+ * Tests that the query string encoder matches {@link URLEncoder}.
+ * 
+ * @author Randy Simon
+ */
+public class FormEncoderTest extends TestCase {
+
+	private static final String[] VALUES = { "", "simple", "with space",
+			"a&b=c", "a,b,c", "100%", ".-*_~!'()", "tag1,tag2", "Caf\u00e9",
+			"\u6f22\u5b57", "\ud83d\ude00", "\ud83d", "x\ude00y",
+			"line\nbreak", "\u007f\u0080\u07ff\u0800\uffff" };
+
+	@Test
+	public void testMatchesURLEncoder() throws Exception {
+		for (String value : VALUES) {
+			assertEquals(value, URLEncoder.encode(value, "UTF-8"), FormEncoder
+					.append(new StringBuilder(), value).toString());
+		}
+	}
+
+	@Test
+	public void testParams() throws Exception {
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		params.put("show_id", "a,b");
+		params.put("search_term", "cats & dogs");
+		params.put("empty", null);
+
+		assertEquals("show_id=a%2Cb&search_term=cats+%26+dogs&empty=",
+				FormEncoder.appendParams(new StringBuilder(), params)
+						.toString());
+	}
+}
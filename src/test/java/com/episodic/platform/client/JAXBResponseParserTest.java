@@ -0,0 +1,105 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.episodic.platform.client.parser.JAXBResponseParser;
+import com.episodic.platform.client.response.query.EpisodesResponse;
+
+/**
+ * Tests that the unmarshallers reused by the JAXB parser can be shared by
+ * many threads.
+ * 
+ * @author Randy Simon
+ */
+public class JAXBResponseParserTest extends BaseResponseTest {
+
+	private JAXBResponseParser parser = new JAXBResponseParser();
+
+	@Test
+	public void testRepeatedParse() throws Exception {
+		String xml = readFileAsString(currentPath
+				+ "/src/test/xml/episodes-response.xml");
+
+		for (int i = 0; i < 100; i++) {
+			EpisodesResponse response = (EpisodesResponse) parser
+					.parse(new StringReader(xml));
+			assertEquals(14, response.getEpisodes().size());
+		}
+	}
+
+	@Test
+	public void testConcurrentParse() throws Exception {
+		final String xml = readFileAsString(currentPath
+				+ "/src/test/xml/episodes-response.xml");
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < 200; i++) {
+				futures.add(executor.submit(new Callable<Integer>() {
+					public Integer call() throws Exception {
+						EpisodesResponse response = (EpisodesResponse) parser
+								.parse(new StringReader(xml));
+						return response.getEpisodes().size();
+					}
+				}));
+			}
+
+			for (Future<Integer> future : futures) {
+				assertEquals(14, future.get().intValue());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testUnmarshallersReusedAcrossBulkTasks() throws Exception {
+		final String xml = readFileAsString(currentPath
+				+ "/src/test/xml/episodes-response.xml");
+
+		// Every task runs on a thread of its own
+		BulkExecutor bulkExecutor = new BulkExecutor(BulkExecutor
+				.newThreadPerTaskExecutor(), 4, true);
+		int created = JAXBResponseParser.getCreatedUnmarshallerCount();
+		try {
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < 100; i++) {
+				futures.add(bulkExecutor.submit(new Callable<Integer>() {
+					public Integer call() throws Exception {
+						EpisodesResponse response = (EpisodesResponse) parser
+								.parse(new StringReader(xml));
+						return response.getEpisodes().size();
+					}
+				}));
+			}
+
+			for (Future<Integer> future : futures) {
+				assertEquals(14, future.get().intValue());
+			}
+		} finally {
+			bulkExecutor.shutdown();
+		}
+
+		// No more unmarshallers than tasks that ran at once
+		assertTrue(JAXBResponseParser.getCreatedUnmarshallerCount()
+				- created <= 4);
+	}
+}
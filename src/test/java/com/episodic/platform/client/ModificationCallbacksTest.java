@@ -0,0 +1,153 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.episodic.platform.client.parser.StaxResponseParser;
+import com.episodic.platform.client.response.query.ModificationCallbackItem;
+import com.episodic.platform.client.response.query.ModificationCallbacksResponse;
+import com.episodic.platform.client.transport.Transport;
+import com.episodic.platform.client.transport.TransportResponse;
+
+/**
+ * Tests reading modification callbacks as typed responses.
+ * 
+ * @author Randy Simon
+ */
+public class ModificationCallbacksTest extends BaseResponseTest {
+
+	private static final int PAGES = 3;
+
+	private static final Pattern PAGE = Pattern.compile("(^|&)page=(\\d+)");
+
+	private final List<String> queries = new ArrayList<String>();
+
+	private Connection callbacksConnection;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		callbacksConnection = new Connection("key", "secret");
+		callbacksConnection.setTransport(new Transport() {
+			public TransportResponse get(URI uri) throws IOException {
+				String query = uri.getRawQuery();
+				synchronized (queries) {
+					queries.add(query);
+				}
+				Matcher matcher = PAGE.matcher(query);
+				int page = matcher.find() ? Integer.parseInt(matcher.group(2))
+						: 1;
+
+				StringBuilder xml = new StringBuilder();
+				xml.append("<modification_callbacks page=\"" + page
+						+ "\" pages=\"" + PAGES + "\" per_page=\"2\" total=\""
+						+ (PAGES * 2) + "\">");
+				for (int i = 0; i < 2; i++) {
+					xml.append("<modification_callback><id>" + page + "-" + i
+							+ "</id><status>pending</status>"
+							+ "</modification_callback>");
+				}
+				xml.append("</modification_callbacks>");
+
+				return new TransportResponse(200, "OK",
+						new HashMap<String, String>(),
+						new ByteArrayInputStream(xml.toString().getBytes(
+								"UTF-8")));
+			}
+
+			public TransportResponse post(URI uri, Map<String, String> params,
+					Map<String, File> files) throws IOException {
+				throw new UnsupportedOperationException();
+			}
+
+			public void close() {
+			}
+		});
+	}
+
+	@Test
+	public void testParse() throws Exception {
+		ModificationCallbacksResponse response = (ModificationCallbacksResponse) new StaxResponseParser()
+				.parse(new FileInputStream(currentPath
+						+ "/src/test/xml/modification-callbacks-response.xml"));
+
+		assertEquals(3, response.getTotal());
+		assertEquals(3, response.getCallbacks().size());
+
+		ModificationCallbackItem callback = response.getCallbacks().get(0);
+		assertEquals("1001", callback.getId());
+		assertEquals("hdkpqzhb0rql", callback.getObjectId());
+		assertEquals("89675", callback.getShowId());
+		assertTrue(callback.isEpisode());
+		assertFalse(callback.isDelete());
+		assertEquals("complete", callback.getStatus());
+		assertNotNull(callback.getCreatedAt());
+
+		assertTrue(response.getCallbacks().get(1).isPlaylist());
+		assertTrue(response.getCallbacks().get(2).isDelete());
+	}
+
+	@Test
+	public void testPendingPager() throws Exception {
+		QueryService queryService = QueryService.getInstance();
+		queryService.setConnection(callbacksConnection);
+
+		DateTime since = new DateTime(1262743959000L);
+		CollectionPager<ModificationCallbacksResponse, ModificationCallbackItem> pager = queryService
+				.pendingModificationCallbacksPager(since, 2);
+
+		int count = 0;
+		while (pager.hasNext()) {
+			assertEquals((count / 2 + 1) + "-" + (count % 2), pager.next()
+					.getId());
+			count++;
+		}
+		assertEquals(PAGES * 2, count);
+
+		assertEquals(PAGES, queries.size());
+		for (String query : queries) {
+			assertTrue(query.contains("since=1262743959"));
+			assertTrue(query.contains("pending_only=true"));
+			assertTrue(query.contains("per_page=2"));
+		}
+
+		callbacksConnection.close();
+	}
+
+	@Test
+	public void testIterator() throws Exception {
+		QueryService queryService = QueryService.getInstance();
+		queryService.setConnection(callbacksConnection);
+
+		ModificationCallbackIterator iterator = queryService
+				.modificationCallbacksIterator(null, null);
+		assertEquals("1-0", iterator.next().getId());
+		assertEquals("pending", iterator.next().getStatus());
+		assertFalse(iterator.hasNext());
+		assertFalse(queries.get(0).contains("since="));
+
+		callbacksConnection.close();
+	}
+}
@@ -0,0 +1,200 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.episodic.platform.client.transport.NioTransport;
+import com.episodic.platform.client.transport.TransportResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the non-blocking transport against a local HTTP server.
+ * 
+ * @author Randy Simon
+ */
+public class NioTransportTest {
+
+	private static final int REQUESTS = 50;
+
+	private HttpServer server;
+
+	private NioTransport transport;
+
+	private String baseUri;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+
+	private volatile CountDownLatch release = new CountDownLatch(0);
+
+	@Before
+	public void setUp() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				int current = inFlight.incrementAndGet();
+				while (true) {
+					int max = maxInFlight.get();
+					if (current <= max
+							|| maxInFlight.compareAndSet(max, current)) {
+						break;
+					}
+				}
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				inFlight.decrementAndGet();
+
+				String body = exchange.getRequestMethod() + " "
+						+ exchange.getRequestURI();
+				String token = exchange.getRequestHeaders().getFirst(
+						"X-Token");
+				if (token != null) {
+					body += " " + token;
+				}
+				if ("POST".equals(exchange.getRequestMethod())) {
+					body += "\n" + read(exchange.getRequestBody());
+				}
+				byte[] bytes = body.getBytes("UTF-8");
+				exchange.getResponseHeaders().add("ETag", "\"abc\"");
+				exchange.sendResponseHeaders(200, bytes.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(bytes);
+				out.close();
+			}
+		});
+		server.start();
+		baseUri = "http://127.0.0.1:" + server.getAddress().getPort();
+		transport = new NioTransport(4, 1, 10000);
+	}
+
+	@After
+	public void tearDown() {
+		transport.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void testGet() throws Exception {
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put("X-Token", "t1");
+		TransportResponse response = transport.get(new URI(baseUri
+				+ "/api/v2/query/shows?page=2"), headers);
+		assertEquals(200, response.getStatusCode());
+		assertEquals("\"abc\"", response.getHeader("etag"));
+		assertEquals("GET /api/v2/query/shows?page=2 t1", read(response
+				.getBody()));
+		response.close();
+	}
+
+	@Test
+	public void testPost() throws Exception {
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		params.put("name", "Caf\u00e9");
+		TransportResponse response = transport.post(new URI(baseUri
+				+ "/api/v2/write/episode/create"), params, null);
+		String body = read(response.getBody());
+		assertTrue(body, body.startsWith("POST /api/v2/write/episode/create"));
+		assertTrue(body, body.contains("name=\"name\""));
+		assertTrue(body, body.contains("Caf\u00e9"));
+	}
+
+	@Test
+	public void testManyRequestsShareTheConnectionLimit() throws Exception {
+		release = new CountDownLatch(1);
+		List<Future<TransportResponse>> futures = new ArrayList<Future<TransportResponse>>();
+		for (int i = 0; i < REQUESTS; i++) {
+			futures.add(transport.getAsync(new URI(baseUri + "/item/" + i),
+					null));
+		}
+		// Every request was queued without blocking the caller
+		Thread.sleep(500);
+		release.countDown();
+
+		for (int i = 0; i < REQUESTS; i++) {
+			TransportResponse response = futures.get(i).get(10,
+					TimeUnit.SECONDS);
+			assertEquals("GET /item/" + i, read(response.getBody()));
+		}
+		assertEquals(4, maxInFlight.get());
+	}
+
+	@Test
+	public void testConnectionRefused() throws Exception {
+		ServerSocket socket = new ServerSocket(0);
+		int port = socket.getLocalPort();
+		socket.close();
+		try {
+			transport.get(new URI("http://127.0.0.1:" + port + "/"));
+			fail("Expected IOException");
+		} catch (IOException e) {
+			// Expected
+		}
+		// The transport still works after a failed connect
+		assertEquals(200, transport.get(new URI(baseUri + "/")).getStatusCode());
+	}
+
+	@Test
+	public void testUnsupportedScheme() throws Exception {
+		try {
+			transport.get(new URI("https://127.0.0.1/"));
+			fail("Expected IOException");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testClosed() throws Exception {
+		transport.close();
+		transport.get(new URI(baseUri + "/"));
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			out.write(buffer, 0, n);
+		}
+		return out.toString("UTF-8");
+	}
+}
@@ -9,6 +9,7 @@
  */
 package com.episodic.platform.client;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.joda.time.DateTime;
@@ -16,6 +17,7 @@ import org.joda.time.DateTimeZone;
 import org.junit.Test;
 
 import com.episodic.platform.client.response.query.CustomFieldItem;
+import com.episodic.platform.client.response.query.CustomFields;
 import com.episodic.platform.client.response.query.EpisodeItem;
 import com.episodic.platform.client.response.query.EpisodesResponse;
 import com.episodic.platform.client.response.query.PlaylistItem;
@@ -196,4 +198,76 @@ public class QueryResponseTest extends BaseResponseTest {
 	    show = response.getShowItemById("adfadsfasdf");
 	    assertFalse(show.exists());
 	}
+
+	@Test
+	public void testCustomFieldsByName() throws Exception {
+		String xml = readFileAsString(currentPath
+				+ "/src/test/xml/episodes-response.xml");
+		EpisodesResponse response = (EpisodesResponse) connection
+				.unmarshall(xml);
+		EpisodeItem episode = response.getEpisodeItemById("oo3kyjwjzcap");
+
+		CustomFields fields = episode.getCustomFieldsByName();
+		assertSame(fields, episode.getCustomFieldsByName());
+		assertEquals(4, fields.getNames().size());
+		assertEquals("Game Trailers", fields.getValue("Series Name"));
+		assertEquals("567", fields.getValue("Number Field"));
+		assertNull(fields.getDate("Series Name"));
+		assertEquals(new DateTime(2010, 1, 29, 18, 51, 0, 0, DateTimeZone.UTC),
+				fields.getDate("Publish Date"));
+		assertEquals("Drama", fields.getSelectValues("Category").get("123"));
+		assertEquals(2, fields.getValues("Category").size());
+		assertNull(fields.getValue("Missing"));
+		assertTrue(fields.getValues("Missing").isEmpty());
+
+		// The view is rebuilt when a field is replaced in the list
+		CustomFieldItem renamed = new CustomFieldItem();
+		renamed.setName("Renamed");
+		renamed.setType("string");
+		episode.getCustomFields().set(0, renamed);
+		assertEquals(4, episode.getCustomFieldsByName().getNames().size());
+		assertTrue(episode.getCustomFieldsByName().contains("Renamed"));
+
+		// And when the list is replaced
+		episode.setCustomFields(null);
+		assertTrue(episode.getCustomFieldsByName().getNames().isEmpty());
+	}
+
+	@Test
+	public void testItemIndex() throws Exception {
+		EpisodesResponse response = new EpisodesResponse();
+		assertNull(response.getEpisodeItemById("a"));
+
+		List<EpisodeItem> episodes = new ArrayList<EpisodeItem>();
+		episodes.add(episode("a", "first"));
+		episodes.add(episode("b", "second"));
+		episodes.add(episode("a", "duplicate"));
+		response.setEpisodes(episodes);
+		assertEquals("first", response.getEpisodeItemById("a").getName());
+		assertEquals("second", response.getEpisodeItemById("b").getName());
+		assertNull(response.getEpisodeItemById("c"));
+
+		// The index follows changes to the list
+		episodes.add(episode("c", "third"));
+		assertEquals("third", response.getEpisodeItemById("c").getName());
+
+		// Replacing an item keeps the size the same
+		episodes.set(1, episode("d", "fourth"));
+		assertNull(response.getEpisodeItemById("b"));
+		assertEquals("fourth", response.getEpisodeItemById("d").getName());
+		episodes.remove(0);
+		episodes.add(episode("e", "fifth"));
+		assertEquals("duplicate", response.getEpisodeItemById("a").getName());
+		assertEquals("fifth", response.getEpisodeItemById("e").getName());
+
+		response.setEpisodes(new ArrayList<EpisodeItem>());
+		assertNull(response.getEpisodeItemById("a"));
+	}
+
+	private static EpisodeItem episode(String id, String name) {
+		EpisodeItem episode = new EpisodeItem();
+		episode.setId(id);
+		episode.setName(name);
+		return episode;
+	}
 }
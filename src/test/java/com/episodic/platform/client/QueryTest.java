@@ -0,0 +1,97 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.episodic.platform.client.query.EpisodesQuery;
+import com.episodic.platform.client.query.ShowsQuery;
+import com.episodic.platform.client.response.query.EpisodeItem.EpisodePublishingStatus;
+import com.episodic.platform.client.transport.Transport;
+import com.episodic.platform.client.transport.TransportResponse;
+
+/**
+ * Tests the typed query objects.
+ * 
+ * @author Randy Simon
+ */
+public class QueryTest extends TestCase {
+
+	@Test
+	public void testParams() throws Exception {
+		EpisodesQuery query = new EpisodesQuery().showIds("a", "b")
+				.searchTerm("cats & dogs").status(
+						EpisodePublishingStatus.ON_THE_AIR,
+						EpisodePublishingStatus.OFF_THE_AIR).perPage(50);
+
+		Map<String, String> params = query.getParams();
+		assertEquals("a,b", params.get("show_id"));
+		assertEquals("cats & dogs", params.get("search_term"));
+		assertEquals("on_the_air,off_the_air", params.get("status"));
+		assertEquals("50", params.get("per_page"));
+
+		assertEquals("per_page=50&search_term=cats+%26+dogs"
+				+ "&show_id=a%2Cb&status=on_the_air%2Coff_the_air", query
+				.getEncodedParams());
+	}
+
+	@Test
+	public void testChangesInvalidateCache() throws Exception {
+		ShowsQuery query = new ShowsQuery().page(1);
+		String first = query.getEncodedParams();
+		assertSame(first, query.getEncodedParams());
+
+		query.page(2);
+		assertEquals("page=2", query.getEncodedParams());
+		assertEquals("2", query.getParams().get("page"));
+
+		query.sortBy(null);
+		assertFalse(query.getParams().containsKey("sort_by"));
+	}
+
+	@Test
+	public void testRequest() throws Exception {
+		final URI[] requested = new URI[1];
+		Connection connection = new Connection("key", "secret");
+		connection.setTransport(new Transport() {
+			public TransportResponse get(URI uri) throws IOException {
+				requested[0] = uri;
+				return new TransportResponse(200, "OK",
+						new HashMap<String, String>(),
+						new ByteArrayInputStream(new byte[0]));
+			}
+
+			public TransportResponse post(URI uri, Map<String, String> params,
+					Map<String, File> files) throws IOException {
+				throw new UnsupportedOperationException();
+			}
+
+			public void close() {
+			}
+		});
+
+		EpisodesQuery query = new EpisodesQuery().showIds("a", "b");
+		connection.doGetUnparsed("query", "episodes", query).close();
+
+		String queryString = requested[0].getRawQuery();
+		assertTrue(queryString.startsWith("show_id=a%2Cb&expires="));
+		assertTrue(queryString.indexOf("&signature=") > 0);
+		assertTrue(queryString.endsWith("&key=key"));
+	}
+}
@@ -0,0 +1,122 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.episodic.platform.client.response.Response;
+import com.episodic.platform.client.transport.Transport;
+import com.episodic.platform.client.transport.TransportResponse;
+
+/**
+ * Tests that identical requests made at the same time share one request.
+ * 
+ * @author Randy Simon
+ */
+public class RequestCoalescingTest extends BaseResponseTest {
+
+	private static final int CALLERS = 5;
+
+	private Connection coalescingConnection;
+
+	private final AtomicInteger requests = new AtomicInteger();
+
+	private final CountDownLatch requestStarted = new CountDownLatch(1);
+
+	private final CountDownLatch releaseResponse = new CountDownLatch(1);
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		coalescingConnection = new Connection("key", "secret");
+		coalescingConnection.setCoalesceRequests(true);
+		coalescingConnection.setTransport(new Transport() {
+			public TransportResponse get(URI uri) throws IOException {
+				requests.incrementAndGet();
+				requestStarted.countDown();
+				try {
+					releaseResponse.await();
+				} catch (InterruptedException e) {
+					throw new IOException("Interrupted");
+				}
+				String xml = readFileAsString(currentPath
+						+ "/src/test/xml/shows-response.xml");
+				return new TransportResponse(200, "OK",
+						new HashMap<String, String>(),
+						new ByteArrayInputStream(xml.getBytes("UTF-8")));
+			}
+
+			public TransportResponse post(URI uri, Map<String, String> params,
+					Map<String, File> files) throws IOException {
+				throw new UnsupportedOperationException();
+			}
+
+			public void close() {
+			}
+		});
+	}
+
+	@Test
+	public void testConcurrentRequestsShareOneRequest() throws Exception {
+		final Response[] responses = new Response[CALLERS];
+		Thread[] callers = new Thread[CALLERS];
+		for (int i = 0; i < CALLERS; i++) {
+			final int index = i;
+			callers[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						responses[index] = coalescingConnection.doCachedGet(
+								"query", "shows", new HashMap<String, Object>());
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+			callers[i].start();
+			if (i == 0) {
+				requestStarted.await();
+			}
+		}
+
+		// Wait for the other callers to join the request in flight
+		for (int i = 1; i < CALLERS; i++) {
+			while (callers[i].getState() != Thread.State.WAITING) {
+				Thread.sleep(10);
+			}
+		}
+		releaseResponse.countDown();
+		for (Thread caller : callers) {
+			caller.join();
+		}
+
+		assertEquals(1, requests.get());
+		for (Response response : responses) {
+			assertSame(responses[0], response);
+		}
+
+		// Once the request is done the next one is sent again
+		coalescingConnection.doCachedGet("query", "shows",
+				new HashMap<String, Object>());
+		assertEquals(2, requests.get());
+
+		coalescingConnection.close();
+	}
+}
@@ -0,0 +1,240 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.episodic.platform.client.cache.CachedResponse;
+import com.episodic.platform.client.cache.ResponseCache;
+import com.episodic.platform.client.exception.InvalidParametersException;
+import com.episodic.platform.client.query.ShowsQuery;
+import com.episodic.platform.client.response.query.ShowsResponse;
+import com.episodic.platform.client.transport.ConditionalTransport;
+import com.episodic.platform.client.transport.Transport;
+import com.episodic.platform.client.transport.TransportResponse;
+
+/**
+ * Tests caching query responses.
+ * 
+ * @author Randy Simon
+ */
+public class ResponseCacheTest extends BaseResponseTest {
+
+	private Connection cachingConnection;
+
+	private ResponseCache cache;
+
+	private String responseFile;
+
+	private int requests;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		responseFile = "shows-response.xml";
+		requests = 0;
+		cache = new ResponseCache();
+		cachingConnection = new Connection("key", "secret");
+		cachingConnection.setResponseCache(cache);
+		cachingConnection.setTransport(new Transport() {
+			public TransportResponse get(URI uri) throws IOException {
+				requests++;
+				String xml = readFileAsString(currentPath + "/src/test/xml/"
+						+ responseFile);
+				return new TransportResponse(200, "OK",
+						new HashMap<String, String>(),
+						new ByteArrayInputStream(xml.getBytes("UTF-8")));
+			}
+
+			public TransportResponse post(URI uri, Map<String, String> params,
+					Map<String, File> files) throws IOException {
+				throw new UnsupportedOperationException();
+			}
+
+			public void close() {
+			}
+		});
+	}
+
+	@Test
+	public void testKeyIgnoresOrderAndCommonParams() throws Exception {
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		params.put("page", "2");
+		params.put("id", "a,b");
+		String key = cachingConnection.createCacheKey("query", "shows", params);
+		assertEquals(
+				"http://api.episodic.com:80/api/v2/query/shows?id=a%2Cb&key=key&page=2",
+				key);
+
+		params = new LinkedHashMap<String, String>();
+		params.put("expires", "1234");
+		params.put("id", "a,b");
+		params.put("signature", "abc");
+		params.put("page", "2");
+		params.put("key", "other");
+		assertEquals(key, cachingConnection.createCacheKey("query", "shows",
+				params));
+	}
+
+	@Test
+	public void testKeyIncludesServerAndApiKey() throws Exception {
+		Map<String, String> params = new HashMap<String, String>();
+		String key = cachingConnection.createCacheKey("query", "shows", params);
+
+		assertFalse(key.equals(new Connection("other", "secret")
+				.createCacheKey("query", "shows", params)));
+		assertFalse(key.equals(new Connection("key", "secret",
+				"localhost", 8080).createCacheKey("query", "shows", params)));
+		assertEquals(key, new Connection("key", "other").createCacheKey(
+				"query", "shows", params));
+	}
+
+	@Test
+	public void testHitsAndMisses() throws Exception {
+		QueryService queryService = QueryService.getInstance();
+		queryService.setConnection(cachingConnection);
+
+		Map<String, Object> options = new HashMap<String, Object>();
+		options.put("page", 1);
+		ShowsResponse first = queryService.shows(options);
+		ShowsResponse second = queryService.shows(options);
+		ShowsResponse third = queryService.shows(new ShowsQuery().page(1));
+
+		assertEquals(1, requests);
+		assertEquals(1, cache.getMissCount());
+		assertEquals(2, cache.getHitCount());
+		// Hits reuse the response parsed for the miss
+		assertSame(first, second);
+		assertSame(first, third);
+
+		options.put("page", 2);
+		queryService.shows(options);
+		assertEquals(2, requests);
+		assertEquals(2, cache.size());
+
+		cachingConnection.close();
+	}
+
+	@Test
+	public void testErrorsAreNotCached() throws Exception {
+		QueryService queryService = QueryService.getInstance();
+		queryService.setConnection(cachingConnection);
+		responseFile = "invalid-param-response-single.xml";
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				queryService.shows(new HashMap<String, Object>());
+				fail("Expected an InvalidParametersException");
+			} catch (InvalidParametersException e) {
+				// Expected
+			}
+		}
+		assertEquals(2, requests);
+		assertEquals(0, cache.size());
+
+		cachingConnection.close();
+	}
+
+	@Test
+	public void testRevalidation() throws Exception {
+		final Map<String, String> sentHeaders = new HashMap<String, String>();
+		Connection revalidatingConnection = new Connection("key", "secret");
+		revalidatingConnection.setResponseCache(cache);
+		revalidatingConnection.setTransport(new ConditionalTransport() {
+			public TransportResponse get(URI uri, Map<String, String> headers)
+					throws IOException {
+				sentHeaders.putAll(headers);
+				if ("\"v1\"".equals(headers.get("If-None-Match"))) {
+					requests++;
+					return new TransportResponse(304, "Not Modified", null,
+							null);
+				}
+				return get(uri);
+			}
+
+			public TransportResponse get(URI uri) throws IOException {
+				requests++;
+				Map<String, String> headers = new HashMap<String, String>();
+				headers.put("ETag", "\"v1\"");
+				headers.put("Last-Modified", "Mon, 01 Nov 2010 00:00:00 GMT");
+				String xml = readFileAsString(currentPath
+						+ "/src/test/xml/shows-response.xml");
+				return new TransportResponse(200, "OK", headers,
+						new ByteArrayInputStream(xml.getBytes("UTF-8")));
+			}
+
+			public TransportResponse post(URI uri, Map<String, String> params,
+					Map<String, File> files) throws IOException {
+				throw new UnsupportedOperationException();
+			}
+
+			public void close() {
+			}
+		});
+		cache.setTimeToLive("shows", 1, TimeUnit.MILLISECONDS);
+
+		ShowsResponse first = (ShowsResponse) revalidatingConnection
+				.doCachedGet("query", "shows", new HashMap<String, Object>());
+		Thread.sleep(10);
+		ShowsResponse second = (ShowsResponse) revalidatingConnection
+				.doCachedGet("query", "shows", new HashMap<String, Object>());
+
+		assertEquals(2, requests);
+		assertEquals(1, cache.getRevalidationCount());
+		assertEquals("\"v1\"", sentHeaders.get("If-None-Match"));
+		assertEquals("Mon, 01 Nov 2010 00:00:00 GMT", sentHeaders
+				.get("If-Modified-Since"));
+		assertSame(first, second);
+
+		revalidatingConnection.close();
+	}
+
+	@Test
+	public void testTimeToLive() throws Exception {
+		cache.setTimeToLive("shows", 0, TimeUnit.SECONDS);
+		assertNull(cache.put("shows", "shows", 200, null, new byte[1]));
+		assertNotNull(cache.put("episodes", "episodes", 200, null,
+				new byte[1]));
+
+		cache.put("stale", new CachedResponse(200, null, new byte[1], 0, 1));
+		assertNull(cache.get("stale"));
+		assertNotNull(cache.get("episodes"));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() throws Exception {
+		cache = new ResponseCache(2, 100);
+		cache.put("a", "shows", 200, null, new byte[10]);
+		cache.put("b", "shows", 200, null, new byte[10]);
+		cache.get("a");
+		cache.put("c", "shows", 200, null, new byte[10]);
+
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+		assertEquals(1, cache.getEvictionCount());
+
+		cache.put("d", "shows", 200, null, new byte[95]);
+		assertEquals(1, cache.size());
+		assertEquals(95, cache.getByteSize());
+		assertNull(cache.put("e", "shows", 200, null, new byte[101]));
+	}
+}
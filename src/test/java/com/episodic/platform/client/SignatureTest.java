@@ -0,0 +1,86 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Test;
+
+/**
+ * Tests that requests are signed as described in the API documentation.
+ * 
+ * @author Randy Simon
+ */
+public class SignatureTest extends TestCase {
+
+	private static final String SECRET_KEY = "77c062e551279b0a0b8bc69f9709f33b";
+
+	private Connection connection = new Connection("key", SECRET_KEY);
+
+	@Test
+	public void testDocumentedExample() throws Exception {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("show_id", "13");
+		params.put("expires", "1229046347");
+
+		assertEquals(DigestUtils.sha256Hex(SECRET_KEY
+				+ "expires=1229046347show_id=13"), connection
+				.generateSignature(params));
+	}
+
+	@Test
+	public void testMatchesReference() throws Exception {
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("expires", "1229046347");
+		params.put("name", "Caf\u00e9 \u6f22\u5b57 \ud83d\ude00");
+		params.put("description", longValue());
+		params.put("tags", "one,two,three");
+		params.put("custom_fields[Series]", "");
+
+		assertEquals(referenceSignature(params), connection
+				.generateSignature(params));
+	}
+
+	@Test
+	public void testNoParams() throws Exception {
+		Map<String, String> params = new HashMap<String, String>();
+		assertEquals(referenceSignature(params), connection
+				.generateSignature(params));
+	}
+
+	/**
+	 * The signature computed the simplest possible way.
+	 */
+	private String referenceSignature(Map<String, String> params) {
+		StringBuilder builder = new StringBuilder(SECRET_KEY);
+		Set<String> keys = new TreeSet<String>(params.keySet());
+		for (String key : keys) {
+			builder.append(key).append('=').append(params.get(key));
+		}
+		return DigestUtils.sha256Hex(builder.toString());
+	}
+
+	/**
+	 * A long value.
+	 */
+	private String longValue() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			builder.append("value ").append(i);
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,117 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.File;
+import java.io.StringReader;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.episodic.platform.client.parser.JAXBResponseParser;
+import com.episodic.platform.client.parser.StaxResponseParser;
+import com.episodic.platform.client.response.Response;
+import com.episodic.platform.client.response.query.EpisodesResponse;
+
+/**
+ * Tests that the StAX parser produces the same responses as JAXB for every
+ * sample response.
+ * 
+ * @author Randy Simon
+ */
+public class StaxResponseParserTest extends BaseResponseTest {
+
+	private JAXBResponseParser jaxbParser = new JAXBResponseParser();
+
+	private StaxResponseParser staxParser = new StaxResponseParser();
+
+	@Test
+	public void testParity() throws Exception {
+		File[] files = new File(currentPath + "/src/test/xml").listFiles();
+		assertTrue(files.length > 0);
+
+		for (File file : files) {
+			if (!file.getName().endsWith(".xml")) {
+				continue;
+			}
+
+			String xml = readFileAsString(file.getPath());
+			Response expected = jaxbParser.parse(new StringReader(xml));
+			Response actual = staxParser.parse(new StringReader(xml));
+
+			assertEquivalent(file.getName(), expected, actual);
+		}
+	}
+
+	@Test
+	public void testConnectionUsesParser() throws Exception {
+		Connection staxConnection = new Connection();
+		staxConnection.setResponseParser(staxParser);
+
+		String xml = readFileAsString(currentPath
+				+ "/src/test/xml/episodes-response.xml");
+		EpisodesResponse response = (EpisodesResponse) staxConnection
+				.unmarshall(xml);
+
+		assertEquals(14, response.getTotal());
+		assertEquals(xml, response.getBody());
+	}
+
+	/**
+	 * Compare every field of the two objects recursively.
+	 */
+	private void assertEquivalent(String path, Object expected, Object actual)
+			throws IllegalAccessException {
+		if (expected == null || actual == null) {
+			assertEquals(path, expected, actual);
+			return;
+		}
+
+		assertEquals(path, expected.getClass(), actual.getClass());
+		Class<?> type = expected.getClass();
+
+		// Constants with a body are subclasses of the enum so check the
+		// instance rather than Class.isEnum()
+		if (type.getName().startsWith("com.episodic.")
+				&& !(expected instanceof Enum<?>)) {
+			for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+				for (Field field : c.getDeclaredFields()) {
+					if (Modifier.isStatic(field.getModifiers())) {
+						continue;
+					}
+					field.setAccessible(true);
+					assertEquivalent(path + "." + field.getName(), field
+							.get(expected), field.get(actual));
+				}
+			}
+		} else if (expected instanceof List) {
+			List<?> expectedList = (List<?>) expected;
+			List<?> actualList = (List<?>) actual;
+			assertEquals(path + ".size", expectedList.size(), actualList
+					.size());
+			for (int i = 0; i < expectedList.size(); i++) {
+				assertEquivalent(path + "[" + i + "]", expectedList.get(i),
+						actualList.get(i));
+			}
+		} else if (type.isArray()) {
+			assertEquals(path + ".length", Array.getLength(expected), Array
+					.getLength(actual));
+			for (int i = 0; i < Array.getLength(expected); i++) {
+				assertEquivalent(path + "[" + i + "]", Array.get(expected, i),
+						Array.get(actual, i));
+			}
+		} else {
+			assertEquals(path, expected, actual);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/* 
+ * Episodic Platform Java SDK
+ * 
+ * Copyright (c) 2010 by Episodic, Inc.
+ * 
+ * Licensed under the terms of The MIT License.
+ * Please see the LICENSE included with this distribution for details.
+ * 
+ */
+package com.episodic.platform.client;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.episodic.platform.client.parser.JAXBResponseParser;
+import com.episodic.platform.client.parser.StaxResponseParser;
+import com.episodic.platform.client.response.query.EpisodeItem;
+import com.episodic.platform.client.response.query.EpisodesResponse;
+import com.episodic.platform.client.util.StringPool;
+
+/**
+ * Tests sharing repeated strings while parsing.
+ * 
+ * @author Randy Simon
+ */
+public class StringPoolTest extends BaseResponseTest {
+
+	@Test
+	public void testIntern() throws Exception {
+		StringPool pool = new StringPool(10, 5);
+		assertEquals(16, pool.getCapacity());
+
+		String first = new String("tag1");
+		assertSame(first, pool.intern(first));
+		assertSame(first, pool.intern(new String("tag1")));
+
+		String longValue = new String("longer");
+		assertSame(longValue, pool.intern(longValue));
+		assertNotSame(longValue, pool.intern(new String("longer")));
+
+		assertNull(pool.intern(null));
+
+		String[] tags = new String[] { new String("tag1"), "tag2" };
+		assertSame(tags, pool.internAll(tags));
+		assertSame(first, tags[0]);
+	}
+
+	@Test
+	public void testParse() throws Exception {
+		String xml = readFileAsString(currentPath
+				+ "/src/test/xml/episodes-response.xml");
+
+		StaxResponseParser parser = new StaxResponseParser();
+		List<EpisodeItem> episodes = ((EpisodesResponse) parser
+				.parse(new StringReader(xml))).getEpisodes();
+		assertNotSame(episodes.get(0).getPlayers().get(0).getName(), episodes
+				.get(1).getPlayers().get(0).getName());
+
+		parser.setStringPool(new StringPool());
+		episodes = ((EpisodesResponse) parser.parse(new StringReader(xml)))
+				.getEpisodes();
+		String playerName = episodes.get(0).getPlayers().get(0).getName();
+		assertEquals("Default Player", playerName);
+		for (EpisodeItem episode : episodes) {
+			assertSame(playerName, episode.getPlayers().get(0).getName());
+		}
+
+		// Values are shared between responses too
+		EpisodesResponse again = (EpisodesResponse) parser
+				.parse(new StringReader(xml));
+		assertSame(playerName, again.getEpisodes().get(0).getPlayers().get(0)
+				.getName());
+		assertSame(episodes.get(1).getTags()[0], again.getEpisodes().get(1)
+				.getTags()[0]);
+
+		// Ids are unique to each item so they are not pooled
+		assertNotSame(episodes.get(0).getId(), again.getEpisodes().get(0)
+				.getId());
+	}
+
+	@Test
+	public void testParseWithJAXB() throws Exception {
+		String xml = readFileAsString(currentPath
+				+ "/src/test/xml/episodes-response.xml");
+
+		JAXBResponseParser parser = new JAXBResponseParser();
+		parser.setStringPool(new StringPool());
+		List<EpisodeItem> episodes = ((EpisodesResponse) parser
+				.parse(new StringReader(xml))).getEpisodes();
+		String playerName = episodes.get(0).getPlayers().get(0).getName();
+		assertEquals("Default Player", playerName);
+		for (EpisodeItem episode : episodes) {
+			assertSame(playerName, episode.getPlayers().get(0).getName());
+		}
+
+		EpisodesResponse again = (EpisodesResponse) parser
+				.parse(new StringReader(xml));
+		assertSame(playerName, again.getEpisodes().get(0).getPlayers().get(0)
+				.getName());
+		assertSame(episodes.get(1).getTags()[0], again.getEpisodes().get(1)
+				.getTags()[0]);
+		assertNotSame(episodes.get(0).getId(), again.getEpisodes().get(0)
+				.getId());
+
+		parser.setStringPool(null);
+		assertNull(parser.getStringPool());
+		again = (EpisodesResponse) parser.parse(new StringReader(xml));
+		assertNotSame(playerName, again.getEpisodes().get(0).getPlayers()
+				.get(0).getName());
+	}
+}
@@ -9,10 +9,13 @@
  */
 package com.episodic.platform.client;
 
+import java.io.File;
+
 import org.junit.Test;
 
 import com.episodic.platform.client.exception.InvalidParametersException;
 import com.episodic.platform.client.response.write.CreateEpisodeResponse;
+import com.episodic.platform.client.response.write.Upload;
 
 /**
  * Tests that we can parse responses returned from a Write Service request.
@@ -47,6 +50,18 @@ public class WriteResponseTest extends BaseResponseTest {
 		assertEquals("http://randy.dev.assets.episodic.com.s3.amazonaws.com/",
 				response.getUploads().get(0).getUrl());
 		assertEquals(5, response.getUploads().get(0).getUploadParams().size());
+
+		assertSame(response.getUploads().get(0), response
+				.getUploadForFile(new File("/videos/1-0.mp4")));
+		assertSame(response.getUploads().get(0), response
+				.getUploadForFilePath("1-0.mp4"));
+		assertNull(response.getUploadForFile(new File("1-1.mp4")));
+
+		// The index follows changes to the list
+		Upload thumbnail = new Upload();
+		thumbnail.setFilename("1-1.png");
+		response.getUploads().add(thumbnail);
+		assertSame(thumbnail, response.getUploadForFile(new File("1-1.png")));
 	}
 
 	@Test